@@ -0,0 +1,53 @@
+package org.mrp.domain;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+// position after the last entry of a page: the sort key as the database printed it plus the entry id
+public record MediaCursor(MediaSort sort, String key, int id) {
+
+    public String encode() {
+        String raw = sort.name() + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MediaCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the key goes last because titles may contain the separator
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("cursor is invalid.");
+            }
+            MediaSort sort = MediaSort.valueOf(parts[0]);
+            checkKey(sort, parts[2]);
+            return new MediaCursor(sort, parts[2], Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            // also covers bad base64, unknown sort names, non-numeric ids and keys of the wrong type
+            throw new IllegalArgumentException("cursor is invalid.");
+        }
+    }
+
+    // the key has to parse as the type of its sort, both for the catalog and for the cast in the database query
+    private static void checkKey(MediaSort sort, String key) {
+        if (key.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("cursor is invalid.");
+        }
+        switch (sort) {
+            case RATING:
+                // stricter than Double.parseDouble, which also takes NaN and suffixes the NUMERIC cast rejects
+                new BigDecimal(key);
+                break;
+            case RELEASE_YEAR:
+                Integer.parseInt(key);
+                break;
+            case CREATED:
+                Timestamp.valueOf(key);
+                break;
+            default:
+                break;
+        }
+    }
+}
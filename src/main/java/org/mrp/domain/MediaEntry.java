@@ -1,5 +1,6 @@
 package org.mrp.domain;
 
+import java.time.LocalDateTime;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,7 +14,9 @@ public class MediaEntry extends JsonObject {
     private List<String> genres = new ArrayList<>();
     private int age;
     private double averageRating;
+    private int ratingCount;
     private int createdByUserId;
+    private LocalDateTime createdAt;
 
     public MediaEntry() {
     }
@@ -82,6 +85,14 @@ public class MediaEntry extends JsonObject {
         this.averageRating = averageRating;
     }
 
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(int ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
     public int getCreatedByUserId() {
         return createdByUserId;
     }
@@ -90,6 +101,14 @@ public class MediaEntry extends JsonObject {
         this.createdByUserId = createdByUserId;
     }
 
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
     @Override
     public String toString() {
         return "MediaEntry{" +
@@ -101,7 +120,9 @@ public class MediaEntry extends JsonObject {
                 ", genres=" + genres +
                 ", age=" + age +
                 ", averageRating=" + averageRating +
+                ", ratingCount=" + ratingCount +
                 ", createdByUserId=" + createdByUserId +
+                ", createdAt=" + createdAt +
                 '}';
     }
 
@@ -152,11 +173,21 @@ public class MediaEntry extends JsonObject {
             return this;
         }
 
+        public MediaEntryBuilder ratingCount(int ratingCount) {
+            mediaEntry.ratingCount = ratingCount;
+            return this;
+        }
+
         public MediaEntryBuilder createdByUserId(int createdByUserId) {
             mediaEntry.createdByUserId = createdByUserId;
             return this;
         }
 
+        public MediaEntryBuilder createdAt(LocalDateTime createdAt) {
+            mediaEntry.createdAt = createdAt;
+            return this;
+        }
+
         public MediaEntry build() {
             return mediaEntry;
         }
@@ -0,0 +1,7 @@
+package org.mrp.domain;
+
+import java.util.List;
+
+// next is null on the last page
+public record MediaPage(List<MediaEntry> entries, String next) {
+}
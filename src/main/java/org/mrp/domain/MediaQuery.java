@@ -0,0 +1,99 @@
+package org.mrp.domain;
+
+import java.util.Map;
+
+// filters, order and page of a GET /api/media request, null fields are not filtered on
+public record MediaQuery(String title, String genre, MediaType mediaType, Integer releaseYear,
+                         Integer ageRestriction, Double minRating, MediaSort sort,
+                         Integer limit, MediaCursor cursor) {
+    public static final int MAX_LIMIT = 100;
+
+    public MediaQuery {
+        if (sort == null) {
+            sort = MediaSort.CREATED;
+        }
+    }
+
+    public boolean isPaged() {
+        return limit != null || cursor != null;
+    }
+
+    public static MediaQuery all() {
+        return new MediaQuery(null, null, null, null, null, null, MediaSort.CREATED, null, null);
+    }
+
+    public static MediaQuery fromParams(Map<String, String> params) {
+        Integer releaseYear = null;
+        if (params.containsKey("releaseYear")) {
+            try {
+                releaseYear = Integer.parseInt(params.get("releaseYear"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("releaseYear not Integer");
+            }
+        }
+
+        Integer ageRestriction = null;
+        if (params.containsKey("ageRestriction")) {
+            try {
+                ageRestriction = Integer.parseInt(params.get("ageRestriction"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ageRestriction must be an integer.");
+            }
+        }
+
+        Double minRating = null;
+        if (params.containsKey("rating")) {
+            try {
+                minRating = Double.parseDouble(params.get("rating"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("rating must be a number");
+            }
+            if (minRating < 0.0 || minRating > 5.0) {
+                throw new IllegalArgumentException("rating must be between 0.0 and 5.0.");
+            }
+        }
+
+        MediaType mediaType = null;
+        if (params.containsKey("mediaType")) {
+            try {
+                mediaType = MediaType.valueOf(params.get("mediaType").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("mediaType must be one of: MOVIE, SERIES, GAME");
+            }
+        }
+
+        Integer limit = null;
+        if (params.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(params.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be an integer.");
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT + ".");
+            }
+        }
+
+        MediaSort sort = MediaSort.fromParam(params.get("sortBy"));
+
+        MediaCursor cursor = null;
+        if (params.containsKey("cursor")) {
+            cursor = MediaCursor.decode(params.get("cursor"));
+            if (cursor.sort() != sort) {
+                throw new IllegalArgumentException("cursor does not match sortBy.");
+            }
+        }
+
+        return new MediaQuery(
+                params.get("title"),
+                params.get("genre"),
+                mediaType,
+                releaseYear,
+                ageRestriction,
+                minRating,
+                sort,
+                limit,
+                cursor
+        );
+    }
+}
@@ -0,0 +1,64 @@
+package org.mrp.domain;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+// text and page of a GET /api/media/search request, results are ordered by score and then id, both descending
+// the cursor holds the score of the last entry as the database printed it plus its id
+public record MediaSearch(String text, int limit, String afterScore, Integer afterId) {
+    public static final int DEFAULT_LIMIT = 20;
+    private static final String CURSOR_PREFIX = "SEARCH";
+
+    public static MediaSearch fromParams(Map<String, String> params) {
+        String text = params.get("q");
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("q is required.");
+        }
+        // postgres rejects NUL in text parameters, so it would fail the query instead of the request
+        if (text.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("q must not contain NUL characters.");
+        }
+
+        int limit = DEFAULT_LIMIT;
+        if (params.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(params.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be an integer.");
+            }
+            if (limit < 1 || limit > MediaQuery.MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MediaQuery.MAX_LIMIT + ".");
+            }
+        }
+
+        String afterScore = null;
+        Integer afterId = null;
+        if (params.containsKey("cursor")) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(params.get("cursor")), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", 3);
+                if (parts.length != 3 || !parts[0].equals(CURSOR_PREFIX)) {
+                    throw new IllegalArgumentException("cursor is invalid.");
+                }
+                afterId = Integer.parseInt(parts[1]);
+                // checked here, the database gets it back as text and casts it to NUMERIC,
+                // which rejects NUL, NaN and the suffixes Double.parseDouble takes
+                if (parts[2].indexOf('\0') >= 0) {
+                    throw new IllegalArgumentException("cursor is invalid.");
+                }
+                new BigDecimal(parts[2]);
+                afterScore = parts[2];
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("cursor is invalid.");
+            }
+        }
+        return new MediaSearch(text.trim(), limit, afterScore, afterId);
+    }
+
+    public static String encodeCursor(String score, int id) {
+        String raw = CURSOR_PREFIX + "|" + id + "|" + score;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,27 @@
+package org.mrp.domain;
+
+public enum MediaSort {
+    CREATED,
+    TITLE,
+    RATING,
+    RELEASE_YEAR;
+
+    // unknown values fall back to the default order, like the old in-memory sorting did
+    public static MediaSort fromParam(String sortBy) {
+        if (sortBy == null) {
+            return CREATED;
+        }
+
+        switch (sortBy.toLowerCase()) {
+            case "title":
+                return TITLE;
+            case "score":
+            case "rating":
+                return RATING;
+            case "releaseyear":
+                return RELEASE_YEAR;
+            default:
+                return CREATED;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package org.mrp.domain;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mrp.service.utils.JsonCodec;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -59,15 +59,13 @@ public class UserProfile extends JsonObject {
 
     @Override
     public String toJson() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-
         Map<String, Object> jsonMap = new HashMap<>();
         jsonMap.put("id", id);
         jsonMap.put("userId", userId);
         jsonMap.put("email", email != null ? email : "");
         jsonMap.put("favoriteGenre", favoriteGenre != null ? favoriteGenre : "");
 
-        return mapper.writeValueAsString(jsonMap);
+        return JsonCodec.toJson(jsonMap);
     }
 
     public static UserProfileBuilder builder() {
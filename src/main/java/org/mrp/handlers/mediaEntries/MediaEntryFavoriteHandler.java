@@ -1,19 +1,16 @@
 package org.mrp.handlers.mediaEntries;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.Favorite;
 import org.mrp.domain.MediaEntry;
 import org.mrp.domain.User;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
 import org.mrp.service.FavoriteService;
 import org.mrp.service.MediaService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +20,6 @@ import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class MediaEntryFavoriteHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static UserService userService;
     private static MediaService mediaService;
     private static FavoriteService favoriteService;
@@ -37,19 +33,11 @@ public class MediaEntryFavoriteHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
-        FavoriteRepository favoriteRepository = new FavoriteRepository(connection);
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-
-        userService = new UserService(userRepository,userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
-        favoriteService = new FavoriteService(favoriteRepository);
-
+        ServiceRegistry registry = ServiceRegistry.getInstance();
 
+        userService = registry.getUserService();
+        mediaService = registry.getMediaService();
+        favoriteService = registry.getFavoriteService();
     }
 
     public static void handle(HttpExchange exchange, int entryId) throws IOException {
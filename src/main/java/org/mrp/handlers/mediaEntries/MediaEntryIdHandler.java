@@ -1,30 +1,27 @@
 package org.mrp.handlers.mediaEntries;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.MediaEntry;
-import org.mrp.domain.MediaType;
 import org.mrp.domain.User;
+import org.mrp.handlers.requests.MediaEntryRequest;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.*;
-import org.mrp.persistence.implemenatations.*;
+import org.mrp.http.InvalidRequestException;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.mrp.service.utils.HttpUtils.readJsonBody;
+import static org.mrp.service.utils.HttpUtils.sendErrorResponse;
 import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class MediaEntryIdHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
     private static RatingService ratingService;
@@ -38,18 +35,11 @@ public class MediaEntryIdHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
-
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+        ratingService = registry.getRatingService();
     }
 
     public static void handle(HttpExchange exchange, int entryId) throws IOException {
@@ -101,62 +91,45 @@ public class MediaEntryIdHandler {
             return;
         }
 
-        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        MediaEntryRequest request;
+        try {
+            request = readJsonBody(exchange, MediaEntryRequest.class).validate();
+        } catch (InvalidRequestException e) {
+            sendErrorResponse(exchange, e);
+            return;
+        }
 
         try {
-            Map<String, Object> requestData = mapper.readValue(requestBody, Map.class);
-
-            String title = (String) requestData.get("title");
-            String description = (String) requestData.get("description");
-            String mediaTypeStr = (String) requestData.get("mediaType");
-            Integer releaseYear = (Integer) requestData.get("releaseYear");
-            List<String> genres = (List<String>) requestData.get("genres");
-            Integer ageRestriction = (Integer) requestData.get("ageRestriction");
-
-            if (title == null || title.trim().isEmpty() ||
-                    mediaTypeStr == null || releaseYear == null || ageRestriction == null) {
-                sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
-                        "Missing required fields: title, mediaType, releaseYear, ageRestriction", "text/plain");
+            Optional<MediaEntry> entry = mediaService.getMediaEntryById(entryId);
+            if (entry.isEmpty()) {
+                sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
+                        HttpStatus.NOT_FOUND.getDescription(), "text/plain");
+                return;
+            }
+
+            if(userOpt.get().getId() != entry.get().getCreatedByUserId()){
+                sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
+                        HttpStatus.FORBIDDEN.getDescription(), "text/plain");
                 return;
             }
 
-            try {
-                Optional<MediaEntry> entry = mediaService.getMediaEntryById(entryId);
-                if (entry.isEmpty()) {
-                    sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
-                            HttpStatus.NOT_FOUND.getDescription(), "text/plain");
-                    return;
-                }
-
-                if(userOpt.get().getId() != entry.get().getCreatedByUserId()){
-                    sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
-                            HttpStatus.FORBIDDEN.getDescription(), "text/plain");
-                    return;
-                }
-
-                MediaType mediaType = MediaType.valueOf(mediaTypeStr.toUpperCase());
-                boolean updated = mediaService.updateMediaEntry(
-                        entryId,
-                        title,
-                        description != null ? description : "",
-                        mediaType,
-                        releaseYear,
-                        genres != null ? genres : List.of(),
-                        ageRestriction,
-                        userOpt.get()
-                );
-
-                if (updated) {
-                    Map<String, String> response = Map.of("message", "Media entry updated successfully");
-                    sendJsonResponse(exchange, HttpStatus.OK.getCode(), response);
-                } else {
-                    sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
-                            "You don't have permission to update this", "text/plain");
-                }
-
-            } catch (IllegalArgumentException e) {
-                sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
-                        "Invalid media type. Must be one of: MOVIE, SERIES, GAME", "text/plain");
+            boolean updated = mediaService.updateMediaEntry(
+                    entryId,
+                    request.title(),
+                    request.description(),
+                    request.parsedMediaType(),
+                    request.releaseYear(),
+                    request.genres(),
+                    request.ageRestriction(),
+                    userOpt.get()
+            );
+
+            if (updated) {
+                Map<String, String> response = Map.of("message", "Media entry updated successfully");
+                sendJsonResponse(exchange, HttpStatus.OK.getCode(), response);
+            } else {
+                sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
+                        "You don't have permission to update this", "text/plain");
             }
         } catch (Exception e) {
             e.printStackTrace();
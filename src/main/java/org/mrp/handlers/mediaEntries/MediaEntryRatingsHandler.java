@@ -1,31 +1,27 @@
 package org.mrp.handlers.mediaEntries;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
-import org.mrp.domain.MediaEntry;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
+import org.mrp.handlers.requests.RatingRequest;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
+import org.mrp.http.InvalidRequestException;
 import org.mrp.service.MediaService;
-import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Map;
 import java.util.Optional;
 
+import static org.mrp.service.utils.HttpUtils.readJsonBody;
+import static org.mrp.service.utils.HttpUtils.sendErrorResponse;
 import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class MediaEntryRatingsHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
-    private static RatingService ratingService;
 
     static {
         try {
@@ -36,18 +32,10 @@ public class MediaEntryRatingsHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
+        ServiceRegistry registry = ServiceRegistry.getInstance();
 
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
     }
 
     public static void handle(HttpExchange exchange, int entryId) throws IOException {
@@ -69,43 +57,28 @@ public class MediaEntryRatingsHandler {
             return;
         }
 
-        String requestBody = new String(exchange.getRequestBody().readAllBytes());
-
+        RatingRequest request;
         try {
-            Map<String, Object> requestData = mapper.readValue(requestBody, Map.class);
-
-            Integer stars = (Integer) requestData.get("stars");
-            String comment = (String) requestData.get("comment");
-
-            if(stars == null || comment == null || comment.isEmpty()) {
-                sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
-                        "Missing required fields: stars, comment", "text/plain");
-                return;
-            }
+            request = readJsonBody(exchange, RatingRequest.class).validate();
+        } catch (InvalidRequestException e) {
+            sendErrorResponse(exchange, e);
+            return;
+        }
 
+        try {
             User user = userOpt.get();
 
-            Optional<MediaEntry> entry = mediaService.getMediaEntryById(entryId);
-            if(entry.isEmpty()) {
-                sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
-                        "No Media Found for this ID", "text/plain");
-                return;
-            }
-
-            Optional<Rating> ratingOpt = mediaService.rateMediaEntry(entryId, user.getId(), stars, comment);
+            Optional<Rating> ratingOpt = mediaService.rateMediaEntry(entryId, user.getId(),
+                    request.stars(), request.comment());
 
             if(ratingOpt.isEmpty()){
                 sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
-                        "Failed to create Rating for MediaEntry", "text/plain");
+                        "No Media Found for this ID or invalid stars", "text/plain");
                 return;
             }
 
-            Rating rating = ratingOpt.get();
-
-            Rating savedRating = ratingService.getRatingById(rating.getId()).orElse(null);
-
-            sendJsonResponse(exchange, HttpStatus.CREATED.getCode(),
-                    savedRating);
+            // the upsert already returns the saved row, no need to read it again
+            sendJsonResponse(exchange, HttpStatus.CREATED.getCode(), ratingOpt.get());
         } catch (Exception e) {
             e.printStackTrace();
             sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
@@ -0,0 +1,70 @@
+package org.mrp.handlers.mediaEntries;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.mrp.domain.MediaPage;
+import org.mrp.domain.MediaSearch;
+import org.mrp.domain.User;
+import org.mrp.http.HttpStatus;
+import org.mrp.service.MediaService;
+import org.mrp.service.ServiceRegistry;
+import org.mrp.service.UserService;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
+import static org.mrp.service.utils.HttpUtils.sendResponse;
+
+// GET /api/media/search?q=...&limit=...&cursor=..., always answers with a page
+public class MediaEntrySearchHandler {
+    private static MediaService mediaService;
+    private static UserService userService;
+
+    static {
+        try {
+            initializeServices();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize services", e);
+        }
+    }
+
+    private static void initializeServices() throws SQLException {
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+    }
+
+    public static void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendResponse(exchange, HttpStatus.METHOD_NOT_ALLOWED.getCode(),
+                    HttpStatus.METHOD_NOT_ALLOWED.getDescription(), "text/plain");
+            return;
+        }
+
+        try {
+            Optional<User> userOpt = userService.validateBearerToken(exchange);
+            if (userOpt.isEmpty()) {
+                sendResponse(exchange, HttpStatus.UNAUTHORIZED.getCode(),
+                        HttpStatus.UNAUTHORIZED.getDescription(), "text/plain");
+                return;
+            }
+
+            MediaSearch search;
+            try {
+                search = MediaSearch.fromParams(MediaEntryBaseHandler.parseQueryParams(exchange));
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(), e.getMessage(), "text/plain");
+                return;
+            }
+
+            MediaPage page = mediaService.searchMediaEntries(search);
+            sendJsonResponse(exchange, HttpStatus.OK.getCode(), page);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendResponse(exchange, HttpStatus.INTERNAL_SERVER_ERROR.getCode(),
+                    "Error searching media entries", "text/plain");
+        }
+    }
+}
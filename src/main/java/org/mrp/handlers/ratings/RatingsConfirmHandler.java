@@ -1,19 +1,16 @@
 package org.mrp.handlers.ratings;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.MediaEntry;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.Optional;
@@ -22,7 +19,6 @@ import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class RatingsConfirmHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
     private static RatingService ratingService;
@@ -36,18 +32,11 @@ public class RatingsConfirmHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
-
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+        ratingService = registry.getRatingService();
     }
 
     public static void handle(HttpExchange exchange, int ratingId) throws IOException {
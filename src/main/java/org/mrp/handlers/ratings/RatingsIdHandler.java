@@ -1,27 +1,27 @@
 package org.mrp.handlers.ratings;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
+import org.mrp.handlers.requests.RatingRequest;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
+import org.mrp.http.InvalidRequestException;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.mrp.service.utils.HttpUtils.readJsonBody;
+import static org.mrp.service.utils.HttpUtils.sendErrorResponse;
 import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class RatingsIdHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
     private static RatingService ratingService;
@@ -35,18 +35,11 @@ public class RatingsIdHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
-
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+        ratingService = registry.getRatingService();
     }
 
     public static void handle(HttpExchange exchange, int ratingId) throws IOException {
@@ -68,19 +61,15 @@ public class RatingsIdHandler {
             return;
         }
 
-        String requestBody = new String(exchange.getRequestBody().readAllBytes());
-
+        RatingRequest request;
         try {
-            Map<String, Object> requestData = mapper.readValue(requestBody, Map.class);
-            Integer stars = (Integer) requestData.get("stars");
-            String comment = (String) requestData.get("comment");
-
-            if(stars == null ||comment.isEmpty() || comment == null) {
-                sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
-                        "Missing required fields: stars, comment", "text/plain");
-                return;
-            }
+            request = readJsonBody(exchange, RatingRequest.class).validate();
+        } catch (InvalidRequestException e) {
+            sendErrorResponse(exchange, e);
+            return;
+        }
 
+        try {
             User user = userOpt.get();
 
             Optional<Rating> ratingOpt = ratingService.getRatingById(ratingId);
@@ -98,13 +87,13 @@ public class RatingsIdHandler {
                 return;
             }
 
-            boolean updated = mediaService.updateRating(ratingId, stars, comment, userOpt.get());
+            boolean updated = mediaService.updateRating(ratingId, request.stars(), request.comment(), userOpt.get());
 
             if(updated) {
                 Map<String, Object> response = Map.of(
                         "ratingId", ratingId,
-                        "stars", stars,
-                        "comment", comment
+                        "stars", request.stars(),
+                        "comment", request.comment()
                 );
                 sendJsonResponse(exchange, HttpStatus.OK.getCode(), response);
             } else {
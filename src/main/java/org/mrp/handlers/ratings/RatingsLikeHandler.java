@@ -1,28 +1,25 @@
 package org.mrp.handlers.ratings;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.Like;
-import org.mrp.domain.Rating;
 import org.mrp.domain.User;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class RatingsLikeHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
     private static RatingService ratingService;
@@ -36,18 +33,11 @@ public class RatingsLikeHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
+        ServiceRegistry registry = ServiceRegistry.getInstance();
 
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+        ratingService = registry.getRatingService();
     }
 
     public static void handle(HttpExchange exchange, int ratingId) throws IOException {
@@ -69,31 +59,37 @@ public class RatingsLikeHandler {
 
         User user = userOpt.get();
 
-        Optional<Rating> ratingOpt = ratingService.getRatingById(ratingId);
-        if(ratingOpt.isEmpty()) {
-            sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
-                    "Rating not found", "text/plain");
-            return;
-        }
-
-        Rating rating = ratingOpt.get();
-
-        if(rating.getUserId() == user.getId()) {
-            sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
-                    "Cannot like your own rating", "text/plain");
+        // the service checks that the rating exists and is not the user's own, the reason is only looked up when it fails
+        Optional<Like> likeOpt;
+        try {
+            likeOpt = ratingService.likeRating(ratingId, user);
+        } catch (RejectedExecutionException e) {
+            // write-behind queue is full
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendResponse(exchange, HttpStatus.SERVICE_UNAVAILABLE.getCode(), e.getMessage(), "text/plain");
             return;
         }
 
-        Optional<Like> likeOpt = ratingService.likeRating(ratingId, user);
-
         if(likeOpt.isPresent()) {
             Like like = likeOpt.get();
-            Map<String, Object> response = Map.of(
-                    "likeId", like.getId(),
-                    "ratingId", ratingId,
-                    "userId", user.getId()
-            );
+            Map<String, Object> response = new LinkedHashMap<>();
+            // in write-behind mode the like is not stored yet and has no id
+            if (like.getId() > 0) {
+                response.put("likeId", like.getId());
+            }
+            response.put("ratingId", ratingId);
+            response.put("userId", user.getId());
             sendJsonResponse(exchange, HttpStatus.CREATED.getCode(), response);
+            return;
+        }
+
+        Optional<Integer> owner = ratingService.findRatingOwner(ratingId);
+        if (owner.isEmpty()) {
+            sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
+                    "Rating not found", "text/plain");
+        } else if (owner.get() == user.getId()) {
+            sendResponse(exchange, HttpStatus.FORBIDDEN.getCode(),
+                    "Cannot like your own rating", "text/plain");
         } else {
             sendResponse(exchange, HttpStatus.CONFLICT.getCode(),
                     "Already liked this rating or cannot like your own rating", "text/plain");
@@ -0,0 +1,50 @@
+package org.mrp.handlers.requests;
+
+import org.mrp.domain.MediaType;
+import org.mrp.http.HttpStatus;
+import org.mrp.http.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// body of POST /api/media and PUT /api/media/{id}
+public record MediaEntryRequest(String title, String description, String mediaType, Integer releaseYear,
+                                List<String> genres, Integer ageRestriction) {
+    public MediaEntryRequest {
+        if (description == null) {
+            description = "";
+        }
+        genres = genres == null ? List.of() : List.copyOf(genres);
+    }
+
+    public MediaEntryRequest validate() {
+        List<String> missing = new ArrayList<>();
+        if (title == null || title.trim().isEmpty()) {
+            missing.add("title");
+        }
+        if (mediaType == null) {
+            missing.add("mediaType");
+        }
+        if (releaseYear == null) {
+            missing.add("releaseYear");
+        }
+        if (ageRestriction == null) {
+            missing.add("ageRestriction");
+        }
+        if (!missing.isEmpty()) {
+            throw new InvalidRequestException(HttpStatus.BAD_REQUEST,
+                    "Missing required fields: title, mediaType, releaseYear, ageRestriction", missing);
+        }
+        parsedMediaType();
+        return this;
+    }
+
+    public MediaType parsedMediaType() {
+        try {
+            return MediaType.valueOf(mediaType.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(HttpStatus.BAD_REQUEST,
+                    "Invalid media type. Must be one of: MOVIE, SERIES, GAME", List.of("mediaType"));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.mrp.handlers.requests;
+
+import org.mrp.http.HttpStatus;
+import org.mrp.http.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// body of POST /api/media/{id}/rate and PUT /api/ratings/{id}, the range of stars is checked by the service
+public record RatingRequest(Integer stars, String comment) {
+    public RatingRequest validate() {
+        List<String> missing = new ArrayList<>();
+        if (stars == null) {
+            missing.add("stars");
+        }
+        if (comment == null || comment.isEmpty()) {
+            missing.add("comment");
+        }
+        if (!missing.isEmpty()) {
+            throw new InvalidRequestException(HttpStatus.BAD_REQUEST,
+                    "Missing required fields: stars, comment", missing);
+        }
+        return this;
+    }
+}
@@ -1,19 +1,16 @@
 package org.mrp.handlers.users;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.Favorite;
 import org.mrp.domain.User;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
 import org.mrp.service.FavoriteService;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.List;
@@ -23,8 +20,6 @@ import static org.mrp.service.utils.HttpUtils.sendJsonResponse;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class UserFavoritesHandler {
-
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static MediaService mediaService;
     private static UserService userService;
     private static RatingService ratingService;
@@ -39,20 +34,12 @@ public class UserFavoritesHandler {
     }
 
     private static void initializeServices() throws SQLException {
-        Connection connection = DatabaseConnection.getConnection();
-
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-        FavoriteRepository favoriteRepository = new FavoriteRepository(connection);
+        ServiceRegistry registry = ServiceRegistry.getInstance();
 
-        ratingService = new RatingService(ratingRepository, likeRepository);
-        userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        mediaService = new MediaService(mediaEntryRepository, ratingRepository);
-        favoriteService = new FavoriteService(favoriteRepository);
+        mediaService = registry.getMediaService();
+        userService = registry.getUserService();
+        ratingService = registry.getRatingService();
+        favoriteService = registry.getFavoriteService();
     }
 
     public static void handle(HttpExchange exchange, int userId) throws IOException {
@@ -1,14 +1,11 @@
 package org.mrp.handlers.users;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.User;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.TokenRepository;
-import org.mrp.persistence.implemenatations.UserProfileRepository;
-import org.mrp.persistence.implemenatations.UserRepository;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
+import org.mrp.service.utils.JsonCodec;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -18,17 +15,11 @@ import java.util.Map;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class UserLoginHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
-
     private static final UserService userService;
 
     static {
         try {
-            userService = new UserService(
-                    new UserRepository(DatabaseConnection.getConnection()),
-                    new UserProfileRepository(DatabaseConnection.getConnection()),
-                    new TokenRepository(DatabaseConnection.getConnection())
-            );
+            userService = ServiceRegistry.getInstance().getUserService();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -38,7 +29,7 @@ public class UserLoginHandler {
 
         if ("POST".equals(exchange.getRequestMethod())) {
             String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
-            Map<String, String> requestData = mapper.readValue(requestBody, Map.class);
+            Map<String, String> requestData = JsonCodec.readerFor(Map.class).readValue(requestBody);
             String username = requestData.get("username");
             String password = requestData.get("password");
 
@@ -1,15 +1,12 @@
 package org.mrp.handlers.users;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import org.mrp.domain.User;
 import org.mrp.domain.UserProfile;
 import org.mrp.http.HttpStatus;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.TokenRepository;
-import org.mrp.persistence.implemenatations.UserProfileRepository;
-import org.mrp.persistence.implemenatations.UserRepository;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
+import org.mrp.service.utils.JsonCodec;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -20,22 +17,17 @@ import java.util.Optional;
 import static org.mrp.service.utils.HttpUtils.sendResponse;
 
 public class UserProfileHandler {
-    private static final ObjectMapper mapper = new ObjectMapper();
-
     private static final UserService userService;
 
     static {
         try {
-            userService = new UserService(
-                    new UserRepository(DatabaseConnection.getConnection()),
-                    new UserProfileRepository(DatabaseConnection.getConnection()),
-                    new TokenRepository(DatabaseConnection.getConnection())
-            );
+            userService = ServiceRegistry.getInstance().getUserService();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // the token is validated once here, the GET and PUT handlers rely on it
     public static void handle(HttpExchange exchange, int userId) throws IOException {
         Optional<User> authenticatedUser = userService.validateBearerToken(exchange);
         if (authenticatedUser.isEmpty()) {
@@ -68,13 +60,6 @@ public class UserProfileHandler {
     }
 
     private static void handleGetProfile(HttpExchange exchange, int userId) throws IOException {
-        Optional<User> userOpt = userService.validateBearerToken(exchange);
-        if(userOpt.isEmpty()){
-            sendResponse(exchange, HttpStatus.UNAUTHORIZED.getCode(),
-                    HttpStatus.UNAUTHORIZED.getDescription(), "text/plain");
-            return;
-        }
-
         Optional<UserProfile> userProfile = userService.getUserProfileById(userId);
 
         if (userProfile.isEmpty()) {
@@ -92,20 +77,13 @@ public class UserProfileHandler {
 
         Map<String, String> requestValues;
         try {
-            requestValues = mapper.readValue(requestBody, Map.class);
+            requestValues = JsonCodec.readerFor(Map.class).readValue(requestBody);
         } catch (Exception e) {
             sendResponse(exchange, HttpStatus.BAD_REQUEST.getCode(),
                     "Invalid JSON format", "text/plain");
             return;
         }
 
-        Optional<User> userOpt = userService.validateBearerToken(exchange);
-        if(userOpt.isEmpty()){
-            sendResponse(exchange, HttpStatus.UNAUTHORIZED.getCode(),
-                    HttpStatus.UNAUTHORIZED.getDescription(), "text/plain");
-            return;
-        }
-
         String email = requestValues.get("email");
         String favoriteGenre = requestValues.get("favoriteGenre");
 
@@ -0,0 +1,31 @@
+package org.mrp.http;
+
+import java.util.List;
+
+// a request that is rejected before it reaches a service, sent back as a json error body
+public class InvalidRequestException extends RuntimeException {
+    private final HttpStatus status;
+    private final List<String> fields;
+
+    public InvalidRequestException(HttpStatus status, String message) {
+        this(status, message, List.of());
+    }
+
+    public InvalidRequestException(HttpStatus status, String message, List<String> fields) {
+        super(message);
+        this.status = status;
+        this.fields = List.copyOf(fields);
+    }
+
+    public static InvalidRequestException badRequest(String message) {
+        return new InvalidRequestException(HttpStatus.BAD_REQUEST, message);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,174 @@
+package org.mrp.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mrp.service.utils.HttpUtils.sendResponse;
+
+// all routes of the api in one segment trie, built once at startup and only read while serving
+// a request walks the path segment by segment, {id} segments match positive integers
+public class Router {
+    // the matched template, e.g. "/api/media/{id}/rate", is stored on the exchange under this name
+    public static final String ROUTE_ATTRIBUTE = "org.mrp.route";
+
+    private static final String ID_SEGMENT = "{id}";
+    private static final int[] NO_IDS = new int[0];
+
+    @FunctionalInterface
+    public interface RouteHandler {
+        void handle(HttpExchange exchange, int[] ids) throws IOException;
+    }
+
+    // template is null when no route matched, handler is null when the route exists but not for the method
+    public record Match(String template, RouteHandler handler, int[] ids, Set<String> allowedMethods) {
+        public boolean isFound() {
+            return template != null;
+        }
+
+        public boolean isMethodAllowed() {
+            return handler != null;
+        }
+    }
+
+    private static final Match NOT_FOUND = new Match(null, null, NO_IDS, Set.of());
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node idChild;
+        private String template;
+        private final Map<String, RouteHandler> handlers = new LinkedHashMap<>();
+    }
+
+    private final Node root = new Node();
+    private final Map<String, LongAdder> requestCounts = new LinkedHashMap<>();
+    private int maxIds;
+
+    // the handler still gets the request for every listed method and can tell them apart itself
+    public Router route(String template, RouteHandler handler, String... methods) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Route must start with '/': " + template);
+        }
+        if (methods.length == 0) {
+            throw new IllegalArgumentException("Route needs at least one method: " + template);
+        }
+
+        Node node = root;
+        int ids = 0;
+        for (String segment : template.substring(1).split("/")) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Empty segment in route: " + template);
+            }
+            if (segment.equals(ID_SEGMENT)) {
+                if (node.idChild == null) {
+                    node.idChild = new Node();
+                }
+                node = node.idChild;
+                ids++;
+            } else {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+
+        for (String method : methods) {
+            if (node.handlers.putIfAbsent(method, handler) != null) {
+                throw new IllegalArgumentException("Duplicate route: " + method + " " + template);
+            }
+        }
+        node.template = template;
+        requestCounts.putIfAbsent(template, new LongAdder());
+        maxIds = Math.max(maxIds, ids);
+        return this;
+    }
+
+    public Match match(String method, String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return NOT_FOUND;
+        }
+
+        // one trailing slash is optional, like it was for the old regex routes
+        int end = path.length();
+        if (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        Node node = root;
+        int[] ids = maxIds == 0 ? NO_IDS : new int[maxIds];
+        int idCount = 0;
+        int position = 1;
+        while (position < end) {
+            int slash = path.indexOf('/', position);
+            if (slash == -1 || slash > end) {
+                slash = end;
+            }
+
+            Node next = node.children.get(path.substring(position, slash));
+            if (next == null && node.idChild != null) {
+                int id = parseId(path, position, slash);
+                if (id >= 0) {
+                    ids[idCount++] = id;
+                    next = node.idChild;
+                }
+            }
+            if (next == null) {
+                return NOT_FOUND;
+            }
+            node = next;
+            position = slash + 1;
+        }
+
+        if (node.template == null) {
+            return NOT_FOUND;
+        }
+        int[] matchedIds = idCount == ids.length ? ids : Arrays.copyOf(ids, idCount);
+        return new Match(node.template, node.handlers.get(method), matchedIds, node.handlers.keySet());
+    }
+
+    // -1 for anything that is not a number that fits into an int
+    private static int parseId(String path, int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+        Match match = match(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+        if (!match.isFound()) {
+            sendResponse(exchange, HttpStatus.NOT_FOUND.getCode(),
+                    HttpStatus.NOT_FOUND.getDescription(), "text/plain");
+            return;
+        }
+
+        exchange.setAttribute(ROUTE_ATTRIBUTE, match.template());
+        requestCounts.get(match.template()).increment();
+
+        if (!match.isMethodAllowed()) {
+            exchange.getResponseHeaders().set("Allow", String.join(", ", match.allowedMethods()));
+            sendResponse(exchange, HttpStatus.METHOD_NOT_ALLOWED.getCode(),
+                    HttpStatus.METHOD_NOT_ALLOWED.getDescription(), "text/plain");
+            return;
+        }
+        match.handler().handle(exchange, match.ids());
+    }
+
+    // requests per route template since startup
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        requestCounts.forEach((template, count) -> counts.put(template, count.sum()));
+        return counts;
+    }
+}
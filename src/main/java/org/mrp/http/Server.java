@@ -1,24 +1,34 @@
 package org.mrp.http;
 
 import com.sun.net.httpserver.HttpServer;
-import org.mrp.handlers.mediaEntries.MediaEntryHandler;
-import org.mrp.handlers.ratings.RatingsHandler;
-import org.mrp.handlers.users.UserHandler;
-import org.mrp.handlers.users.UserLoginHandler;
-import org.mrp.handlers.users.UserRegisterHandler;
-import org.mrp.persistence.DatabaseConnection;
-import org.mrp.persistence.implemenatations.*;
+import org.mrp.handlers.mediaEntries.MediaEntryBaseHandler;
+import org.mrp.handlers.mediaEntries.MediaEntryFavoriteHandler;
+import org.mrp.handlers.mediaEntries.MediaEntryIdHandler;
+import org.mrp.handlers.mediaEntries.MediaEntryRatingsHandler;
+import org.mrp.handlers.mediaEntries.MediaEntrySearchHandler;
+import org.mrp.handlers.ratings.RatingsConfirmHandler;
+import org.mrp.handlers.ratings.RatingsIdHandler;
+import org.mrp.handlers.ratings.RatingsLikeHandler;
+import org.mrp.handlers.users.*;
 import org.mrp.service.MediaService;
 import org.mrp.service.RatingService;
+import org.mrp.service.ServiceRegistry;
 import org.mrp.service.UserService;
+import org.mrp.service.utils.ConfigUtils;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class Server {
     private HttpServer server;
+    private ExecutorService executor;
+    private Router router;
     private final int port;
     private final UserService userService;
     private final MediaService mediaService;
@@ -27,37 +37,20 @@ public class Server {
     public Server(int port) throws SQLException {
         this.port = port;
 
-        Connection connection = DatabaseConnection.getConnection();
-
-        UserRepository userRepository = new UserRepository(connection);
-        UserProfileRepository userProfileRepository = new UserProfileRepository(connection);
-        TokenRepository tokenRepository = new TokenRepository(connection);
-        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connection);
-        RatingRepository ratingRepository = new RatingRepository(connection);
-        LikeRepository likeRepository = new LikeRepository(connection);
-
-        this.ratingService = new RatingService(ratingRepository, likeRepository);
-        this.userService = new UserService(userRepository, userProfileRepository, tokenRepository);
-        this.mediaService = new MediaService(mediaEntryRepository, ratingRepository);
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+        this.userService = registry.getUserService();
+        this.mediaService = registry.getMediaService();
+        this.ratingService = registry.getRatingService();
     }
 
     public void start() throws IOException {
         server = HttpServer.create(new InetSocketAddress(port), 0);
 
-        // Auth routes
-        server.createContext("/api/users/register", UserRegisterHandler::handle);
-        server.createContext("/api/users/login", UserLoginHandler::handle);
-
-        // User routes
-        server.createContext("/api/users/", UserHandler::handle);
-
-        // MediaEntry routes
-        server.createContext("/api/media", MediaEntryHandler::handle);
+        router = createRouter();
+        server.createContext("/", router::handle);
 
-        // Rating routes
-        server.createContext("/api/ratings/", RatingsHandler::handle);
-
-        server.setExecutor(null);
+        executor = createExecutor();
+        server.setExecutor(executor);
         server.start();
 
         System.out.println("Server started on port " + port);
@@ -66,10 +59,76 @@ public class Server {
     public void stop() {
         if (server != null) {
             server.stop(0);
+            shutdownExecutor();
+            ServiceRegistry.shutdown();
             System.out.println("Server stopped");
         }
     }
 
+    private static Router createRouter() {
+        return new Router()
+                // Auth routes
+                .route("/api/users/register", (exchange, ids) -> UserRegisterHandler.handle(exchange), "POST")
+                .route("/api/users/login", (exchange, ids) -> UserLoginHandler.handle(exchange), "POST")
+
+                // User routes
+                .route("/api/users/{id}/profile", (exchange, ids) -> UserProfileHandler.handle(exchange, ids[0]), "GET", "PUT")
+                .route("/api/users/{id}/ratings", (exchange, ids) -> UserRatingsHandler.handle(exchange, ids[0]), "GET")
+                .route("/api/users/{id}/favorites", (exchange, ids) -> UserFavoritesHandler.handle(exchange, ids[0]), "GET")
+
+                // MediaEntry routes
+                .route("/api/media", (exchange, ids) -> MediaEntryBaseHandler.handle(exchange), "GET", "POST")
+                .route("/api/media/search", (exchange, ids) -> MediaEntrySearchHandler.handle(exchange), "GET")
+                .route("/api/media/{id}", (exchange, ids) -> MediaEntryIdHandler.handle(exchange, ids[0]), "GET", "PUT", "DELETE")
+                .route("/api/media/{id}/rate", (exchange, ids) -> MediaEntryRatingsHandler.handle(exchange, ids[0]), "POST")
+                .route("/api/media/{id}/favorite", (exchange, ids) -> MediaEntryFavoriteHandler.handle(exchange, ids[0]), "GET", "POST", "DELETE")
+
+                // Rating routes
+                .route("/api/ratings/{id}", (exchange, ids) -> RatingsIdHandler.handle(exchange, ids[0]), "PUT")
+                .route("/api/ratings/{id}/like", (exchange, ids) -> RatingsLikeHandler.handle(exchange, ids[0]), "POST")
+                .route("/api/ratings/{id}/confirm", (exchange, ids) -> RatingsConfirmHandler.handle(exchange, ids[0]), "POST");
+    }
+
+    // handlers block on jdbc most of the time, so requests must not share the single dispatcher thread
+    private static ExecutorService createExecutor() {
+        String mode = ConfigUtils.getProperty("server.executor", "virtual");
+
+        switch (mode.toLowerCase()) {
+            case "virtual":
+                return Executors.newVirtualThreadPerTaskExecutor();
+            case "platform":
+                int poolSize = ConfigUtils.getInt("server.executor.pool.size",
+                        Runtime.getRuntime().availableProcessors() * 4);
+                int queueSize = ConfigUtils.getInt("server.executor.queue.size", 1000);
+                if (poolSize <= 0 || queueSize <= 0) {
+                    throw new IllegalArgumentException("server.executor.pool.size and server.executor.queue.size must be positive");
+                }
+                // when the queue is full the dispatcher runs the request itself, which stops it from accepting more
+                return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueSize),
+                        Thread.ofPlatform().name("http-worker-", 0).factory(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+            default:
+                throw new IllegalArgumentException("Unknown server.executor mode: " + mode + " (expected virtual or platform)");
+        }
+    }
+
+    private void shutdownExecutor() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
     public static void run() throws SQLException, IOException {
         Server server = new Server(8080);
         server.start();
@@ -77,6 +136,10 @@ public class Server {
         Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
     }
 
+    public Router getRouter() {
+        return router;
+    }
+
     public boolean isRunning() {
         //check if server is initialized
         return server != null;
@@ -1,11 +1,9 @@
 package org.mrp.persistence;
 
-import java.sql.Connection;
-
 public abstract class BaseRepository<T, ID> implements Repository<T, ID> {
-    protected final Connection connection;
+    protected final ConnectionPool connectionPool;
 
-    public BaseRepository(Connection connection) {
-        this.connection = connection;
+    public BaseRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
     }
 }
\ No newline at end of file
@@ -0,0 +1,326 @@
+package org.mrp.persistence;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private final String url;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+
+    // one permit per physical connection, idle connections are reused most-recently-returned first
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+    // a thread that already holds a connection gets the same one again, so nested repository
+    // calls (e.g. loading genres while iterating entries) never wait on the pool for a second one
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+
+    private volatile boolean closed;
+
+    private ConnectionPool(ConnectionPoolBuilder builder) {
+        this.url = builder.url;
+        this.maxSize = builder.maxSize;
+        this.acquireTimeoutMillis = builder.acquireTimeoutMillis;
+        this.maxLifetimeMillis = builder.maxLifetimeMillis;
+        this.validationIntervalMillis = builder.validationIntervalMillis;
+        this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        Lease lease = currentLease.get();
+        if (lease != null) {
+            lease.holds++;
+            return lease.proxy;
+        }
+
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis
+                        + "ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            lease = new Lease(takeHealthyConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        currentLease.set(lease);
+        return lease.proxy;
+    }
+
+    private PooledConnection takeHealthyConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now, maxLifetimeMillis)) {
+                closeQuietly(pooled);
+                continue;
+            }
+            // only round-trip to the database for connections that sat idle for a while
+            if (now - pooled.lastUsedAt >= validationIntervalMillis && !isValid(pooled)) {
+                closeQuietly(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return new PooledConnection(DriverManager.getConnection(url));
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Lease lease) {
+        currentLease.remove();
+        PooledConnection pooled = lease.pooled;
+
+        boolean reusable = !closed && !pooled.isExpired(System.currentTimeMillis(), maxLifetimeMillis);
+        if (reusable) {
+            try {
+                // never hand out a connection with someone else's open transaction
+                if (!pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                reusable = !pooled.connection.isClosed();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        if (reusable) {
+            pooled.lastUsedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            closeQuietly(pooled);
+        }
+        permits.release();
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // idle connections are closed right away, borrowed ones when they are returned
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connection pool uses the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    public static ConnectionPoolBuilder builder() {
+        return new ConnectionPoolBuilder();
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final long createdAt;
+        private long lastUsedAt;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        private boolean isExpired(long now, long maxLifetimeMillis) {
+            return maxLifetimeMillis > 0 && now - createdAt >= maxLifetimeMillis;
+        }
+    }
+
+    // what callers actually get: close() hands the connection back instead of closing the socket
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private int holds = 1;
+        private boolean released;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released && --holds == 0) {
+                        released = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.connection + "]";
+                default:
+                    break;
+            }
+
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static class ConnectionPoolBuilder {
+        private String url;
+        private int maxSize = 10;
+        private long acquireTimeoutMillis = 5_000;
+        private long maxLifetimeMillis = 30 * 60 * 1000;
+        private long validationIntervalMillis = 30_000;
+        private int validationTimeoutSeconds = 2;
+
+        public ConnectionPoolBuilder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public ConnectionPoolBuilder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public ConnectionPoolBuilder acquireTimeoutMillis(long acquireTimeoutMillis) {
+            this.acquireTimeoutMillis = acquireTimeoutMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder maxLifetimeMillis(long maxLifetimeMillis) {
+            this.maxLifetimeMillis = maxLifetimeMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder validationIntervalMillis(long validationIntervalMillis) {
+            this.validationIntervalMillis = validationIntervalMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder validationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            return this;
+        }
+
+        public ConnectionPool build() {
+            if (url == null || url.isBlank()) {
+                throw new IllegalArgumentException("Connection pool url is required");
+            }
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("Connection pool size must be positive");
+            }
+            if (acquireTimeoutMillis < 0 || validationIntervalMillis < 0 || validationTimeoutSeconds < 0) {
+                throw new IllegalArgumentException("Connection pool timeouts must not be negative");
+            }
+            return new ConnectionPool(this);
+        }
+    }
+}
@@ -1,44 +1,22 @@
 package org.mrp.persistence;
 
+import org.mrp.service.utils.ConfigUtils;
+
 import java.io.*;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Properties;
 
 public class DatabaseConnection {
-    private static Properties properties = new Properties();
-
-    static {
-        loadProperties();
-    }
-
-    private static void loadProperties() {
-        try (InputStream input = DatabaseConnection.class.getClassLoader()
-                .getResourceAsStream("application.properties")) {
-            if (input == null) {
-                System.err.println("application.properties not found");
-                return;
-            }
-            properties.load(input);
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-        }
-    }
+    private static ConnectionPool connectionPool;
 
     public static void initDatabase() throws SQLException {
-        Connection conn = getConnection();
-
-        if (conn != null) {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
             System.out.println("Connection established\n");
-        }
-
-        try {
             String initStatement = getSQLInitString();
-            assert conn != null;
-            Statement stmt = conn.createStatement();
             stmt.executeUpdate(initStatement);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -64,16 +42,39 @@ public class DatabaseConnection {
     }
 
     public static Connection getConnection() throws SQLException {
-        String username = properties.getProperty("db.user");
-        String password = properties.getProperty("db.password");
-        String baseUrl = properties.getProperty("db.base.url");
+        return DriverManager.getConnection(getDatabaseUrl());
+    }
+
+    // shared by all repositories, created on first use
+    public static synchronized ConnectionPool getConnectionPool() throws SQLException {
+        if (connectionPool == null || connectionPool.isClosed()) {
+            connectionPool = ConnectionPool.builder()
+                    .url(getDatabaseUrl())
+                    .maxSize(ConfigUtils.getInt("db.pool.size", 10))
+                    .acquireTimeoutMillis(ConfigUtils.getLong("db.pool.acquire.timeout.ms", 5_000))
+                    .maxLifetimeMillis(ConfigUtils.getLong("db.pool.max.lifetime.ms", 30 * 60 * 1000))
+                    .validationIntervalMillis(ConfigUtils.getLong("db.pool.validation.interval.ms", 30_000))
+                    .build();
+        }
+        return connectionPool;
+    }
+
+    public static synchronized void closeConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+    }
+
+    private static String getDatabaseUrl() throws SQLException {
+        String username = ConfigUtils.getProperty("db.user");
+        String password = ConfigUtils.getProperty("db.password");
+        String baseUrl = ConfigUtils.getProperty("db.base.url");
 
         if (username == null || password == null || baseUrl == null) {
             throw new SQLException("Database connection parameters are not set.");
         }
 
-        String dbUrl = baseUrl + "?user=" + username + "&password=" + password;
-
-        return DriverManager.getConnection(dbUrl);
+        return baseUrl + "?user=" + username + "&password=" + password;
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package org.mrp.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// the rows of the Genres table in both directions: name -> id and id -> name
+// every entry gets the one String instance kept here for its genre, so "Action" is on the heap once and not once per entry
+public class GenreDictionary {
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    // returns the name already kept for the id, so a name read again from the database is dropped right away
+    public String put(int id, String name) {
+        String canonical = namesById.computeIfAbsent(id, key -> name);
+        idsByName.putIfAbsent(canonical, id);
+        return canonical;
+    }
+
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // null when the genre is not in the dictionary (yet)
+    public Integer idOf(String name) {
+        return idsByName.get(name);
+    }
+
+    public String nameOf(int id) {
+        return namesById.get(id);
+    }
+
+    public int size() {
+        return namesById.size();
+    }
+}
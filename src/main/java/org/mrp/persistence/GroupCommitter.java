@@ -0,0 +1,181 @@
+package org.mrp.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// collects writes of concurrent requests and hands them to the batch writer together, so a burst
+// of requests costs one statement and one commit instead of one per request
+// callers still block until their own item is written and get their own result (or exception) back
+public class GroupCommitter<T, R> implements AutoCloseable {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private record Pending<T, R>(T item, CompletableFuture<R> result) {
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    // gets the items in submit order and must return one result per item in the same order
+    private final Function<List<T>, List<R>> batchWriter;
+    private final BlockingQueue<Pending<T, R>> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private volatile boolean closed;
+
+    public GroupCommitter(String name, int maxBatchSize, long maxWaitMillis, Function<List<T>, List<R>> batchWriter) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis must not be negative");
+        }
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.batchWriter = batchWriter;
+        this.flusher = Thread.ofPlatform().name(name).daemon().start(this::run);
+    }
+
+    public R submit(T item) {
+        if (closed) {
+            throw new IllegalStateException(name + " is closed");
+        }
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Pending<T, R> pending = new Pending<>(item, result);
+        queue.add(pending);
+        // closed in the meantime: if nobody picked the item up it would wait forever
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException(name + " is closed");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending<T, R> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+            } catch (InterruptedException e) {
+                // close() takes care of whatever is still queued
+                break;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    // everything that is already waiting joins the batch, then it waits at most maxWait for more
+    private void collect(List<Pending<T, R>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Pending<T, R> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Pending<T, R>> batch) {
+        batches.increment();
+        items.add(batch.size());
+
+        List<T> batchItems = new ArrayList<>(batch.size());
+        for (Pending<T, R> pending : batch) {
+            batchItems.add(pending.item());
+        }
+
+        try {
+            List<R> results = batchWriter.apply(batchItems);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException(name + " returned " + results.size() + " results for " + batch.size() + " items");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.getFirst().result().completeExceptionally(e);
+                return;
+            }
+            // one bad item must not fail the whole batch, so the items are written one by one
+            for (Pending<T, R> pending : batch) {
+                try {
+                    pending.result().complete(batchWriter.apply(List.of(pending.item())).getFirst());
+                } catch (RuntimeException itemException) {
+                    pending.result().completeExceptionally(itemException);
+                }
+            }
+        }
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getItemCount() {
+        return items.sum();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // waits for the flusher and writes what was submitted while closing
+    // if the flusher does not stop the items that are still queued fail instead
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+            if (flusher.isAlive()) {
+                flusher.interrupt();
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Pending<T, R>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (flusher.isAlive()) {
+            // still stuck in a write: writing here as well would run two batches at once, out of submit order
+            IllegalStateException notWritten = new IllegalStateException(name + " is closed");
+            remaining.forEach(pending -> pending.result().completeExceptionally(notWritten));
+            return;
+        }
+        for (int i = 0; i < remaining.size(); i += maxBatchSize) {
+            flush(remaining.subList(i, Math.min(remaining.size(), i + maxBatchSize)));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.mrp.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// collects the changes of the like counters (MediaRatings.LikeCount) in memory and writes them periodically,
+// so a rating that gets liked a lot is updated once per flush instead of once per like
+// the delta of a rating is merged under the lock of its map bin, so likes of different ratings do not contend
+public class LikeCounter implements AutoCloseable {
+    private final long flushIntervalMillis;
+    // gets rating id -> delta, never an empty map
+    private final Consumer<Map<Integer, Long>> writer;
+    // rating id -> delta, a delta that adds up to 0 is removed right away, so only ratings with unwritten changes are kept
+    // (a LongAdder per rating could not be removed: an add still holding a removed one would be lost)
+    private final Map<Integer, Long> deltas = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    private final LongAdder flushes = new LongAdder();
+    private volatile boolean closed;
+
+    // a flush interval of 0 writes every change right away
+    public LikeCounter(long flushIntervalMillis, Consumer<Map<Integer, Long>> writer) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must not be negative");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.writer = writer;
+        this.flusher = flushIntervalMillis == 0
+                ? null
+                : Thread.ofPlatform().name("like-counter").daemon().start(this::run);
+    }
+
+    public void add(int ratingId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (flusher == null || closed) {
+            writer.accept(Map.of(ratingId, delta));
+            return;
+        }
+        merge(ratingId, delta);
+    }
+
+    private void merge(int ratingId, long delta) {
+        deltas.merge(ratingId, delta, (pending, added) -> pending + added == 0 ? null : pending + added);
+    }
+
+    public void addAll(Map<Integer, Long> changes) {
+        if (flusher == null || closed) {
+            Map<Integer, Long> nonZero = new HashMap<>(changes);
+            nonZero.values().removeIf(delta -> delta == 0);
+            if (!nonZero.isEmpty()) {
+                writer.accept(nonZero);
+            }
+            return;
+        }
+        changes.forEach(this::add);
+    }
+
+    // not written yet, the stored count plus this is the current count
+    // while a flush is running its deltas are already taken from here but maybe not committed yet
+    public long getPending(int ratingId) {
+        return deltas.getOrDefault(ratingId, 0L);
+    }
+
+    // the stored counts were reset, e.g. because all likes were deleted
+    public void clear() {
+        deltas.clear();
+    }
+
+    public synchronized void flush() {
+        Map<Integer, Long> batch = new HashMap<>();
+        // each delta is taken out in one step, a like that comes in meanwhile starts a new one
+        for (Integer ratingId : deltas.keySet()) {
+            Long delta = deltas.remove(ratingId);
+            if (delta != null) {
+                batch.put(ratingId, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            writer.accept(batch);
+            flushes.increment();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            // the next flush tries again
+            batch.forEach(this::merge);
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush();
+        }
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    // ratings with changes that are not written yet
+    public int getPendingRatingCount() {
+        return deltas.size();
+    }
+
+    // later changes are written right away
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
@@ -2,6 +2,7 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.Favorite;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 import org.mrp.service.utils.DateTimeUtil;
 
 import java.sql.*;
@@ -12,8 +13,8 @@ import java.util.Optional;
 
 public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
 
-    public FavoriteRepository(Connection connection) {
-        super(connection);
+    public FavoriteRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     @Override
@@ -23,7 +24,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
         VALUES (?, ?) RETURNING Favorite_ID, Created_At
         """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, favorite.getEntryId());
             statement.setInt(2, favorite.getUserId());
 
@@ -50,7 +52,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
                 WHERE Favorite_ID = ?
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, favoriteId);
             ResultSet rs = statement.executeQuery();
 
@@ -70,7 +73,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
                 WHERE User_ID = ? AND Entry_ID = ?
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             statement.setInt(2, entryId);
             ResultSet rs = statement.executeQuery();
@@ -93,7 +97,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
                 ORDER BY Created_At DESC
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
 
@@ -115,7 +120,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
                 ORDER BY Created_At DESC
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             ResultSet rs = statement.executeQuery();
 
@@ -137,7 +143,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
                 ORDER BY Created_At DESC
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
 
             while (rs.next()) {
@@ -153,7 +160,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
     public void deleteById(Integer favoriteId) {
         String sql = "DELETE FROM FavoriteMedia WHERE Favorite_ID = ?";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, favoriteId);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -164,7 +172,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
     public boolean deleteByUserAndEntry(int userId, int entryId) {
         String sql = "DELETE FROM FavoriteMedia WHERE User_ID = ? AND Entry_ID = ?";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             statement.setInt(2, entryId);
             int rowsDeleted = statement.executeUpdate();
@@ -178,7 +187,8 @@ public class FavoriteRepository extends BaseRepository<Favorite, Integer> {
     public void deleteAll() {
         String sql = "DELETE FROM FavoriteMedia";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete all favorites", e);
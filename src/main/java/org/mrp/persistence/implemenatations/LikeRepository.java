@@ -2,16 +2,24 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.Like;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
+import org.mrp.persistence.LikeCounter;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 public class LikeRepository extends BaseRepository<Like, Integer> {
+    // every insert and delete of a like changes MediaRatings.LikeCount through this
+    private final LikeCounter likeCounter;
 
-    public LikeRepository(Connection connection) {
-        super(connection);
+    // without a shared counter every like updates the count right away
+    public LikeRepository(ConnectionPool connectionPool) {
+        this(connectionPool, new LikeCounter(0, new RatingRepository(connectionPool)::addLikeCounts));
+    }
+
+    public LikeRepository(ConnectionPool connectionPool, LikeCounter likeCounter) {
+        super(connectionPool);
+        this.likeCounter = likeCounter;
     }
 
     public void save(Like like) {
@@ -20,7 +28,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
             VALUES (?, ?) RETURNING Like_ID
             """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)){
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)){
             statement.setInt(1, like.getRatingId());
             statement.setInt(2, like.getUserId());
 
@@ -28,6 +37,7 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
             if (rs.next()) {
                 int likeId = rs.getInt("Like_ID");
                 like.setId(likeId);
+                likeCounter.add(like.getRatingId(), 1);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -35,17 +45,139 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
         }
     }
 
+    // saves many likes with one statement, likes that already exist are returned as they are
+    // the result list has one like with its id per input like, in the same order
+    public List<Like> saveAll(List<Like> likes) {
+        // the second select still sees the table as it was before the insert, so it only returns existing likes
+        String sql = """
+                WITH w AS (
+                    SELECT DISTINCT Rating_ID, User_ID FROM unnest(?::int[], ?::int[]) AS w(Rating_ID, User_ID)
+                ), inserted AS (
+                    INSERT INTO RatingLikes (Rating_ID, User_ID)
+                    SELECT Rating_ID, User_ID FROM w
+                    ON CONFLICT (Rating_ID, User_ID) DO NOTHING
+                    RETURNING Like_ID, Rating_ID, User_ID
+                )
+                SELECT Like_ID, Rating_ID, User_ID, TRUE AS Inserted FROM inserted
+                UNION ALL
+                SELECT l.Like_ID, l.Rating_ID, l.User_ID, FALSE AS Inserted
+                FROM RatingLikes l JOIN w ON l.Rating_ID = w.Rating_ID AND l.User_ID = w.User_ID
+                """;
+
+        Map<Long, Integer> likeIds = new HashMap<>();
+        Map<Integer, Long> added = new HashMap<>();
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ratingIds(likes)));
+            statement.setArray(2, connection.createArrayOf("integer", userIds(likes)));
+
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                likeIds.put(likeKey(rs.getInt("Rating_ID"), rs.getInt("User_ID")), rs.getInt("Like_ID"));
+                if (rs.getBoolean("Inserted")) {
+                    added.merge(rs.getInt("Rating_ID"), 1L, Long::sum);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save likes", e);
+        }
+        likeCounter.addAll(added);
+
+        List<Like> results = new ArrayList<>(likes.size());
+        for (Like like : likes) {
+            Integer likeId = likeIds.get(likeKey(like.getRatingId(), like.getUserId()));
+            if (likeId == null) {
+                // inserted by a concurrent transaction that committed after this statement started
+                likeId = findByRatingAndUser(like.getRatingId(), like.getUserId())
+                        .map(Like::getId)
+                        .orElseThrow(() -> new RuntimeException("Failed to save like"));
+            }
+            results.add(Like.builder()
+                    .id(likeId)
+                    .ratingId(like.getRatingId())
+                    .userId(like.getUserId())
+                    .build());
+        }
+        return results;
+    }
+
+    // writes the given likes and removes the given unlikes in one statement
+    // likes of ratings that were deleted in the meantime are skipped
+    public void applyLikeChanges(List<Like> likes, List<Like> unlikes) {
+        if (likes.isEmpty() && unlikes.isEmpty()) {
+            return;
+        }
+
+        String sql = """
+                WITH added AS (
+                    INSERT INTO RatingLikes (Rating_ID, User_ID)
+                    SELECT w.Rating_ID, w.User_ID FROM unnest(?::int[], ?::int[]) AS w(Rating_ID, User_ID)
+                    WHERE EXISTS (SELECT 1 FROM MediaRatings r WHERE r.Rating_ID = w.Rating_ID)
+                    ON CONFLICT (Rating_ID, User_ID) DO NOTHING
+                    RETURNING Rating_ID
+                ), removed AS (
+                    DELETE FROM RatingLikes l
+                    USING unnest(?::int[], ?::int[]) AS w(Rating_ID, User_ID)
+                    WHERE l.Rating_ID = w.Rating_ID AND l.User_ID = w.User_ID
+                    RETURNING l.Rating_ID
+                )
+                SELECT Rating_ID, SUM(Delta) AS Delta FROM (
+                    SELECT Rating_ID, 1 AS Delta FROM added
+                    UNION ALL
+                    SELECT Rating_ID, -1 AS Delta FROM removed
+                ) changes GROUP BY Rating_ID
+                """;
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ratingIds(likes)));
+            statement.setArray(2, connection.createArrayOf("integer", userIds(likes)));
+            statement.setArray(3, connection.createArrayOf("integer", ratingIds(unlikes)));
+            statement.setArray(4, connection.createArrayOf("integer", userIds(unlikes)));
+
+            Map<Integer, Long> changes = new HashMap<>();
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                changes.put(rs.getInt("Rating_ID"), rs.getLong("Delta"));
+            }
+            likeCounter.addAll(changes);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to write likes", e);
+        }
+    }
+
+    private static Integer[] ratingIds(List<Like> likes) {
+        return likes.stream().map(Like::getRatingId).toArray(Integer[]::new);
+    }
+
+    private static Integer[] userIds(List<Like> likes) {
+        return likes.stream().map(Like::getUserId).toArray(Integer[]::new);
+    }
+
+    private static long likeKey(int ratingId, int userId) {
+        return ((long) ratingId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
     public void update(Like like) {
+        // the like may move to another rating, whose count changes as well
         String sql = """
+                WITH old AS (SELECT Rating_ID FROM RatingLikes WHERE Like_ID = ?)
                 UPDATE RatingLikes SET Rating_ID = ?, User_ID = ?
                 WHERE Like_ID = ?
+                RETURNING (SELECT Rating_ID FROM old) AS Old_Rating_ID
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, like.getRatingId());
-            statement.setInt(2, like.getUserId());
-            statement.setInt(3, like.getId());
-            statement.executeUpdate();
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, like.getId());
+            statement.setInt(2, like.getRatingId());
+            statement.setInt(3, like.getUserId());
+            statement.setInt(4, like.getId());
+            ResultSet rs = statement.executeQuery();
+            if (rs.next() && rs.getInt("Old_Rating_ID") != like.getRatingId()) {
+                likeCounter.add(rs.getInt("Old_Rating_ID"), -1);
+                likeCounter.add(like.getRatingId(), 1);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update like", e);
         }
@@ -57,7 +189,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
                 SELECT Like_ID, Rating_ID, User_ID
                 FROM RatingLikes WHERE Like_ID = ?
                 """;
-        try(PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet rs = statement.executeQuery();
             if(rs.next()) {
@@ -80,7 +213,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
                 SELECT Like_ID, Rating_ID, User_ID
                 FROM RatingLikes WHERE Rating_ID = ? AND User_ID = ?
                 """;
-        try(PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, ratingId);
             statement.setInt(2, userId);
             ResultSet rs = statement.executeQuery();
@@ -106,7 +240,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
                 SELECT Like_ID, Rating_ID, User_ID
                 FROM RatingLikes ORDER BY Like_ID
                 """;
-        try(Statement statement = connection.createStatement()) {
+        try (Connection connection = connectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
             ResultSet rs = statement.executeQuery(sql);
             while(rs.next()) {
                 Like like = Like.builder()
@@ -128,7 +263,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
                 SELECT Like_ID, Rating_ID, User_ID
                 FROM RatingLikes WHERE Rating_ID = ? ORDER BY Like_ID
                 """;
-        try(PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, ratingId);
             ResultSet rs = statement.executeQuery();
             while(rs.next()) {
@@ -151,7 +287,8 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
                 SELECT Like_ID, Rating_ID, User_ID
                 FROM RatingLikes WHERE User_ID = ? ORDER BY Like_ID
                 """;
-        try(PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
             while(rs.next()) {
@@ -168,13 +305,15 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
         }
     }
 
+    // stored count plus the changes the counter has not written yet, a primary key lookup instead of counting the likes
     public int getLikeCountForRating(int ratingId) {
-        String sql = "SELECT COUNT(*) as like_count FROM RatingLikes WHERE Rating_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = "SELECT LikeCount FROM MediaRatings WHERE Rating_ID = ?";
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, ratingId);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
-                return rs.getInt("like_count");
+                return (int) Math.max(0, rs.getInt("LikeCount") + likeCounter.getPending(ratingId));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to get like count for rating", e);
@@ -188,10 +327,14 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
 
     @Override
     public void deleteById(Integer id) {
-        String sql = "DELETE FROM RatingLikes WHERE Like_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = "DELETE FROM RatingLikes WHERE Like_ID = ? RETURNING Rating_ID";
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
-            statement.executeUpdate();
+            ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                likeCounter.add(rs.getInt("Rating_ID"), -1);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete like", e);
         }
@@ -199,10 +342,13 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
 
     public void deleteByRatingAndUser(int ratingId, int userId) {
         String sql = "DELETE FROM RatingLikes WHERE Rating_ID = ? AND User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, ratingId);
             statement.setInt(2, userId);
-            statement.executeUpdate();
+            if (statement.executeUpdate() > 0) {
+                likeCounter.add(ratingId, -1);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete like by rating and user", e);
         }
@@ -210,8 +356,13 @@ public class LikeRepository extends BaseRepository<Like, Integer> {
 
     @Override
     public void deleteAll() {
-        String sql = "DELETE FROM RatingLikes";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = """
+                WITH removed AS (DELETE FROM RatingLikes)
+                UPDATE MediaRatings SET LikeCount = 0 WHERE LikeCount <> 0
+                """;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            likeCounter.clear();
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete all likes", e);
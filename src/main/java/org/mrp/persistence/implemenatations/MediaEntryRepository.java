@@ -1,41 +1,79 @@
 package org.mrp.persistence.implemenatations;
 
+import org.mrp.domain.MediaCursor;
 import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaPage;
+import org.mrp.domain.MediaQuery;
+import org.mrp.domain.MediaSearch;
+import org.mrp.domain.MediaSort;
 import org.mrp.domain.MediaType;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
+    // how many entries there are and the highest id, 0 without entries
+    public record EntryIds(int count, int maxId) {
+    }
+
+    // genres are aggregated per row so list queries need a single round-trip instead of one per entry
+    // only their ids come back, the names are taken from the genre dictionary
+    private static final String SELECT_ENTRY_COLUMNS = """
+            SELECT e.Entry_ID, e.Title, e.Description, e.MediaType, e.ReleaseYear, e.Age,
+            e.AverageRating, e.RatingCount, e.Created_By_User_ID, e.Created_At, e.Updated_At,
+            ARRAY(SELECT mg.Genre_ID FROM MediaGenres mg JOIN Genres g ON g.Genre_ID = mg.Genre_ID
+                  WHERE mg.Entry_ID = e.Entry_ID ORDER BY g.Name) AS Genre_IDs
+            """;
+
+    // the search vector of an entry, written with every insert and update from the title (?1) and description (?2)
+    // 'simple' does not stem, titles and descriptions are not all english
+    private static final String SEARCH_VECTOR = """
+            setweight(to_tsvector('simple', CAST(? AS TEXT)), 'A')
+            || setweight(to_tsvector('simple', COALESCE(CAST(? AS TEXT), '')), 'B')""";
+
+    // genre filters are substring matches on the names, resolved against the small Genres table once per query instead of
+    // an ILIKE per MediaGenres row; resolved in the database, so genres another server added are found as well
+    private static final String GENRE_IDS_CONTAINING = "SELECT g.Genre_ID FROM Genres g WHERE g.Name ILIKE ?";
+
+    // rows per round-trip when all entries are streamed
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
     private final MediaGenreRepository mediaGenreRepository;
 
-    public MediaEntryRepository(Connection connection) {
-        super(connection);
-        this.mediaGenreRepository = new MediaGenreRepository(connection);
+    public MediaEntryRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
+        this.mediaGenreRepository = new MediaGenreRepository(connectionPool);
     }
 
     @Override
     public void save(MediaEntry entity) {
         String sql = """
-                INSERT INTO MediaEntries (Title, Description, MediaType, ReleaseYear, Age, Created_By_User_ID)
-                VALUES (?, ?, ?, ?, ?, ?) RETURNING Entry_ID, Created_At, Updated_At, AverageRating
-                """;
+                INSERT INTO MediaEntries (Title, Description, MediaType, ReleaseYear, Age, Created_By_User_ID, Search_Vector)
+                VALUES (?, ?, ?, ?, ?, ?, %s) RETURNING Entry_ID, Created_At, Updated_At, AverageRating
+                """.formatted(SEARCH_VECTOR);
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, entity.getTitle());
             statement.setString(2, entity.getDescription());
             statement.setString(3, entity.getMediaType().name());
             statement.setInt(4, entity.getReleaseYear());
             statement.setInt(5, entity.getAge());
             statement.setInt(6, entity.getCreatedByUserId());
+            statement.setString(7, entity.getTitle());
+            statement.setString(8, entity.getDescription());
 
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
                 int entryId = rs.getInt("Entry_ID");
                 entity.setId(entryId);
+                entity.setCreatedAt(rs.getTimestamp("Created_At").toLocalDateTime());
                 // save genres after getting the entry ID
                 if (entity.getGenres() != null && !entity.getGenres().isEmpty()) {
                     mediaGenreRepository.saveGenresForEntry(entryId, entity.getGenres());
@@ -49,17 +87,20 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
     public void update(MediaEntry entity) {
         String sql = """
                 UPDATE MediaEntries SET Title = ?, Description = ?, MediaType = ?,
-                ReleaseYear = ?, Age = ?, Updated_At = CURRENT_TIMESTAMP
+                ReleaseYear = ?, Age = ?, Updated_At = CURRENT_TIMESTAMP, Search_Vector = %s
                 WHERE Entry_ID = ?
-                """;
+                """.formatted(SEARCH_VECTOR);
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, entity.getTitle());
             statement.setString(2, entity.getDescription());
             statement.setString(3, entity.getMediaType().name());
             statement.setInt(4, entity.getReleaseYear());
             statement.setInt(5, entity.getAge());
-            statement.setInt(6, entity.getId());
+            statement.setString(6, entity.getTitle());
+            statement.setString(7, entity.getDescription());
+            statement.setInt(8, entity.getId());
 
             statement.executeUpdate();
             // update genres
@@ -73,23 +114,15 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
 
     @Override
     public Optional<MediaEntry> findById(Integer id) {
-        String sql = """
-                SELECT Entry_ID, Title, Description, MediaType, ReleaseYear, Age,
-                AverageRating, Created_By_User_ID, Created_At, Updated_At
-                FROM MediaEntries WHERE Entry_ID = ?
-                """;
+        String sql = SELECT_ENTRY_COLUMNS + "FROM MediaEntries e WHERE e.Entry_ID = ?";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet rs = statement.executeQuery();
 
             if (rs.next()) {
-                MediaEntry entry = mapResultSetToMediaEntry(rs);
-                // load genres for this entry
-                List<String> genres = mediaGenreRepository.findGenresByEntryId(id);
-                entry.setGenres(genres);
-
-                return Optional.of(entry);
+                return Optional.of(mapResultSetToMediaEntry(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find media entry by id", e);
@@ -97,24 +130,34 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         return Optional.empty();
     }
 
+    // the entries that still exist, in no particular order
+    public List<MediaEntry> findByIds(Collection<Integer> ids) {
+        List<MediaEntry> entries = new ArrayList<>();
+        String sql = SELECT_ENTRY_COLUMNS + "FROM MediaEntries e WHERE e.Entry_ID = ANY(?)";
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                entries.add(mapResultSetToMediaEntry(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find media entries by id", e);
+        }
+        return entries;
+    }
+
     @Override
     public List<MediaEntry> findAll() {
         List<MediaEntry> entries = new ArrayList<>();
-        String sql = """
-                SELECT Entry_ID, Title, Description, MediaType, ReleaseYear, Age,
-                AverageRating, Created_By_User_ID, Created_At, Updated_At
-                FROM MediaEntries ORDER BY Created_At DESC
-                """;
+        String sql = SELECT_ENTRY_COLUMNS + "FROM MediaEntries e ORDER BY e.Created_At DESC";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
-                MediaEntry entry = mapResultSetToMediaEntry(rs);
-                // load genres for each entry
-                List<String> genres = mediaGenreRepository.findGenresByEntryId(entry.getId());
-                entry.setGenres(genres);
-
-                entries.add(entry);
+                entries.add(mapResultSetToMediaEntry(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find all media entries", e);
@@ -122,24 +165,55 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         return entries;
     }
 
+    // every entry ascending by id, handed over row by row while the rows are fetched in batches, nothing is collected
+    public void streamAll(Consumer<MediaEntry> consumer) {
+        String sql = SELECT_ENTRY_COLUMNS + "FROM MediaEntries e ORDER BY e.Entry_ID";
+
+        try (Connection connection = connectionPool.getConnection()) {
+            // the driver only fetches in batches inside a transaction, otherwise it reads the whole result first
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    consumer.accept(mapResultSetToMediaEntry(rs));
+                }
+            } finally {
+                // a transaction of the caller stays open, an own one only read
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to stream media entries", e);
+        }
+    }
+
+    public EntryIds findEntryIds() {
+        String sql = "SELECT COUNT(*), COALESCE(MAX(Entry_ID), 0) FROM MediaEntries";
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return new EntryIds(rs.getInt(1), rs.getInt(2));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count media entries", e);
+        }
+    }
+
     public List<MediaEntry> findByUserId(int userId) {
         List<MediaEntry> entries = new ArrayList<>();
-        String sql = """
-                SELECT Entry_ID, Title, Description, MediaType, ReleaseYear, Age,
-                AverageRating, Created_By_User_ID, Created_At, Updated_At
-                FROM MediaEntries WHERE Created_By_User_ID = ? ORDER BY Created_At DESC
-                """;
+        String sql = SELECT_ENTRY_COLUMNS + "FROM MediaEntries e WHERE e.Created_By_User_ID = ? ORDER BY e.Created_At DESC";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
-                MediaEntry entry = mapResultSetToMediaEntry(rs);
-                // load genres for each entry
-                List<String> genres = mediaGenreRepository.findGenresByEntryId(entry.getId());
-                entry.setGenres(genres);
-
-                entries.add(entry);
+                entries.add(mapResultSetToMediaEntry(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find media entries by user id", e);
@@ -153,7 +227,8 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         mediaGenreRepository.deleteGenresForEntry(id);
 
         String sql = "DELETE FROM MediaEntries WHERE Entry_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -167,7 +242,7 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         String deleteGenresSql = "DELETE FROM MediaGenres";
         String deleteEntriesSql = "DELETE FROM MediaEntries";
 
-        try {
+        try (Connection connection = connectionPool.getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(deleteGenresSql)) {
                 statement.executeUpdate();
             }
@@ -180,65 +255,199 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         }
     }
 
-    public void updateAverageRating(int entryId, double averageRating) {
-        String sql = "UPDATE MediaEntries SET AverageRating = ? WHERE Entry_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setDouble(1, averageRating);
-            statement.setInt(2, entryId);
-            statement.executeUpdate();
+    public List<MediaEntry> findByGenre(String genre) {
+        List<MediaEntry> entries = new ArrayList<>();
+        String sql = SELECT_ENTRY_COLUMNS + """
+                FROM MediaEntries e
+                WHERE EXISTS (SELECT 1 FROM MediaGenres mg WHERE mg.Entry_ID = e.Entry_ID AND mg.Genre_ID IN (%s))
+                ORDER BY e.Created_At DESC
+                """.formatted(GENRE_IDS_CONTAINING);
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, "%" + escapeLike(genre) + "%");
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                entries.add(mapResultSetToMediaEntry(rs));
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to update average rating", e);
+            throw new RuntimeException("Failed to find media entries by genre", e);
         }
+        return entries;
     }
 
-    public List<MediaEntry> findByGenre(String genre) {
+    // builds the filters, order and page of GET /api/media as one parameterized statement
+    public MediaPage findByQuery(MediaQuery query) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(SELECT_ENTRY_COLUMNS)
+                .append(", ").append(sortKey(query.sort(), "e")).append(" AS Sort_Key")
+                .append(" FROM MediaEntries e WHERE TRUE");
+
+        if (query.title() != null) {
+            sql.append(" AND e.Title ILIKE ?");
+            params.add("%" + escapeLike(query.title()) + "%");
+        }
+        if (query.genre() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM MediaGenres mg WHERE mg.Entry_ID = e.Entry_ID AND mg.Genre_ID IN (")
+                    .append(GENRE_IDS_CONTAINING).append("))");
+            params.add("%" + escapeLike(query.genre()) + "%");
+        }
+        if (query.mediaType() != null) {
+            sql.append(" AND e.MediaType = ?");
+            params.add(query.mediaType().name());
+        }
+        if (query.releaseYear() != null) {
+            sql.append(" AND e.ReleaseYear = ?");
+            params.add(query.releaseYear());
+        }
+        if (query.ageRestriction() != null) {
+            sql.append(" AND e.Age <= ?");
+            params.add(query.ageRestriction());
+        }
+        if (query.minRating() != null) {
+            sql.append(" AND e.AverageRating >= ?");
+            params.add(query.minRating());
+        }
+
+        // seek past the last entry of the previous page instead of using OFFSET,
+        // so every page costs the same no matter how deep it is
+        if (query.cursor() != null) {
+            sql.append(" AND (").append(sortKey(query.sort(), "e")).append(", e.Entry_ID) ")
+                    .append(isDescending(query.sort()) ? "<" : ">")
+                    .append(" (").append(sortKeyParameter(query.sort())).append(", ?)");
+            params.add(query.cursor().key());
+            params.add(query.cursor().id());
+        }
+
+        String direction = isDescending(query.sort()) ? " DESC" : " ASC";
+        sql.append(" ORDER BY ").append(sortKey(query.sort(), "e")).append(direction)
+                .append(", e.Entry_ID").append(direction);
+
+        // one extra row tells whether there is a next page
+        if (query.limit() != null) {
+            sql.append(" LIMIT ?");
+            params.add(query.limit() + 1);
+        }
+
         List<MediaEntry> entries = new ArrayList<>();
-        String sql = """
-            SELECT DISTINCT e.Entry_ID, e.Title, e.Description, e.MediaType, e.ReleaseYear,
-                            e.Age, e.AverageRating, e.Created_By_User_ID, e.Created_At, e.Updated_At
-                            FROM MediaEntries e JOIN MediaGenres g 
-                                ON e.Entry_ID = g.Entry_ID
-                                WHERE g.Genre ILIKE ?
-                                ORDER BY e.Created_At DESC
-        """;
-
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, "%" + genre + "%");
+        String next = null;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
             ResultSet rs = statement.executeQuery();
+            String lastKey = null;
             while (rs.next()) {
-                MediaEntry entry = mapResultSetToMediaEntry(rs);
+                if (query.limit() != null && entries.size() == query.limit()) {
+                    MediaEntry last = entries.get(entries.size() - 1);
+                    next = new MediaCursor(query.sort(), lastKey, last.getId()).encode();
+                    break;
+                }
+                entries.add(mapResultSetToMediaEntry(rs));
+                lastKey = rs.getString("Sort_Key");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to find media entries by query", e);
+        }
+        return new MediaPage(entries, next);
+    }
 
-                // load genres for each entry
-                List<String> genres = mediaGenreRepository.findGenresByEntryId(entry.getId());
-                entry.setGenres(genres);
+    // full-text matches on title and description plus trigram matches on the title (substrings and typos),
+    // ranked by both; the page seeks past the (score, id) of the cursor like findByQuery does
+    public MediaPage search(MediaSearch search) {
+        String sql = "SELECT * FROM (" + SELECT_ENTRY_COLUMNS + """
+                , ROUND(CAST(ts_rank_cd(e.Search_Vector, q.Query) + similarity(e.Title, ?) AS NUMERIC), 6) AS Score
+                FROM MediaEntries e, websearch_to_tsquery('simple', ?) AS q(Query)
+                WHERE e.Search_Vector @@ q.Query OR e.Title % ? OR e.Title ILIKE ?
+                ) s
+                """ + (search.afterId() == null ? "" : "WHERE (s.Score, s.Entry_ID) < (CAST(? AS NUMERIC), ?) ") + """
+                ORDER BY s.Score DESC, s.Entry_ID DESC LIMIT ?
+                """;
 
-                entries.add(entry);
+        List<MediaEntry> entries = new ArrayList<>();
+        String next = null;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            statement.setString(index++, search.text());
+            statement.setString(index++, search.text());
+            statement.setString(index++, search.text());
+            statement.setString(index++, "%" + escapeLike(search.text()) + "%");
+            if (search.afterId() != null) {
+                statement.setString(index++, search.afterScore());
+                statement.setInt(index++, search.afterId());
+            }
+            // one extra row tells whether there is a next page
+            statement.setInt(index, search.limit() + 1);
+
+            ResultSet rs = statement.executeQuery();
+            String lastScore = null;
+            while (rs.next()) {
+                if (entries.size() == search.limit()) {
+                    next = MediaSearch.encodeCursor(lastScore, entries.get(entries.size() - 1).getId());
+                    break;
+                }
+                entries.add(mapResultSetToMediaEntry(rs));
+                lastScore = rs.getString("Score");
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to find media entries by genre", e);
+            throw new RuntimeException("Failed to search media entries", e);
+        }
+        return new MediaPage(entries, next);
+    }
+
+    // must match the expression indexes in init.sql
+    private static String sortKey(MediaSort sort, String alias) {
+        switch (sort) {
+            case TITLE:
+                return "LOWER(" + alias + ".Title)";
+            case RATING:
+                return alias + ".AverageRating";
+            case RELEASE_YEAR:
+                return "COALESCE(" + alias + ".ReleaseYear, 0)";
+            default:
+                return alias + ".Created_At";
+        }
+    }
+
+    // cursor keys travel as text and are cast back to the type of the sort key
+    private static String sortKeyParameter(MediaSort sort) {
+        switch (sort) {
+            case TITLE:
+                return "?";
+            case RATING:
+                return "CAST(? AS NUMERIC)";
+            case RELEASE_YEAR:
+                return "CAST(? AS INTEGER)";
+            default:
+                return "CAST(? AS TIMESTAMP)";
         }
-        return entries;
+    }
+
+    private static boolean isDescending(MediaSort sort) {
+        return sort != MediaSort.TITLE;
+    }
+
+    // filters are plain substring matches, so LIKE wildcards in the input are taken literally
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     public Optional<MediaEntry> findByRatingId(int ratingId) {
-        String sql = """
-        SELECT e.Entry_ID, e.Title, e.Description, e.MediaType, e.ReleaseYear,
-               e.Age, e.AverageRating, e.Created_By_User_ID, e.Created_At, e.Updated_At
-        FROM MediaEntries e
-        JOIN MediaRatings r ON e.Entry_ID = r.Entry_ID
-        WHERE r.Rating_ID = ?
-        """;
-
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = SELECT_ENTRY_COLUMNS + """
+                FROM MediaEntries e
+                JOIN MediaRatings r ON e.Entry_ID = r.Entry_ID
+                WHERE r.Rating_ID = ?
+                """;
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, ratingId);
             ResultSet rs = statement.executeQuery();
 
             if (rs.next()) {
-                MediaEntry entry = mapResultSetToMediaEntry(rs);
-                List<String> genres = mediaGenreRepository.findGenresByEntryId(entry.getId());
-                entry.setGenres(genres);
-
-                return Optional.of(entry);
+                return Optional.of(mapResultSetToMediaEntry(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find media entry", e);
@@ -256,7 +465,22 @@ public class MediaEntryRepository extends BaseRepository<MediaEntry, Integer> {
         entry.setReleaseYear(rs.getInt("ReleaseYear"));
         entry.setAge(rs.getInt("Age"));
         entry.setAverageRating(rs.getDouble("AverageRating"));
+        entry.setRatingCount(rs.getInt("RatingCount"));
         entry.setCreatedByUserId(rs.getInt("Created_By_User_ID"));
+        Timestamp createdAt = rs.getTimestamp("Created_At");
+        entry.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+
+        List<String> genres = new ArrayList<>();
+        Array genreIds = rs.getArray("Genre_IDs");
+        if (genreIds != null) {
+            for (Integer genreId : (Integer[]) genreIds.getArray()) {
+                String genre = mediaGenreRepository.nameOf(genreId);
+                if (genre != null) {
+                    genres.add(genre);
+                }
+            }
+        }
+        entry.setGenres(genres);
         return entry;
     }
 }
\ No newline at end of file
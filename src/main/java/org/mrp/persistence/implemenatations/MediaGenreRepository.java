@@ -1,17 +1,104 @@
 package org.mrp.persistence.implemenatations;
 
+import org.mrp.persistence.ConnectionPool;
+import org.mrp.persistence.GenreDictionary;
+
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+// genres are stored once in Genres, entries only reference their ids in MediaGenres
 public class MediaGenreRepository {
-    private final Connection connection;
+    private final ConnectionPool connectionPool;
+    private final GenreDictionary genreDictionary;
+
+    public MediaGenreRepository(ConnectionPool connectionPool) {
+        this(connectionPool, new GenreDictionary());
+    }
+
+    public MediaGenreRepository(ConnectionPool connectionPool, GenreDictionary genreDictionary) {
+        this.connectionPool = connectionPool;
+        this.genreDictionary = genreDictionary;
+    }
+
+    public GenreDictionary getGenreDictionary() {
+        if (!genreDictionary.isLoaded()) {
+            loadGenres();
+        }
+        return genreDictionary;
+    }
+
+    // reads every genre into the dictionary, also used when an entry references a genre added by another server
+    public void loadGenres() {
+        String sql = "SELECT Genre_ID, Name FROM Genres";
 
-    public MediaGenreRepository(Connection connection) {
-        this.connection = connection;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                genreDictionary.put(rs.getInt("Genre_ID"), rs.getString("Name"));
+            }
+            genreDictionary.markLoaded();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load genres", e);
+        }
+    }
+
+    // the canonical name of a genre id, null when it does not exist
+    public String nameOf(int genreId) {
+        String name = getGenreDictionary().nameOf(genreId);
+        if (name == null) {
+            loadGenres();
+            name = genreDictionary.nameOf(genreId);
+        }
+        return name;
+    }
+
+    // ids of the genres, genres that are new are added to Genres first
+    public List<Integer> idsOf(List<String> genres) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String genre : genres) {
+            if (getGenreDictionary().idOf(genre) == null) {
+                missing.add(genre);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // the no-op update makes a genre another request added in the meantime return its row as well,
+            // DO NOTHING would return nothing for it and a select would not see it before that request commits
+            String sql = """
+                    INSERT INTO Genres (Name) SELECT unnest(?)
+                    ON CONFLICT (Name) DO UPDATE SET Name = EXCLUDED.Name
+                    RETURNING Genre_ID, Name
+                    """;
+
+            try (Connection connection = connectionPool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                Array names = connection.createArrayOf("varchar", missing.toArray());
+                statement.setArray(1, names);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    genreDictionary.put(rs.getInt("Genre_ID"), rs.getString("Name"));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to save genres", e);
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        for (String genre : genres) {
+            Integer id = genreDictionary.idOf(genre);
+            if (id == null) {
+                throw new IllegalStateException("Genre " + genre + " was not saved");
+            }
+            ids.add(id);
+        }
+        return ids;
     }
 
     public void saveGenresForEntry(int entryId, List<String> genres) {
@@ -19,12 +106,14 @@ public class MediaGenreRepository {
             return;
         }
 
-        String sql = "INSERT INTO MediaGenres (Entry_ID, Genre) VALUES (?, ?)";
+        String sql = "INSERT INTO MediaGenres (Entry_ID, Genre_ID) VALUES (?, ?)";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            for (String genre : genres) {
+        List<Integer> genreIds = idsOf(genres);
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int genreId : genreIds) {
                 statement.setInt(1, entryId);
-                statement.setString(2, genre);
+                statement.setInt(2, genreId);
                 statement.addBatch();
             }
             statement.executeBatch();
@@ -35,14 +124,18 @@ public class MediaGenreRepository {
 
     public List<String> findGenresByEntryId(int entryId) {
         List<String> genres = new ArrayList<>();
-        String sql = "SELECT Genre FROM MediaGenres WHERE Entry_ID = ? ORDER BY Genre";
+        String sql = """
+                SELECT g.Genre_ID, g.Name FROM MediaGenres mg JOIN Genres g ON g.Genre_ID = mg.Genre_ID
+                WHERE mg.Entry_ID = ? ORDER BY g.Name
+                """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             ResultSet rs = statement.executeQuery();
 
             while (rs.next()) {
-                genres.add(rs.getString("Genre"));
+                genres.add(genreDictionary.put(rs.getInt("Genre_ID"), rs.getString("Name")));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find genres for entry " + entryId, e);
@@ -53,7 +146,8 @@ public class MediaGenreRepository {
     public void deleteGenresForEntry(int entryId) {
         String sql = "DELETE FROM MediaGenres WHERE Entry_ID = ?";
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -66,4 +160,4 @@ public class MediaGenreRepository {
         deleteGenresForEntry(entryId);
         saveGenresForEntry(entryId, newGenres);
     }
-}
\ No newline at end of file
+}
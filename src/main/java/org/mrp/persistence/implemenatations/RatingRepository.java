@@ -2,15 +2,18 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.Rating;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 public class RatingRepository extends BaseRepository<Rating, Integer> {
-    public RatingRepository(Connection connection) {
-        super(connection);
+    // one rating of a user for a media entry, as written by upsertAll
+    public record RatingWrite(int entryId, int userId, int starValue, String comment) {
+    }
+
+    public RatingRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     @Override
@@ -20,7 +23,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
             VALUES (?, ?, ?, ?) RETURNING Rating_ID, Updated_At
             """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entity.getMediaEntryId());
             statement.setInt(2, entity.getUserId());
             statement.setDouble(3, entity.getStarValue());
@@ -41,13 +45,103 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
         }
     }
 
+    // insert or replace the rating of a user in one statement, empty when the media entry does not exist
+    // the unique (Entry_ID, User_ID) constraint decides between insert and update, so concurrent clicks cannot race
+    public Optional<Rating> upsert(int entryId, int userId, int starValue, String comment) {
+        String sql = """
+                INSERT INTO MediaRatings (Entry_ID, User_ID, StarValue, Comment)
+                SELECT e.Entry_ID, ?, ?, ? FROM MediaEntries e WHERE e.Entry_ID = ?
+                ON CONFLICT (Entry_ID, User_ID) DO UPDATE
+                SET StarValue = EXCLUDED.StarValue, Comment = EXCLUDED.Comment, Updated_At = CURRENT_TIMESTAMP
+                RETURNING Rating_ID, Entry_ID, User_ID, StarValue, Comment, Updated_At, Is_Confirmed
+                """;
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, userId);
+            statement.setInt(2, starValue);
+            statement.setString(3, comment);
+            statement.setInt(4, entryId);
+
+            ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                return Optional.of(mapResultSetToRating(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save rating", e);
+        }
+        return Optional.empty();
+    }
+
+    // upsert for many ratings at once: one statement and one commit for the whole batch
+    // the result list has one element per write, empty where the media entry does not exist
+    public List<Optional<Rating>> upsertAll(List<RatingWrite> writes) {
+        // one statement cannot update the same row twice, so only the last write per user and entry is sent
+        Map<Long, RatingWrite> latest = new LinkedHashMap<>();
+        for (RatingWrite write : writes) {
+            latest.put(ratingKey(write.entryId(), write.userId()), write);
+        }
+
+        int size = latest.size();
+        Integer[] entryIds = new Integer[size];
+        Integer[] userIds = new Integer[size];
+        Integer[] starValues = new Integer[size];
+        String[] comments = new String[size];
+        int i = 0;
+        for (RatingWrite write : latest.values()) {
+            entryIds[i] = write.entryId();
+            userIds[i] = write.userId();
+            starValues[i] = write.starValue();
+            comments[i] = write.comment();
+            i++;
+        }
+
+        String sql = """
+                INSERT INTO MediaRatings (Entry_ID, User_ID, StarValue, Comment)
+                SELECT w.Entry_ID, w.User_ID, w.StarValue, w.Comment
+                FROM unnest(?::int[], ?::int[], ?::int[], ?::text[]) AS w(Entry_ID, User_ID, StarValue, Comment)
+                WHERE EXISTS (SELECT 1 FROM MediaEntries e WHERE e.Entry_ID = w.Entry_ID)
+                ON CONFLICT (Entry_ID, User_ID) DO UPDATE
+                SET StarValue = EXCLUDED.StarValue, Comment = EXCLUDED.Comment, Updated_At = CURRENT_TIMESTAMP
+                RETURNING Rating_ID, Entry_ID, User_ID, StarValue, Comment, Updated_At, Is_Confirmed
+                """;
+
+        Map<Long, Rating> saved = new HashMap<>();
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", entryIds));
+            statement.setArray(2, connection.createArrayOf("integer", userIds));
+            statement.setArray(3, connection.createArrayOf("integer", starValues));
+            statement.setArray(4, connection.createArrayOf("text", comments));
+
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                Rating rating = mapResultSetToRating(rs);
+                saved.put(ratingKey(rating.getMediaEntryId(), rating.getUserId()), rating);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save ratings", e);
+        }
+
+        List<Optional<Rating>> results = new ArrayList<>(writes.size());
+        for (RatingWrite write : writes) {
+            results.add(Optional.ofNullable(saved.get(ratingKey(write.entryId(), write.userId()))));
+        }
+        return results;
+    }
+
+    private static long ratingKey(int entryId, int userId) {
+        return ((long) entryId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
     public void update(Rating rating) {
         String sql = """
                 UPDATE MediaRatings SET StarValue = ?, Comment = ?, Updated_At = CURRENT_TIMESTAMP, Is_Confirmed = ?
                 WHERE Rating_ID = ?
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setDouble(1, rating.getStarValue());
             statement.setString(2, rating.getComment());
             statement.setBoolean(3, rating.isConfirmed());
@@ -65,7 +159,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
                 FROM MediaRatings WHERE Rating_ID = ?
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet rs = statement.executeQuery();
 
@@ -84,7 +179,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
                 FROM MediaRatings WHERE Entry_ID = ? AND User_ID = ?
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             statement.setInt(2, userId);
             ResultSet rs = statement.executeQuery();
@@ -106,7 +202,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
             FROM MediaRatings ORDER BY Updated_At DESC
             """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
                 ratings.add(mapResultSetToRating(rs));
@@ -124,7 +221,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
                 FROM MediaRatings WHERE Entry_ID = ? ORDER BY Updated_At DESC
                 """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -143,7 +241,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
                 FROM MediaRatings WHERE User_ID = ? ORDER BY Updated_At DESC
             """;
 
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -158,7 +257,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
     @Override
     public void deleteById(Integer id) {
         String sql = "DELETE FROM MediaRatings WHERE Rating_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -169,7 +269,8 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
     @Override
     public void deleteAll() {
         String sql = "DELETE FROM MediaRatings";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete all ratings", e);
@@ -177,8 +278,13 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
     }
 
     public double calculateAverageRating(int entryId) {
-        String sql = "SELECT AVG(StarValue) as average FROM MediaRatings WHERE Entry_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        // sum and count are kept up to date by a trigger on MediaRatings, so this does not scan the ratings
+        String sql = """
+                SELECT CASE WHEN RatingCount = 0 THEN 0 ELSE RatingSum::float8 / RatingCount END AS average
+                FROM MediaEntries WHERE Entry_ID = ?
+                """;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, entryId);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -190,6 +296,45 @@ public class RatingRepository extends BaseRepository<Rating, Integer> {
         return 0.0;
     }
 
+    // adds the collected like count changes (rating id -> delta) with one statement, see LikeCounter
+    public void addLikeCounts(Map<Integer, Long> deltas) {
+        String sql = """
+                UPDATE MediaRatings r SET LikeCount = r.LikeCount + d.Delta
+                FROM unnest(?::int[], ?::bigint[]) AS d(Rating_ID, Delta)
+                WHERE r.Rating_ID = d.Rating_ID
+                """;
+
+        // same order in every flush so two flushes never lock the rows the other way round
+        List<Integer> ratingIds = new ArrayList<>(new TreeSet<>(deltas.keySet()));
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", ratingIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("bigint", ratingIds.stream().map(deltas::get).toArray()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update like counts", e);
+        }
+    }
+
+    // sets LikeCount to the number of RatingLikes again where they differ,
+    // e.g. after a crash lost the changes the LikeCounter had not written yet
+    public int recountLikes() {
+        String sql = """
+                UPDATE MediaRatings r SET LikeCount = c.Likes
+                FROM (SELECT r.Rating_ID, COUNT(l.Like_ID) AS Likes
+                      FROM MediaRatings r LEFT JOIN RatingLikes l ON l.Rating_ID = r.Rating_ID
+                      GROUP BY r.Rating_ID) c
+                WHERE r.Rating_ID = c.Rating_ID AND r.LikeCount <> c.Likes
+                """;
+
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to recount likes", e);
+        }
+    }
+
     private Rating mapResultSetToRating(ResultSet rs) throws SQLException {
         Rating rating = new Rating();
         rating.setId(rs.getInt("Rating_ID"));
@@ -2,23 +2,27 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.UserToken;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 import org.mrp.service.utils.DateTimeUtil;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class TokenRepository extends BaseRepository<UserToken, String> {
 
-    public TokenRepository(Connection connection) {
-        super(connection);
+    public TokenRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     @Override
     public void save(UserToken userToken) {
         String sql = "INSERT INTO UserTokens (Token, User_ID, Created_At) VALUES (?,?,?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, userToken.token());
             statement.setInt(2, userToken.userId());
             statement.setTimestamp(3, DateTimeUtil.toTimestamp(userToken.createdAt()));
@@ -31,7 +35,8 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
     @Override
     public Optional<UserToken> findById(String tokenString) {
         String sql = "SELECT Token, User_ID, Created_At FROM UserTokens WHERE Token = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, tokenString);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -52,7 +57,8 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
     public List<UserToken> findAll() {
         String sql = "SELECT Token, User_ID, Created_At FROM UserTokens";
         List<UserToken> tokens = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
                 UserToken userToken = UserToken.builder()
@@ -71,7 +77,8 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
     @Override
     public void deleteById(String token) {
         String sql = "DELETE FROM UserTokens WHERE Token = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, token);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -82,7 +89,8 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
     @Override
     public void deleteAll() {
         String sql = "DELETE FROM UserTokens";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -91,7 +99,8 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
 
     public void deleteByUserId(Integer userId) {
         String sql = "DELETE FROM UserTokens WHERE User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -99,9 +108,43 @@ public class TokenRepository extends BaseRepository<UserToken, String> {
         }
     }
 
+    // the signed tokens of the user issued up to revokedAtMillis are no longer valid, a later revocation wins
+    public void saveRevocation(int userId, long revokedAtMillis) {
+        String sql = """
+                INSERT INTO TokenRevocations (User_ID, Revoked_At) VALUES (?, ?)
+                ON CONFLICT (User_ID) DO UPDATE SET Revoked_At = GREATEST(TokenRevocations.Revoked_At, EXCLUDED.Revoked_At)
+                """;
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, userId);
+            statement.setLong(2, revokedAtMillis);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // user id -> revoked at, for the revocations after sinceMillis
+    public Map<Integer, Long> findRevocationsSince(long sinceMillis) {
+        String sql = "SELECT User_ID, Revoked_At FROM TokenRevocations WHERE Revoked_At > ?";
+        Map<Integer, Long> revocations = new HashMap<>();
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, sinceMillis);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                revocations.put(rs.getInt("User_ID"), rs.getLong("Revoked_At"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return revocations;
+    }
+
     public Optional<UserToken> findByUserId(Integer userId) {
         String sql = "SELECT Token, User_ID, Created_At FROM UserTokens WHERE User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             UserToken userToken = null;
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
@@ -2,6 +2,7 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.UserProfile;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -12,14 +13,15 @@ import java.util.List;
 import java.util.Optional;
 
 public class UserProfileRepository extends BaseRepository<UserProfile, Integer> {
-    public UserProfileRepository(Connection connection) {
-        super(connection);
+    public UserProfileRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     @Override
     public void save(UserProfile userProfile) {
         String sql = "INSERT INTO UserProfiles (Profile_User_ID, Email, FavoriteGenre) VALUES (?, ?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userProfile.getUserId());
             statement.setString(2, userProfile.getEmail());
             statement.setString(3, userProfile.getFavoriteGenre());
@@ -32,7 +34,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
     @Override
     public Optional<UserProfile> findById(Integer profileId) {
         String sql = "SELECT * FROM UserProfiles WHERE Profile_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, profileId);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -52,7 +55,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
 
     public Optional<UserProfile> findByUserId(Integer userId) {
         String sql = "SELECT * FROM UserProfiles WHERE Profile_User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, userId);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -76,7 +80,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
                 LEFT JOIN Users u ON up.Profile_User_ID = u.User_ID 
                 WHERE u.Username = ?
                 """;
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, username);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -97,7 +102,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
     public List<UserProfile> findAll() {
         String sql = "SELECT * FROM UserProfiles";
         List<UserProfile> userProfiles = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
                 UserProfile userProfile = UserProfile.builder()
@@ -116,7 +122,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
     @Override
     public void deleteById(Integer integer) {
         String sql = "DELETE FROM UserProfiles WHERE Profile_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, integer);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -127,7 +134,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
     @Override
     public void deleteAll() {
         String sql = "DELETE FROM UserProfiles";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -136,7 +144,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
 
     public void update(UserProfile userProfile) {
         String sql = "UPDATE UserProfiles SET Email = ?, FavoriteGenre = ? WHERE Profile_User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, userProfile.getEmail());
             statement.setString(2, userProfile.getFavoriteGenre());
             statement.setInt(3, userProfile.getUserId());
@@ -148,7 +157,8 @@ public class UserProfileRepository extends BaseRepository<UserProfile, Integer>
 
     public void updateById(UserProfile userProfile) {
         String sql = "UPDATE UserProfiles SET Email = ?, FavoriteGenre = ? WHERE Profile_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, userProfile.getEmail());
             statement.setString(2, userProfile.getFavoriteGenre());
             statement.setInt(3, userProfile.getId());
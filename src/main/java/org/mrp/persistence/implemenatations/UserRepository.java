@@ -2,6 +2,7 @@ package org.mrp.persistence.implemenatations;
 
 import org.mrp.domain.User;
 import org.mrp.persistence.BaseRepository;
+import org.mrp.persistence.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -9,14 +10,15 @@ import java.util.List;
 import java.util.Optional;
 
 public class UserRepository extends BaseRepository<User, Integer> {
-    public UserRepository(Connection connection) {
-        super(connection);
+    public UserRepository(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     @Override
     public void save(User user) {
         String sql = "INSERT INTO Users (Username, Password, Salt) VALUES (?, ?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, user.getUsername());
             statement.setString(2, user.getPassword());
             statement.setString(3, user.getSalt());
@@ -36,7 +38,8 @@ public class UserRepository extends BaseRepository<User, Integer> {
     @Override
     public Optional<User> findById(Integer id) {
         String sql = "SELECT User_ID, Username, Password, Salt FROM Users WHERE User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -58,7 +61,8 @@ public class UserRepository extends BaseRepository<User, Integer> {
     public List<User> findAll() {
         String sql = "SELECT User_ID, Username, Password, Salt FROM Users";
         List<User> userList = new ArrayList<>();
-        try (Statement statement = connection.createStatement()) {
+        try (Connection connection = connectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
             ResultSet rs = statement.executeQuery(sql);
             while (rs.next()) {
                 User user = User.builder()
@@ -78,7 +82,8 @@ public class UserRepository extends BaseRepository<User, Integer> {
     @Override
     public void deleteById(Integer id) {
         String sql = "DELETE FROM Users WHERE User_ID = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setInt(1, id);
             statement.executeUpdate();
         } catch (SQLException e) {
@@ -89,7 +94,8 @@ public class UserRepository extends BaseRepository<User, Integer> {
     @Override
     public void deleteAll() {
         String sql = "DELETE FROM Users";
-        try (Statement statement = connection.createStatement()) {
+        try (Connection connection = connectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
             statement.execute(sql);
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -98,7 +104,8 @@ public class UserRepository extends BaseRepository<User, Integer> {
 
     public Optional<User> findByUsername(String username) {
         String sql = "SELECT User_ID, Username, Password, Salt FROM Users WHERE Username = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, username);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
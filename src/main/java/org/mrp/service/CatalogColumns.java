@@ -0,0 +1,203 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+
+import java.util.*;
+
+// the filterable fields of the catalog as primitive arrays, one slot per position (the order of the snapshot)
+// a filter scan walks a few contiguous arrays instead of following every entry, its boxed fields and its genre list
+// scans may return more positions than match (see Query), never fewer, the caller checks the entries it keeps
+public final class CatalogColumns {
+    public static final byte NO_MEDIA_TYPE = -1;
+    public static final int NO_RELEASE_YEAR = Integer.MIN_VALUE;
+    // genre ids fit into one long per entry up to this many different genres
+    private static final int MASK_GENRES = 64;
+
+    private static final boolean VECTOR_SCAN = vectorApiAvailable();
+
+    // a null field is not filtered, the genre is a lowercased substring like in MediaQuery
+    public record Query(MediaType mediaType, Integer releaseYear, Integer maxAge, Double minRating, String genre) {
+    }
+
+    private final int size;
+    final byte[] mediaTypes;
+    final int[] releaseYears;
+    // ages outside the byte range are clamped, the age filter is then left to the caller
+    final byte[] ages;
+    private final boolean agesExact;
+    // rounding to float keeps the order, so a float comparison never drops an entry the double comparison keeps
+    final float[] ratings;
+    // lowercased genre -> id, the ids of an entry are genreIds[genreOffsets[p]..genreOffsets[p + 1]]
+    private final Map<String, Integer> genreDictionary = new LinkedHashMap<>();
+    private final int[] genreOffsets;
+    private final int[] genreIds;
+    // bit i is set when the entry has genre i, null when there are more than MASK_GENRES genres
+    final long[] genreMasks;
+
+    public CatalogColumns(List<MediaEntry> entries) {
+        size = entries.size();
+        mediaTypes = new byte[size];
+        releaseYears = new int[size];
+        ages = new byte[size];
+        ratings = new float[size];
+        genreOffsets = new int[size + 1];
+
+        boolean exact = true;
+        int[] ids = new int[size];
+        int idCount = 0;
+        for (int p = 0; p < size; p++) {
+            MediaEntry entry = entries.get(p);
+            mediaTypes[p] = entry.getMediaType() == null ? NO_MEDIA_TYPE : (byte) entry.getMediaType().ordinal();
+            releaseYears[p] = entry.getReleaseYear() == null ? NO_RELEASE_YEAR : entry.getReleaseYear();
+            int age = entry.getAge();
+            ages[p] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, age));
+            exact &= ages[p] == age;
+            ratings[p] = (float) entry.getAverageRating();
+
+            genreOffsets[p] = idCount;
+            for (String genre : entry.getGenres() == null ? List.<String>of() : entry.getGenres()) {
+                if (idCount == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2 + 1);
+                }
+                ids[idCount++] = genreDictionary.computeIfAbsent(genre == null ? "" : genre.toLowerCase(Locale.ROOT),
+                        g -> genreDictionary.size());
+            }
+        }
+        genreOffsets[size] = idCount;
+        genreIds = Arrays.copyOf(ids, idCount);
+        agesExact = exact;
+
+        if (genreDictionary.size() <= MASK_GENRES) {
+            genreMasks = new long[size];
+            for (int p = 0; p < size; p++) {
+                for (int i = genreOffsets[p]; i < genreOffsets[p + 1]; i++) {
+                    genreMasks[p] |= 1L << genreIds[i];
+                }
+            }
+        } else {
+            genreMasks = null;
+        }
+    }
+
+    public static boolean isVectorScanAvailable() {
+        return VECTOR_SCAN;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] scan(Query query) {
+        return scan(query, VECTOR_SCAN);
+    }
+
+    // bit p of the result is set when position p passes the query
+    public long[] scan(Query query, boolean vectorized) {
+        if (vectorized && !VECTOR_SCAN) {
+            throw new IllegalStateException("The jdk.incubator.vector module is not available");
+        }
+        long[] bits = new long[(size + 63) >>> 6];
+        Arrays.fill(bits, -1L);
+        if (size % 64 != 0) {
+            bits[bits.length - 1] = (1L << size) - 1;
+        }
+
+        boolean[] genres = query.genre() == null ? null : matchingGenres(query.genre().toLowerCase(Locale.ROOT));
+        if (genres != null && !any(genres)) {
+            return new long[bits.length];
+        }
+
+        if (vectorized) {
+            VectorScan.scan(this, query, genres == null ? 0 : mask(genres), bits);
+        } else {
+            scalarScan(query, bits);
+        }
+        if (genres != null && (genreMasks == null || !vectorized)) {
+            genreScan(genres, bits);
+        }
+        return bits;
+    }
+
+    // the same checks as VectorScan one entry at a time, the genres are checked by the caller
+    private void scalarScan(Query query, long[] bits) {
+        byte mediaType = query.mediaType() == null ? 0 : (byte) query.mediaType().ordinal();
+        int releaseYear = query.releaseYear() == null ? 0 : query.releaseYear();
+        boolean byAge = query.maxAge() != null && agesExact;
+        int maxAge = byAge ? query.maxAge() : 0;
+        float minRating = query.minRating() == null ? 0 : query.minRating().floatValue();
+        for (int p = 0; p < size; p++) {
+            if ((query.mediaType() != null && mediaTypes[p] != mediaType)
+                    || (query.releaseYear() != null && releaseYears[p] != releaseYear)
+                    || (byAge && ages[p] > maxAge)
+                    || (query.minRating() != null && ratings[p] < minRating)) {
+                bits[p >>> 6] &= ~(1L << p);
+            }
+        }
+    }
+
+    private void genreScan(boolean[] matching, long[] bits) {
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int p = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (!hasGenre(p, matching)) {
+                    bits[w] &= ~(1L << p);
+                }
+            }
+        }
+    }
+
+    private boolean hasGenre(int position, boolean[] matching) {
+        for (int i = genreOffsets[position]; i < genreOffsets[position + 1]; i++) {
+            if (matching[genreIds[i]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // genres match as substrings, so every dictionary entry that contains the filter counts
+    private boolean[] matchingGenres(String genre) {
+        boolean[] matching = new boolean[genreDictionary.size()];
+        genreDictionary.forEach((name, id) -> matching[id] = name.contains(genre));
+        return matching;
+    }
+
+    boolean filtersAge() {
+        return agesExact;
+    }
+
+    private static boolean any(boolean[] values) {
+        for (boolean value : values) {
+            if (value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long mask(boolean[] genres) {
+        long mask = 0;
+        for (int i = 0; i < genres.length && i < MASK_GENRES; i++) {
+            if (genres[i]) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    // the module has to be added to the jvm (--add-modules jdk.incubator.vector), otherwise scans stay scalar
+    private static boolean vectorApiAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            VectorScan.warmUp();
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaQuery;
+import org.mrp.domain.MediaType;
+
+// a MediaQuery compiled once per request: the text filters are lowercased and the numbers unboxed up front,
+// so checking an entry does not allocate or parse anything
+// one final class with plain fields instead of a chain of lambdas keeps the call in find() monomorphic
+final class CatalogFilter {
+    final CatalogItem.Text title;
+    final CatalogItem.Text genre;
+    final MediaType mediaType;
+    final boolean byReleaseYear;
+    final int releaseYear;
+    final boolean byAge;
+    final int maxAge;
+    final boolean byRating;
+    final double minRating;
+    final CatalogColumns.Query columnQuery;
+
+    CatalogFilter(MediaQuery query) {
+        this.title = query.title() == null ? null : CatalogItem.Text.of(query.title());
+        this.genre = query.genre() == null ? null : CatalogItem.Text.of(query.genre());
+        this.mediaType = query.mediaType();
+        this.byReleaseYear = query.releaseYear() != null;
+        this.releaseYear = byReleaseYear ? query.releaseYear() : 0;
+        this.byAge = query.ageRestriction() != null;
+        this.maxAge = byAge ? query.ageRestriction() : 0;
+        this.byRating = query.minRating() != null;
+        this.minRating = byRating ? query.minRating() : 0;
+        this.columnQuery = new CatalogColumns.Query(mediaType, query.releaseYear(), query.ageRestriction(),
+                query.minRating(), genre == null ? null : genre.value());
+    }
+
+    // media type, genre and release year pick a few bitmaps, ranges alone are cheaper to scan
+    boolean hasEqualityFilter() {
+        return genre != null || mediaType != null || byReleaseYear;
+    }
+
+    // everything but the title has an index
+    boolean isIndexed() {
+        return genre != null || mediaType != null || byReleaseYear || byAge || byRating;
+    }
+
+    boolean isEmpty() {
+        return title == null && !isIndexed();
+    }
+
+    boolean test(CatalogItem item) {
+        if (mediaType != null && item.mediaType() != mediaType) {
+            return false;
+        }
+        if (byReleaseYear && (!item.hasReleaseYear() || item.releaseYear() != releaseYear)) {
+            return false;
+        }
+        if (byAge && item.age() > maxAge) {
+            return false;
+        }
+        if (byRating && item.averageRating() < minRating) {
+            return false;
+        }
+        if (title != null && !item.titleContains(title)) {
+            return false;
+        }
+        return genre == null || item.genreContains(genre);
+    }
+}
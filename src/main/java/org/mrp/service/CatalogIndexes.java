@@ -0,0 +1,273 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaType;
+import org.mrp.service.utils.CompressedBitmap;
+
+import java.util.*;
+
+// positions of the items per filter value, so a filter query combines bitmaps instead of checking every entry
+final class CatalogIndexes {
+    private final Map<MediaType, CompressedBitmap> byMediaType;
+    // lowercased genre -> entries with it
+    private final Map<String, CompressedBitmap> byGenre;
+    private final Map<Integer, CompressedBitmap> byReleaseYear;
+    // age -> entries with at most that age, so an age restriction is a single lookup
+    private final NavigableMap<Integer, CompressedBitmap> byMaxAge;
+    // positions ascending by average rating and the ratings in the same order, for the minimum rating
+    private final int[] byRating;
+    private final double[] ratings;
+
+    CatalogIndexes(CatalogItem[] items) {
+        byMediaType = new EnumMap<>(MediaType.class);
+        byGenre = new HashMap<>();
+        byReleaseYear = new HashMap<>();
+        byMaxAge = new TreeMap<>();
+        Map<MediaType, Positions> mediaTypes = new EnumMap<>(MediaType.class);
+        Map<String, Positions> genres = new HashMap<>();
+        Map<Integer, Positions> releaseYears = new HashMap<>();
+        TreeMap<Integer, Positions> ages = new TreeMap<>();
+        int live = 0;
+        for (int position = 0; position < items.length; position++) {
+            if (items[position] == null) {
+                continue;
+            }
+            live++;
+            CatalogItem item = items[position];
+            if (item.mediaType() != null) {
+                mediaTypes.computeIfAbsent(item.mediaType(), type -> new Positions()).add(position);
+            }
+            // an entry with the same genre twice must only be added once
+            for (String genre : new HashSet<>(Arrays.asList(item.genres()))) {
+                genres.computeIfAbsent(genre, g -> new Positions()).add(position);
+            }
+            if (item.hasReleaseYear()) {
+                releaseYears.computeIfAbsent(item.releaseYear(), year -> new Positions()).add(position);
+            }
+            ages.computeIfAbsent(item.age(), age -> new Positions()).add(position);
+        }
+
+        mediaTypes.forEach((type, positions) -> byMediaType.put(type, positions.toBitmap()));
+        genres.forEach((genre, positions) -> byGenre.put(genre, positions.toBitmap()));
+        releaseYears.forEach((year, positions) -> byReleaseYear.put(year, positions.toBitmap()));
+        CompressedBitmap atMost = CompressedBitmap.EMPTY;
+        for (Map.Entry<Integer, Positions> age : ages.entrySet()) {
+            atMost = atMost.or(age.getValue().toBitmap());
+            byMaxAge.put(age.getKey(), atMost);
+        }
+
+        Integer[] positions = new Integer[live];
+        int count = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != null) {
+                positions[count++] = i;
+            }
+        }
+        Arrays.sort(positions, Comparator.comparingDouble(position -> items[position].averageRating()));
+        byRating = new int[live];
+        ratings = new double[live];
+        for (int i = 0; i < live; i++) {
+            byRating[i] = positions[i];
+            ratings[i] = items[positions[i]].averageRating();
+        }
+    }
+
+    // a copy with the items at the positions changed from before to after (null: none), only the bitmaps
+    // of the changed values are copied and only the chunks of the changed positions in them
+    CatalogIndexes(CatalogIndexes from, int[] positions, CatalogItem[] before, CatalogItem[] after) {
+        byMediaType = new EnumMap<>(from.byMediaType);
+        byGenre = new HashMap<>(from.byGenre);
+        byReleaseYear = new HashMap<>(from.byReleaseYear);
+        byMaxAge = new TreeMap<>(from.byMaxAge);
+        for (int i = 0; i < positions.length; i++) {
+            if (before[i] != null) {
+                remove(positions[i], before[i]);
+            }
+            if (after[i] != null) {
+                add(positions[i], after[i]);
+            }
+        }
+
+        // the rating order is by rating and then position, so the old positions and the places of the new ones
+        // are found by binary search and the rest is copied in blocks
+        int[] removed = new int[before.length];
+        int removedCount = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != null) {
+                int index = ratingIndex(from, before[i].averageRating(), positions[i]);
+                if (index < 0) {
+                    throw new IllegalStateException("Rating index does not contain position " + positions[i]);
+                }
+                removed[removedCount++] = index;
+            }
+        }
+        Arrays.sort(removed, 0, removedCount);
+
+        Integer[] added = new Integer[after.length];
+        int addedCount = 0;
+        for (int i = 0; i < after.length; i++) {
+            if (after[i] != null) {
+                added[addedCount++] = i;
+            }
+        }
+        added = Arrays.copyOf(added, addedCount);
+        Arrays.sort(added, Comparator.<Integer>comparingDouble(i -> after[i].averageRating())
+                .thenComparingInt(i -> positions[i]));
+        int[] insertAt = new int[addedCount];
+        for (int a = 0; a < addedCount; a++) {
+            int index = ratingIndex(from, after[added[a]].averageRating(), positions[added[a]]);
+            // an unchanged rating finds the old entry of the position, which is removed
+            insertAt[a] = index >= 0 ? index : -index - 1;
+        }
+
+        byRating = new int[from.byRating.length - removedCount + addedCount];
+        ratings = new double[byRating.length];
+        int start = 0;
+        int size = 0;
+        int r = 0;
+        int a = 0;
+        while (r < removedCount || a < addedCount) {
+            if (a < addedCount && (r == removedCount || insertAt[a] <= removed[r])) {
+                size = copyRatings(from, start, insertAt[a], size);
+                start = insertAt[a];
+                byRating[size] = positions[added[a]];
+                ratings[size++] = after[added[a++]].averageRating();
+            } else {
+                size = copyRatings(from, start, removed[r], size);
+                start = removed[r++] + 1;
+            }
+        }
+        copyRatings(from, start, from.byRating.length, size);
+    }
+
+    private int copyRatings(CatalogIndexes from, int start, int end, int size) {
+        System.arraycopy(from.byRating, start, byRating, size, end - start);
+        System.arraycopy(from.ratings, start, ratings, size, end - start);
+        return size + end - start;
+    }
+
+    // binary search for (rating, position) in the rating order, -(insertion point) - 1 when it is not there
+    private static int ratingIndex(CatalogIndexes indexes, double rating, int position) {
+        int low = 0;
+        int high = indexes.byRating.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = Double.compare(indexes.ratings[middle], rating);
+            if (compare == 0) {
+                compare = Integer.compare(indexes.byRating[middle], position);
+            }
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void add(int position, CatalogItem item) {
+        if (item.mediaType() != null) {
+            byMediaType.merge(item.mediaType(), CompressedBitmap.of(position), (bitmap, one) -> bitmap.with(position));
+        }
+        for (String genre : new HashSet<>(Arrays.asList(item.genres()))) {
+            byGenre.merge(genre, CompressedBitmap.of(position), (bitmap, one) -> bitmap.with(position));
+        }
+        if (item.hasReleaseYear()) {
+            byReleaseYear.merge(item.releaseYear(), CompressedBitmap.of(position), (bitmap, one) -> bitmap.with(position));
+        }
+        int maxAge = item.age();
+        if (!byMaxAge.containsKey(maxAge)) {
+            // a new age starts with the entries of the next lower one, they all have at most this age as well
+            Map.Entry<Integer, CompressedBitmap> lower = byMaxAge.lowerEntry(maxAge);
+            byMaxAge.put(maxAge, lower == null ? CompressedBitmap.EMPTY : lower.getValue());
+        }
+        byMaxAge.tailMap(maxAge, true).replaceAll((age, bitmap) -> bitmap.with(position));
+    }
+
+    private void remove(int position, CatalogItem item) {
+        if (item.mediaType() != null) {
+            byMediaType.computeIfPresent(item.mediaType(), (type, bitmap) -> nonEmpty(bitmap.without(position)));
+        }
+        for (String genre : item.genres()) {
+            byGenre.computeIfPresent(genre, (g, bitmap) -> nonEmpty(bitmap.without(position)));
+        }
+        if (item.hasReleaseYear()) {
+            byReleaseYear.computeIfPresent(item.releaseYear(), (year, bitmap) -> nonEmpty(bitmap.without(position)));
+        }
+        byMaxAge.tailMap(item.age(), true).replaceAll((age, bitmap) -> bitmap.without(position));
+    }
+
+    private static CompressedBitmap nonEmpty(CompressedBitmap bitmap) {
+        return bitmap.isEmpty() ? null : bitmap;
+    }
+
+
+    // the positions that pass the indexed filters, the title is not indexed
+    CompressedBitmap filter(CatalogFilter filter) {
+        CompressedBitmap result = null;
+        if (filter.mediaType != null) {
+            result = and(result, byMediaType.getOrDefault(filter.mediaType, CompressedBitmap.EMPTY));
+        }
+        if (filter.byReleaseYear) {
+            result = and(result, byReleaseYear.getOrDefault(filter.releaseYear, CompressedBitmap.EMPTY));
+        }
+        if (filter.genre != null) {
+            // genres match as substrings, so every genre that contains the filter counts
+            List<CompressedBitmap> matching = new ArrayList<>();
+            byGenre.forEach((genre, bitmap) -> {
+                if (genre.contains(filter.genre.value())) {
+                    matching.add(bitmap);
+                }
+            });
+            result = and(result, CompressedBitmap.orAll(matching));
+        }
+        if (filter.byAge) {
+            Map.Entry<Integer, CompressedBitmap> atMost = byMaxAge.floorEntry(filter.maxAge);
+            result = and(result, atMost == null ? CompressedBitmap.EMPTY : atMost.getValue());
+        }
+        if (filter.byRating) {
+            int first = firstRatingAtLeast(filter.minRating);
+            // turning a long rating range into a bitmap costs more than checking the few entries left
+            if (result == null || byRating.length - first < result.cardinality()) {
+                result = and(result, CompressedBitmap.ofRange(byRating, first, byRating.length));
+            }
+        }
+        return result;
+    }
+
+    private int firstRatingAtLeast(double minRating) {
+        int low = 0;
+        int high = ratings.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ratings[middle] < minRating) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static CompressedBitmap and(CompressedBitmap result, CompressedBitmap bitmap) {
+        return result == null ? bitmap : result.and(bitmap);
+    }
+
+    // positions are added in ascending order while the indexes are built
+    private static final class Positions {
+        private int[] values = new int[8];
+        private int size;
+
+        private void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        private CompressedBitmap toBitmap() {
+            return CompressedBitmap.fromSorted(values, size);
+        }
+    }
+}
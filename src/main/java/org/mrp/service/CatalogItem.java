@@ -0,0 +1,85 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaSort;
+import org.mrp.domain.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+// what the filters, the sort orders and the indexes read of an entry
+// a heap item keeps a frozen copy of the entry, a stored one only its record and reads the off-heap store
+sealed interface CatalogItem permits HeapItem, StoredItem {
+    int id();
+
+    MediaType mediaType();
+
+    boolean hasReleaseYear();
+
+    // 0 without one, like the database orders it
+    int releaseYear();
+
+    int age();
+
+    double averageRating();
+
+    int createdByUserId();
+
+    // the creation time in UTC, LocalDateTime.MIN without one
+    long createdSeconds();
+
+    int createdNanos();
+
+    boolean titleContains(Text title);
+
+    boolean genreContains(Text genre);
+
+    // lowercased
+    String[] genres();
+
+    byte[] titleKey();
+
+    int compareTitle(byte[] titleKey);
+
+    // the entry as it is, for building the columns
+    MediaEntry entry();
+
+    // what callers get, built from the store only now
+    MediaEntry materialize();
+
+    // a lowercased filter text, the heap items compare the string and the stored ones its utf-8 bytes
+    record Text(String value, byte[] utf8) {
+        static Text of(String text) {
+            String value = MediaCatalog.lower(text);
+            return new Text(value, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // two items of the same store compare their keys in place, everything else compares against a key on the heap
+    private static int compareTitles(CatalogItem item, CatalogItem other) {
+        if (item instanceof StoredItem stored && other instanceof StoredItem otherStored
+                && stored.store() == otherStored.store()) {
+            return stored.store().compareTitles(stored.record(), otherStored.record());
+        }
+        return item.compareTitle(other.titleKey());
+    }
+
+    // the orders of the database query: title ascending, everything else descending, ties by id in the same direction
+    static Comparator<CatalogItem> order(MediaSort sort) {
+        Comparator<CatalogItem> ascending;
+        switch (sort) {
+            case TITLE:
+                return ((Comparator<CatalogItem>) CatalogItem::compareTitles).thenComparingInt(CatalogItem::id);
+            case RATING:
+                ascending = Comparator.comparingDouble(CatalogItem::averageRating);
+                break;
+            case RELEASE_YEAR:
+                ascending = Comparator.comparingInt(CatalogItem::releaseYear);
+                break;
+            default:
+                ascending = Comparator.comparingLong(CatalogItem::createdSeconds)
+                        .thenComparingInt(CatalogItem::createdNanos);
+        }
+        return ascending.thenComparingInt(CatalogItem::id).reversed();
+    }
+}
@@ -0,0 +1,274 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaSort;
+import org.mrp.service.utils.CompressedBitmap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// the entries of one load ordered by id, with the sort orders, indexes and columns built for them on demand
+// a snapshot never changes, writes patch it into a new one
+final class CatalogSnapshot {
+    // what the columns hold at the position of a removed entry
+    private static final MediaEntry REMOVED = MediaEntry.builder().genres(List.of()).build();
+    // a patch builds the positions from scratch once this many entries (and a quarter of the live ones) were removed
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    // ordered by id, the index of an item is its position in the bitmaps and the columns
+    // a removed entry leaves a null behind, so the positions of the others stay the same until the next reload
+    private final int[] ids;
+    final CatalogItem[] items;
+    final int size;
+    // every order is sorted the first time a query asks for it, patches merge the changed entries into it
+    private final Map<MediaSort, CatalogItem[]> sorted;
+    private volatile CatalogIndexes indexes;
+    private volatile Columns columns;
+    // the store the items were loaded from, null on the heap and once patched
+    final MediaSegmentStore store;
+
+    // items ascending by id
+    CatalogSnapshot(CatalogItem[] items, MediaSegmentStore store) {
+        this(idsOf(items), items, items.length, new ConcurrentHashMap<>(), null, null, store);
+    }
+
+    private CatalogSnapshot(int[] ids, CatalogItem[] items, int size, Map<MediaSort, CatalogItem[]> sorted,
+                            CatalogIndexes indexes, Columns columns, MediaSegmentStore store) {
+        this.store = store;
+        this.ids = ids;
+        this.items = items;
+        this.size = size;
+        this.sorted = sorted;
+        this.indexes = indexes;
+        this.columns = columns;
+    }
+
+    CatalogItem get(int entryId) {
+        int position = Arrays.binarySearch(ids, entryId);
+        return position < 0 ? null : items[position];
+    }
+
+    // built by the first filter query, a snapshot that is only listed or looked up never needs them
+    CatalogIndexes indexes() {
+        CatalogIndexes current = indexes;
+        if (current == null) {
+            synchronized (this) {
+                current = indexes;
+                if (current == null) {
+                    current = new CatalogIndexes(items);
+                    indexes = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // built by the first query that only filters by age or rating
+    Columns columns() {
+        Columns current = columns;
+        if (current == null) {
+            synchronized (this) {
+                current = columns;
+                if (current == null) {
+                    current = new Columns(columnsOf(items), CompressedBitmap.EMPTY);
+                    columns = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    CatalogItem[] sortedBy(MediaSort sort, QueryExecutor queryExecutor) {
+        return sorted.computeIfAbsent(sort, s -> {
+            CatalogItem[] live = new CatalogItem[size];
+            int count = 0;
+            for (CatalogItem item : items) {
+                if (item != null) {
+                    live[count++] = item;
+                }
+            }
+            queryExecutor.sort(live, CatalogItem.order(s));
+            return live;
+        });
+    }
+
+    // builds what the previous snapshot had built, so the first queries after a reload do not have to
+    void warm(CatalogSnapshot previous, QueryExecutor queryExecutor) {
+        for (MediaSort sort : previous.sorted.keySet()) {
+            sortedBy(sort, queryExecutor);
+        }
+        if (previous.indexes != null) {
+            indexes();
+        }
+        if (previous.columns != null) {
+            columns();
+        }
+    }
+
+    // a new snapshot with the changed entries (null when removed); what this one has already built is patched
+    // instead of built again: the changed positions are updated in the index bitmaps, the changed entries are
+    // merged into the sorted orders and the column scan leaves them to the filter
+    CatalogSnapshot patch(SortedMap<Integer, CatalogItem> changes, QueryExecutor queryExecutor) {
+        CatalogItem[] patchedItems = items.clone();
+        int patchedSize = size;
+        int[] positions = new int[changes.size()];
+        CatalogItem[] before = new CatalogItem[changes.size()];
+        CatalogItem[] after = new CatalogItem[changes.size()];
+        int changed = 0;
+        List<CatalogItem> appended = new ArrayList<>();
+        int lastId = ids.length == 0 ? Integer.MIN_VALUE : ids[ids.length - 1];
+        for (Map.Entry<Integer, CatalogItem> change : changes.entrySet()) {
+            int position = Arrays.binarySearch(ids, change.getKey());
+            CatalogItem item = change.getValue();
+            if (position >= 0) {
+                positions[changed] = position;
+                before[changed] = patchedItems[position];
+                after[changed++] = item;
+                patchedSize += (item == null ? 0 : 1) - (patchedItems[position] == null ? 0 : 1);
+                patchedItems[position] = item;
+            } else if (item != null) {
+                if (change.getKey() < lastId) {
+                    // an entry between existing ones (e.g. added by another server) moves every position after it
+                    return rebuild(changes, queryExecutor);
+                }
+                appended.add(item);
+            }
+        }
+
+        int[] patchedIds = ids;
+        if (!appended.isEmpty()) {
+            patchedIds = Arrays.copyOf(ids, ids.length + appended.size());
+            patchedItems = Arrays.copyOf(patchedItems, patchedIds.length);
+            for (int i = 0; i < appended.size(); i++) {
+                int position = ids.length + i;
+                patchedIds[position] = appended.get(i).id();
+                patchedItems[position] = appended.get(i);
+                positions[changed] = position;
+                after[changed++] = appended.get(i);
+                patchedSize++;
+            }
+        }
+        if (patchedItems.length - patchedSize > Math.max(COMPACT_THRESHOLD, patchedSize / 4)) {
+            return rebuild(changes, queryExecutor);
+        }
+        int[] changedPositions = Arrays.copyOf(positions, changed);
+        CatalogItem[] changedBefore = Arrays.copyOf(before, changed);
+        CatalogItem[] changedAfter = Arrays.copyOf(after, changed);
+
+        Map<MediaSort, CatalogItem[]> patchedSorted = new ConcurrentHashMap<>();
+        sorted.forEach((sort, order) ->
+                patchedSorted.put(sort, merge(order, changedBefore, changedAfter, CatalogItem.order(sort))));
+        CatalogIndexes currentIndexes = indexes;
+        Columns currentColumns = columns;
+        return new CatalogSnapshot(patchedIds, patchedItems, patchedSize, patchedSorted,
+                currentIndexes == null ? null
+                        : new CatalogIndexes(currentIndexes, changedPositions, changedBefore, changedAfter),
+                currentColumns == null ? null : currentColumns.patch(changedPositions, patchedItems), null);
+    }
+
+    // the live entries and the changes in new positions, what this one had built is built again right away
+    private CatalogSnapshot rebuild(SortedMap<Integer, CatalogItem> changes, QueryExecutor queryExecutor) {
+        List<CatalogItem> live = new ArrayList<>(size + changes.size());
+        for (CatalogItem item : items) {
+            if (item != null && !changes.containsKey(item.id())) {
+                live.add(item);
+            }
+        }
+        for (CatalogItem item : changes.values()) {
+            if (item != null) {
+                live.add(item);
+            }
+        }
+        CatalogItem[] rebuiltItems = live.toArray(new CatalogItem[0]);
+        Arrays.sort(rebuiltItems, Comparator.comparingInt(CatalogItem::id));
+        CatalogSnapshot rebuilt = new CatalogSnapshot(rebuiltItems, null);
+        rebuilt.warm(this, queryExecutor);
+        return rebuilt;
+    }
+
+    private static int[] idsOf(CatalogItem[] items) {
+        int[] ids = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ids[i] = items[i].id();
+            if (i > 0 && ids[i] <= ids[i - 1]) {
+                throw new IllegalArgumentException("Catalog items must be ordered by id");
+            }
+        }
+        return ids;
+    }
+
+    // the order without the items before a change and with the items after it, found by binary search,
+    // so a patch costs one copy of the order instead of a sort
+    private static CatalogItem[] merge(CatalogItem[] order, CatalogItem[] before, CatalogItem[] after,
+                                       Comparator<CatalogItem> comparator) {
+        int[] removed = new int[before.length];
+        int removedCount = 0;
+        for (CatalogItem item : before) {
+            if (item != null) {
+                int index = Arrays.binarySearch(order, item, comparator);
+                if (index < 0 || order[index] != item) {
+                    throw new IllegalStateException("Sorted order does not contain entry " + item.id());
+                }
+                removed[removedCount++] = index;
+            }
+        }
+        Arrays.sort(removed, 0, removedCount);
+
+        CatalogItem[] added = Arrays.stream(after).filter(Objects::nonNull).sorted(comparator).toArray(CatalogItem[]::new);
+        int[] insertAt = new int[added.length];
+        for (int i = 0; i < added.length; i++) {
+            int index = Arrays.binarySearch(order, added[i], comparator);
+            // the same id with an unchanged key finds its old version, which is removed
+            insertAt[i] = index >= 0 ? index : -index - 1;
+        }
+
+        CatalogItem[] result = new CatalogItem[order.length - removedCount + added.length];
+        int from = 0;
+        int size = 0;
+        int r = 0;
+        int a = 0;
+        while (r < removedCount || a < added.length) {
+            // items go in before the item at their index, so an insert at the index of a removal comes first
+            if (a < added.length && (r == removedCount || insertAt[a] <= removed[r])) {
+                System.arraycopy(order, from, result, size, insertAt[a] - from);
+                size += insertAt[a] - from;
+                from = insertAt[a];
+                result[size++] = added[a++];
+            } else {
+                System.arraycopy(order, from, result, size, removed[r] - from);
+                size += removed[r] - from;
+                from = removed[r++] + 1;
+            }
+        }
+        System.arraycopy(order, from, result, size, order.length - from);
+        return result;
+    }
+
+    // the column scan of a snapshot and the positions changed since the columns were built, which the scan
+    // cannot rule out and the filter checks instead; once they are many the columns are built again
+    record Columns(CatalogColumns columns, CompressedBitmap changed) {
+        CompressedBitmap scan(CatalogColumns.Query query) {
+            return CompressedBitmap.fromBits(columns.scan(query)).or(changed);
+        }
+
+        private Columns patch(int[] positions, CatalogItem[] items) {
+            CompressedBitmap patched = changed;
+            for (int position : positions) {
+                patched = patched.with(position);
+            }
+            if (patched.cardinality() > Math.max(64, columns.size() / 16)) {
+                return new Columns(columnsOf(items), CompressedBitmap.EMPTY);
+            }
+            return new Columns(columns, patched);
+        }
+    }
+
+    // removed entries keep their position with a placeholder, the caller skips them
+    private static CatalogColumns columnsOf(CatalogItem[] items) {
+        List<MediaEntry> entries = new ArrayList<>(items.length);
+        for (CatalogItem item : items) {
+            entries.add(item == null ? REMOVED : item.entry());
+        }
+        return new CatalogColumns(entries);
+    }
+}
@@ -0,0 +1,113 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// an entry plus what the filters and the title order compare against, computed once per entry instead of once per query
+record HeapItem(MediaEntry entry, String title, byte[] titleKey, String[] genres) implements CatalogItem {
+    // genre -> lowercased genre, so every entry with a genre shares one lowercased instance like the genre dictionary does
+    private static final Map<String, String> LOWER_GENRES = new ConcurrentHashMap<>();
+
+    static HeapItem of(MediaEntry entry) {
+        MediaEntry frozen = copy(entry);
+        String[] genres = new String[frozen.getGenres().size()];
+        for (int i = 0; i < genres.length; i++) {
+            genres[i] = LOWER_GENRES.computeIfAbsent(frozen.getGenres().get(i), MediaCatalog::lower);
+        }
+        String title = MediaCatalog.lower(frozen.getTitle());
+        return new HeapItem(frozen, title, MediaCatalog.titleKey(title), genres);
+    }
+
+    @Override
+    public int id() {
+        return entry.getId();
+    }
+
+    @Override
+    public MediaType mediaType() {
+        return entry.getMediaType();
+    }
+
+    @Override
+    public boolean hasReleaseYear() {
+        return entry.getReleaseYear() != null;
+    }
+
+    @Override
+    public int releaseYear() {
+        return entry.getReleaseYear() == null ? 0 : entry.getReleaseYear();
+    }
+
+    @Override
+    public int age() {
+        return entry.getAge();
+    }
+
+    @Override
+    public double averageRating() {
+        return entry.getAverageRating();
+    }
+
+    @Override
+    public int createdByUserId() {
+        return entry.getCreatedByUserId();
+    }
+
+    @Override
+    public long createdSeconds() {
+        return MediaCatalog.createdAt(entry).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    public int createdNanos() {
+        return MediaCatalog.createdAt(entry).getNano();
+    }
+
+    @Override
+    public boolean titleContains(Text text) {
+        return title.contains(text.value());
+    }
+
+    @Override
+    public boolean genreContains(Text text) {
+        for (String genre : genres) {
+            if (genre.contains(text.value())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int compareTitle(byte[] key) {
+        return Arrays.compareUnsigned(titleKey, key);
+    }
+
+    @Override
+    public MediaEntry materialize() {
+        return copy(entry);
+    }
+
+    // callers may change what they get, the snapshot must not change with it
+    private static MediaEntry copy(MediaEntry entry) {
+        return MediaEntry.builder()
+                .id(entry.getId())
+                .title(entry.getTitle())
+                .description(entry.getDescription())
+                .mediaType(entry.getMediaType())
+                .releaseYear(entry.getReleaseYear())
+                .genres(entry.getGenres() == null ? new ArrayList<>() : new ArrayList<>(entry.getGenres()))
+                .age(entry.getAge())
+                .averageRating(entry.getAverageRating())
+                .ratingCount(entry.getRatingCount())
+                .createdByUserId(entry.getCreatedByUserId())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+}
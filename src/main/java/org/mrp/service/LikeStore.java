@@ -0,0 +1,337 @@
+package org.mrp.service;
+
+import org.mrp.domain.Like;
+import org.mrp.domain.Rating;
+import org.mrp.persistence.implemenatations.LikeRepository;
+import org.mrp.persistence.implemenatations.RatingRepository;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// write-behind likes: toggles change the in-memory like sets right away and are written to RatingLikes
+// in batches by a background writer, counts and "liked by me" are answered from memory
+// the queue only holds (rating, user) keys, the writer stores whatever state the key has in memory when it
+// flushes, so the order in which keys were queued does not matter and repeated toggles collapse into one write
+// at most maxRatings ratings are kept, the least recently used ones without unwritten keys are dropped first
+public class LikeStore implements AutoCloseable {
+    public static final int DEFAULT_MAX_RATINGS = 100_000;
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private static final class RatingLikes {
+        private final int ownerId;
+        private final int entryId;
+        private final Set<Integer> likers = ConcurrentHashMap.newKeySet();
+        // queued keys of this rating that are not in the database yet, while > 0 the rating is not evicted
+        private final AtomicInteger unwritten = new AtomicInteger();
+        private volatile long lastUsed;
+
+        private RatingLikes(int ownerId, int entryId) {
+            this.ownerId = ownerId;
+            this.entryId = entryId;
+        }
+    }
+
+    private final RatingRepository ratingRepository;
+    private final LikeRepository likeRepository;
+    private final Map<Integer, RatingLikes> ratings = new ConcurrentHashMap<>();
+    private final int maxRatings;
+    private final AtomicLong clock = new AtomicLong();
+    // bumped on every invalidation, so a rating read while it was deleted is not cached afterwards
+    private final AtomicLong generation = new AtomicLong();
+    private final BlockingQueue<Long> pending;
+    // keys of a failed batch, only touched by the writer (and by close after the writer stopped)
+    private final List<Long> retry = new ArrayList<>();
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public LikeStore(RatingRepository ratingRepository, LikeRepository likeRepository,
+                     int queueCapacity, int batchSize, long offerTimeoutMillis) {
+        this(ratingRepository, likeRepository, queueCapacity, batchSize, offerTimeoutMillis, DEFAULT_MAX_RATINGS);
+    }
+
+    public LikeStore(RatingRepository ratingRepository, LikeRepository likeRepository,
+                     int queueCapacity, int batchSize, long offerTimeoutMillis, int maxRatings) {
+        if (queueCapacity <= 0 || batchSize <= 0 || maxRatings <= 0) {
+            throw new IllegalArgumentException("Like queue capacity, batch size and cache size must be positive");
+        }
+        this.ratingRepository = ratingRepository;
+        this.likeRepository = likeRepository;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxRatings = maxRatings;
+        this.writer = Thread.ofPlatform().name("like-writer").daemon().start(this::run);
+    }
+
+    // empty when the rating does not exist
+    public Optional<Integer> findRatingOwner(int ratingId) {
+        return load(ratingId).map(state -> state.ownerId);
+    }
+
+    // returns whether the user likes the rating afterwards
+    public boolean toggle(int ratingId, int userId) {
+        RatingLikes state = pin(ratingId);
+        boolean liked = state.likers.add(userId);
+        if (!liked) {
+            state.likers.remove(userId);
+        }
+        enqueue(state, ratingId, userId, () -> {
+            if (liked) {
+                state.likers.remove(userId);
+            } else {
+                state.likers.add(userId);
+            }
+        });
+        return liked;
+    }
+
+    // returns false when the user already liked the rating
+    public boolean like(int ratingId, int userId) {
+        RatingLikes state = pin(ratingId);
+        if (!state.likers.add(userId)) {
+            state.unwritten.decrementAndGet();
+            return false;
+        }
+        enqueue(state, ratingId, userId, () -> state.likers.remove(userId));
+        return true;
+    }
+
+    // returns false when the user did not like the rating
+    public boolean unlike(int ratingId, int userId) {
+        RatingLikes state = pin(ratingId);
+        if (!state.likers.remove(userId)) {
+            state.unwritten.decrementAndGet();
+            return false;
+        }
+        enqueue(state, ratingId, userId, () -> state.likers.add(userId));
+        return true;
+    }
+
+    public int getLikeCount(int ratingId) {
+        return load(ratingId).map(state -> state.likers.size()).orElse(0);
+    }
+
+    public boolean isLiked(int ratingId, int userId) {
+        return load(ratingId).map(state -> state.likers.contains(userId)).orElse(false);
+    }
+
+    // the rating was deleted, its likes went with it
+    public void invalidate(int ratingId) {
+        generation.incrementAndGet();
+        ratings.remove(ratingId);
+    }
+
+    // the media entry was deleted together with all its ratings
+    public void invalidateEntry(int entryId) {
+        generation.incrementAndGet();
+        ratings.values().removeIf(state -> state.entryId == entryId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int size() {
+        return ratings.size();
+    }
+
+    // loads the rating and counts one more unwritten key for it in the same step, so it cannot be evicted
+    // between the change in memory and the key being queued
+    private RatingLikes pin(int ratingId) {
+        while (true) {
+            RatingLikes state = ratings.computeIfPresent(ratingId, (id, existing) -> {
+                existing.unwritten.incrementAndGet();
+                return existing;
+            });
+            if (state != null) {
+                state.lastUsed = clock.incrementAndGet();
+                return state;
+            }
+            if (load(ratingId).isEmpty()) {
+                throw new IllegalArgumentException("Rating " + ratingId + " does not exist");
+            }
+        }
+    }
+
+    // the likes of a rating are read from the database once, afterwards memory is the source of truth
+    private Optional<RatingLikes> load(int ratingId) {
+        while (true) {
+            RatingLikes state = ratings.get(ratingId);
+            if (state != null) {
+                state.lastUsed = clock.incrementAndGet();
+                return Optional.of(state);
+            }
+
+            long loadGeneration = generation.get();
+            Optional<Rating> rating = ratingRepository.findById(ratingId);
+            if (rating.isEmpty()) {
+                return Optional.empty();
+            }
+            RatingLikes loaded = new RatingLikes(rating.get().getUserId(), rating.get().getMediaEntryId());
+            for (Like like : likeRepository.findByRatingId(ratingId)) {
+                loaded.likers.add(like.getUserId());
+            }
+            loaded.lastUsed = clock.incrementAndGet();
+
+            if (ratings.size() >= maxRatings) {
+                evict();
+            }
+            // another request may have loaded (and changed) it in the meantime, that one wins
+            RatingLikes existing = ratings.putIfAbsent(ratingId, loaded);
+            if (existing != null) {
+                return Optional.of(existing);
+            }
+            if (generation.get() == loadGeneration) {
+                return Optional.of(loaded);
+            }
+            // a rating was deleted while this one was read, read it again unless it is already in use
+            ratings.computeIfPresent(ratingId, (id, cached) -> cached == loaded && cached.unwritten.get() == 0 ? null : cached);
+        }
+    }
+
+    // drops the least recently used ratings that have nothing left to write until there is room again
+    private synchronized void evict() {
+        if (ratings.size() < maxRatings) {
+            return;
+        }
+        int target = maxRatings - Math.max(1, maxRatings / 10);
+        List<Map.Entry<Integer, RatingLikes>> idle = new ArrayList<>();
+        for (Map.Entry<Integer, RatingLikes> entry : ratings.entrySet()) {
+            if (entry.getValue().unwritten.get() == 0) {
+                idle.add(entry);
+            }
+        }
+        idle.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+        for (Map.Entry<Integer, RatingLikes> entry : idle) {
+            if (ratings.size() <= target) {
+                break;
+            }
+            ratings.computeIfPresent(entry.getKey(), (id, state) -> state.unwritten.get() == 0 ? null : state);
+        }
+    }
+
+    // when the writer is too far behind the change is undone and the caller has to try again later
+    private void enqueue(RatingLikes state, int ratingId, int userId, Runnable undo) {
+        if (closed) {
+            undo.run();
+            state.unwritten.decrementAndGet();
+            throw new IllegalStateException("Like store is closed");
+        }
+        boolean queued;
+        try {
+            queued = pending.offer(key(ratingId, userId), offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            undo.run();
+            state.unwritten.decrementAndGet();
+            throw new RejectedExecutionException("Too many pending likes, try again later");
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            // a failed batch is retried on its own, new keys wait in the queue (and requests get rejected
+            // once it is full) until the database is back
+            if (retry.isEmpty()) {
+                try {
+                    Long first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    retry.add(first);
+                    pending.drainTo(retry, batchSize - 1);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            try {
+                write(retry);
+                retry.clear();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                // keep the keys, memory still has the state that has to end up in the database
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private void write(Collection<Long> keys) {
+        List<Like> likes = new ArrayList<>();
+        List<Like> unlikes = new ArrayList<>();
+        for (long key : new LinkedHashSet<>(keys)) {
+            int ratingId = (int) (key >>> 32);
+            int userId = (int) key;
+            Like like = Like.builder().ratingId(ratingId).userId(userId).build();
+
+            RatingLikes state = ratings.get(ratingId);
+            if (state == null) {
+                // the rating was deleted, the database removed its likes already
+                continue;
+            }
+            if (state.likers.contains(userId)) {
+                likes.add(like);
+            } else {
+                unlikes.add(like);
+            }
+        }
+        likeRepository.applyLikeChanges(likes, unlikes);
+
+        // only now the ratings may be evicted again, a later load reads what was just written
+        for (long key : keys) {
+            RatingLikes state = ratings.get((int) (key >>> 32));
+            if (state != null) {
+                state.unwritten.decrementAndGet();
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long key(int ratingId, int userId) {
+        return ((long) ratingId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    // stops the writer and writes everything that is still queued
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            if (writer.isAlive()) {
+                // e.g. waiting before it retries a failed batch
+                writer.interrupt();
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // a writer still running owns retry and could write an older state after this one
+        if (writer.isAlive()) {
+            throw new IllegalStateException("Like writer did not stop, queued likes are not written");
+        }
+
+        List<Long> remaining = new ArrayList<>(retry);
+        pending.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaCursor;
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaPage;
+import org.mrp.domain.MediaQuery;
+import org.mrp.domain.MediaSort;
+import org.mrp.persistence.implemenatations.MediaEntryRepository;
+import org.mrp.service.utils.CompressedBitmap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// all media entries with their genres as an immutable snapshot, so listing and looking up entries needs no database
+// writes through MediaService patch the snapshot: what it has already built (sorted orders, index bitmaps) is
+// patched for the changed entries into a new snapshot that is swapped in, readers never wait
+// a full reload runs on a schedule for everything that changed the database some other way
+public class MediaCatalog implements AutoCloseable {
+
+    // titles are ordered by language rules like the database does, not by code point
+    private static final Collator TITLE_COLLATOR = Collator.getInstance(Locale.US);
+
+    // the cursor of a request with its key parsed once, compared against every entry that could follow it
+    private static final class Position {
+        private final MediaSort sort;
+        private final byte[] titleKey;
+        private final double rating;
+        private final int releaseYear;
+        private final long createdSeconds;
+        private final int createdNanos;
+        private final int id;
+
+        private Position(MediaCursor cursor) {
+            this.sort = cursor.sort();
+            this.id = cursor.id();
+            try {
+                this.titleKey = sort == MediaSort.TITLE ? titleKey(cursor.key()) : null;
+                this.rating = sort == MediaSort.RATING ? Double.parseDouble(cursor.key()) : 0;
+                this.releaseYear = sort == MediaSort.RELEASE_YEAR ? Integer.parseInt(cursor.key()) : 0;
+                LocalDateTime createdAt = sort == MediaSort.CREATED
+                        ? Timestamp.valueOf(cursor.key()).toLocalDateTime() : LocalDateTime.MIN;
+                this.createdSeconds = createdAt.toEpochSecond(ZoneOffset.UTC);
+                this.createdNanos = createdAt.getNano();
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("cursor is invalid.");
+            }
+        }
+
+        // < 0 when the item comes before the cursor in the order of the page, > 0 after it
+        private int compare(CatalogItem item) {
+            int byKey;
+            switch (sort) {
+                case TITLE:
+                    byKey = item.compareTitle(titleKey);
+                    break;
+                case RATING:
+                    byKey = -Double.compare(item.averageRating(), rating);
+                    break;
+                case RELEASE_YEAR:
+                    byKey = -Integer.compare(item.releaseYear(), releaseYear);
+                    break;
+                default:
+                    byKey = Long.compare(item.createdSeconds(), createdSeconds);
+                    byKey = -(byKey != 0 ? byKey : Integer.compare(item.createdNanos(), createdNanos));
+            }
+            if (byKey != 0) {
+                return byKey;
+            }
+            int byId = Integer.compare(item.id(), id);
+            return sort == MediaSort.TITLE ? byId : -byId;
+        }
+    }
+
+    private final MediaEntryRepository mediaEntryRepository;
+    private final boolean offHeap;
+    // where the off-heap store is kept between restarts, null keeps it in memory only
+    private final Path storeFile;
+    private final QueryExecutor queryExecutor;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    // entry id -> whether it has to be read again (false: removed), queued by writes until a patch takes them
+    private final Map<Integer, Boolean> pending = new HashMap<>();
+    private long queued;
+    // one patch at a time, so two reads of the same entry are applied in the order they were made
+    private final Object patchLock = new Object();
+    private long applied;
+    // guards swapping the snapshot and patchedDuringLoad, held only for the swap and the patch, never for the database
+    private final Object swapLock = new Object();
+    // the patches made while a (re)load reads the database, applied to what it read before it is swapped in,
+    // so a load that started before a write cannot drop it; null while no load runs
+    private SortedMap<Integer, CatalogItem> patchedDuringLoad;
+    // one load at a time
+    private final Object loadLock = new Object();
+    // the store of the last load and the one the store file holds, written one at a time outside the load lock
+    private volatile MediaSegmentStore lastLoaded;
+    private MediaSegmentStore persisted;
+    private final Object persistLock = new Object();
+    private final ScheduledExecutorService reloader;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder storeWrites = new LongAdder();
+    private final LongAdder patches = new LongAdder();
+
+    // a reload interval of 0 only loads once, on the first read
+    public MediaCatalog(MediaEntryRepository mediaEntryRepository, long reloadIntervalMillis) {
+        this(mediaEntryRepository, reloadIntervalMillis, false, null);
+    }
+
+    // off heap the entries are kept in a MediaSegmentStore, with a store file the first read of a restarted server
+    // maps the file instead of waiting for the database and the entries are reloaded right after
+    public MediaCatalog(MediaEntryRepository mediaEntryRepository, long reloadIntervalMillis, boolean offHeap,
+                        Path storeFile) {
+        this(mediaEntryRepository, reloadIntervalMillis, offHeap, storeFile, QueryExecutor.sequential());
+    }
+
+    // large filters and sorts go to the query executor, which belongs to the caller
+    public MediaCatalog(MediaEntryRepository mediaEntryRepository, long reloadIntervalMillis, boolean offHeap,
+                        Path storeFile, QueryExecutor queryExecutor) {
+        if (reloadIntervalMillis < 0) {
+            throw new IllegalArgumentException("reloadIntervalMillis must not be negative");
+        }
+        this.mediaEntryRepository = mediaEntryRepository;
+        this.offHeap = offHeap;
+        this.storeFile = offHeap ? storeFile : null;
+        this.queryExecutor = queryExecutor;
+        if (reloadIntervalMillis == 0) {
+            this.reloader = null;
+        } else {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(
+                    runnable -> Thread.ofPlatform().name("media-catalog-reload").daemon().unstarted(runnable));
+            reloader.scheduleWithFixedDelay(this::scheduledReload, reloadIntervalMillis, reloadIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Optional<MediaEntry> findById(int entryId) {
+        CatalogItem item = current().get(entryId);
+        return item == null ? Optional.empty() : Optional.of(item.materialize());
+    }
+
+    public List<MediaEntry> findAll() {
+        return find(MediaQuery.all()).entries();
+    }
+
+    public List<MediaEntry> findByUserId(int userId) {
+        List<MediaEntry> entries = new ArrayList<>();
+        for (CatalogItem item : current().sortedBy(MediaSort.CREATED, queryExecutor)) {
+            if (item.createdByUserId() == userId) {
+                entries.add(item.materialize());
+            }
+        }
+        return entries;
+    }
+
+    public List<MediaEntry> findByGenre(String genre) {
+        return find(new MediaQuery(null, genre, null, null, null, null, MediaSort.CREATED, null, null)).entries();
+    }
+
+    // same filters, order and cursors as MediaEntryRepository.findByQuery
+    public MediaPage find(MediaQuery query) {
+        Selection selection = select(query);
+        CatalogItem[] items = selection.items();
+        List<MediaEntry> entries = new ArrayList<>();
+        String next = null;
+        for (int i = selection.start(); i < items.length; i++) {
+            CatalogItem item = items[i];
+            if (!selection.filtered() && !selection.filter().test(item)) {
+                continue;
+            }
+            // one more match means there is a next page
+            if (query.limit() != null && entries.size() == query.limit()) {
+                MediaEntry last = entries.get(entries.size() - 1);
+                next = new MediaCursor(query.sort(), sortKey(query.sort(), last), last.getId()).encode();
+                break;
+            }
+            entries.add(item.materialize());
+        }
+        return new MediaPage(entries, next);
+    }
+
+    // the entries of a query without a limit as a view that builds each entry only when it is read, so a response
+    // can be written entry by entry instead of holding all of them; the view keeps the snapshot of the call
+    public List<MediaEntry> findEach(MediaQuery query) {
+        if (query.limit() != null) {
+            throw new IllegalArgumentException("findEach does not page, use find");
+        }
+        Selection selection = select(query);
+        CatalogItem[] items = selection.items();
+        int start = selection.start();
+        return new AbstractList<>() {
+            @Override
+            public MediaEntry get(int index) {
+                return items[start + Objects.checkIndex(index, size())].materialize();
+            }
+
+            @Override
+            public int size() {
+                return items.length - start;
+            }
+        };
+    }
+
+    // the items of a query from start on in the order of the page, filtered: whether they all pass the filter,
+    // which is always the case without a limit
+    private record Selection(CatalogItem[] items, int start, boolean filtered, CatalogFilter filter) {
+    }
+
+    private Selection select(MediaQuery query) {
+        CatalogSnapshot current = current();
+        CatalogFilter filter = new CatalogFilter(query);
+        Position cursor = query.cursor() == null ? null : new Position(query.cursor());
+        Comparator<CatalogItem> order = CatalogItem.order(query.sort());
+
+        CatalogItem[] items;
+        int start = 0;
+        // true once every item left passes the whole filter
+        boolean filtered = filter.isEmpty();
+        if (filter.isIndexed()) {
+            CompressedBitmap candidates = filter.hasEqualityFilter()
+                    ? current.indexes().filter(filter)
+                    : current.columns().scan(filter.columnQuery);
+            if (query.limit() != null) {
+                // one more than the page to know whether there is a next one
+                items = top(current.items, candidates, filter, cursor, order, query.limit() + 1);
+            } else {
+                // only the entries that pass the indexed filters are sorted, so the cost follows the size of the result
+                items = queryExecutor.filter(positions(current.items, candidates), 0, filter::test);
+                queryExecutor.sort(items, order);
+                start = cursor == null ? 0 : firstAfter(items, cursor);
+            }
+            filtered = true;
+        } else {
+            // already sorted, the page starts right after the cursor
+            items = current.sortedBy(query.sort(), queryExecutor);
+            start = cursor == null ? 0 : firstAfter(items, cursor);
+            // a page stops at the first matches, everything else checks all entries after the cursor
+            if (!filtered && query.limit() == null) {
+                items = queryExecutor.filter(items, start, filter::test);
+                start = 0;
+                filtered = true;
+            }
+        }
+        return new Selection(items, start, filtered, filter);
+    }
+
+    // the first k matching entries after the cursor, without sorting or copying all candidates:
+    // a heap keeps the best k seen so far with the worst on top, so n candidates cost O(n log k)
+    // with many candidates the filter runs on the query pool first and the heap only sees what passed
+    private CatalogItem[] top(CatalogItem[] items, CompressedBitmap candidates, CatalogFilter filter, Position cursor,
+                       Comparator<CatalogItem> order, int k) {
+        PriorityQueue<CatalogItem> heap = new PriorityQueue<>(k, order.reversed());
+        Predicate<CatalogItem> matches = item -> filter.test(item) && (cursor == null || cursor.compare(item) > 0);
+        Consumer<CatalogItem> offer = item -> {
+            if (heap.size() < k) {
+                heap.add(item);
+            } else if (order.compare(item, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        };
+        if (queryExecutor.isLarge(candidates.cardinality())) {
+            for (CatalogItem item : queryExecutor.filter(positions(items, candidates), 0, matches)) {
+                offer.accept(item);
+            }
+        } else {
+            candidates.forEach(position -> {
+                CatalogItem item = items[position];
+                if (item != null && matches.test(item)) {
+                    offer.accept(item);
+                }
+            });
+        }
+        CatalogItem[] top = heap.toArray(new CatalogItem[0]);
+        Arrays.sort(top, order);
+        return top;
+    }
+
+    // the items at the positions, without the removed ones
+    private static CatalogItem[] positions(CatalogItem[] items, CompressedBitmap candidates) {
+        CatalogItem[] result = new CatalogItem[candidates.cardinality()];
+        int[] count = {0};
+        candidates.forEach(position -> {
+            if (items[position] != null) {
+                result[count[0]++] = items[position];
+            }
+        });
+        return count[0] == result.length ? result : Arrays.copyOf(result, count[0]);
+    }
+
+    // binary search for the first entry that comes after the cursor in the order of the page
+    private static int firstAfter(CatalogItem[] items, Position cursor) {
+        int low = 0;
+        int high = items.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cursor.compare(items[middle]) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // the sort key printed the way the database prints it, so cursors work in both directions
+    private static String sortKey(MediaSort sort, MediaEntry entry) {
+        switch (sort) {
+            case TITLE:
+                return lower(entry.getTitle());
+            case RATING:
+                return BigDecimal.valueOf(entry.getAverageRating()).setScale(2, RoundingMode.HALF_UP).toPlainString();
+            case RELEASE_YEAR:
+                return String.valueOf(releaseYear(entry));
+            default:
+                return Timestamp.valueOf(createdAt(entry)).toString();
+        }
+    }
+
+    private static int releaseYear(MediaEntry entry) {
+        return entry.getReleaseYear() == null ? 0 : entry.getReleaseYear();
+    }
+
+    static LocalDateTime createdAt(MediaEntry entry) {
+        return entry.getCreatedAt() == null ? LocalDateTime.MIN : entry.getCreatedAt();
+    }
+
+    // the key of the title order, the off-heap store keeps these bytes for its entries
+    static byte[] titleKey(String title) {
+        return TITLE_COLLATOR.getCollationKey(lower(title)).toByteArray();
+    }
+
+    static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private CatalogSnapshot current() {
+        CatalogSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        boolean loaded = false;
+        MediaSegmentStore store = null;
+        synchronized (loadLock) {
+            // the first requests all end up here, only one of them loads
+            if (snapshot.get() == null) {
+                MediaSegmentStore mapped = reloader == null ? null : openStoreFile();
+                if (mapped != null) {
+                    synchronized (persistLock) {
+                        persisted = mapped;
+                    }
+                    install(() -> load(mapped));
+                    reloader.execute(this::scheduledReload);
+                } else {
+                    store = readAndInstall();
+                    loaded = true;
+                }
+            }
+            current = snapshot.get();
+        }
+        if (loaded) {
+            finishLoad(store);
+        }
+        return current;
+    }
+
+    // null when there is no usable store file, e.g. one of an older version, or when the database does not hold the
+    // same entries as far as count and highest id tell, e.g. because the schema was created again at startup;
+    // the database is read instead
+    private MediaSegmentStore openStoreFile() {
+        if (storeFile == null || !Files.exists(storeFile)) {
+            return null;
+        }
+        MediaSegmentStore store;
+        try {
+            store = MediaSegmentStore.open(storeFile);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+        // records are ordered by id
+        int maxId = store.size() == 0 ? 0 : store.id(store.size() - 1);
+        MediaEntryRepository.EntryIds entryIds = mediaEntryRepository.findEntryIds();
+        if (entryIds.count() != store.size() || entryIds.maxId() != maxId) {
+            return null;
+        }
+        return store;
+    }
+
+    // reads the entry again after it was written and puts it into the snapshot, or removes it when it is gone
+    public void refresh(int entryId) {
+        patch(entryId, true);
+    }
+
+    public void remove(int entryId) {
+        patch(entryId, false);
+    }
+
+    // concurrent writes are patched in together: whoever gets the patch lock reads and applies everything queued
+    // so far, the others then find their entry already applied; either way the write is visible on return
+    private void patch(int entryId, boolean read) {
+        long ticket;
+        synchronized (pending) {
+            pending.merge(entryId, read, Boolean::logicalOr);
+            ticket = ++queued;
+        }
+        synchronized (patchLock) {
+            if (applied >= ticket) {
+                return;
+            }
+            Map<Integer, Boolean> batch;
+            long upTo;
+            synchronized (pending) {
+                batch = new TreeMap<>(pending);
+                pending.clear();
+                upTo = queued;
+            }
+            try {
+                apply(batch);
+            } catch (RuntimeException e) {
+                // left for the next write, nothing of the batch is lost
+                synchronized (pending) {
+                    batch.forEach((id, again) -> pending.merge(id, again, Boolean::logicalOr));
+                }
+                throw e;
+            }
+            applied = upTo;
+        }
+    }
+
+    private void apply(Map<Integer, Boolean> batch) {
+        synchronized (swapLock) {
+            if (snapshot.get() == null && patchedDuringLoad == null) {
+                // nothing loaded yet, the first load reads the entries anyway
+                return;
+            }
+        }
+        List<Integer> reads = new ArrayList<>();
+        batch.forEach((id, again) -> {
+            if (again) {
+                reads.add(id);
+            }
+        });
+        Map<Integer, MediaEntry> found = new HashMap<>();
+        if (!reads.isEmpty()) {
+            for (MediaEntry entry : mediaEntryRepository.findByIds(reads)) {
+                found.put(entry.getId(), entry);
+            }
+        }
+        SortedMap<Integer, CatalogItem> changes = new TreeMap<>();
+        for (Integer id : batch.keySet()) {
+            MediaEntry entry = found.get(id);
+            changes.put(id, entry == null ? null : HeapItem.of(entry));
+        }
+
+        synchronized (swapLock) {
+            CatalogSnapshot current = snapshot.get();
+            if (current != null) {
+                snapshot.set(current.patch(changes, queryExecutor));
+            }
+            if (patchedDuringLoad != null) {
+                patchedDuringLoad.putAll(changes);
+            }
+        }
+        patches.add(changes.size());
+    }
+
+    public void reload() {
+        MediaSegmentStore store;
+        synchronized (loadLock) {
+            store = readAndInstall();
+        }
+        finishLoad(store);
+    }
+
+    // the store of an off-heap load, null on the heap
+    private MediaSegmentStore readAndInstall() {
+        MediaSegmentStore store = install(this::read).store;
+        lastLoaded = store;
+        return store;
+    }
+
+    // the snapshot is read and built without holding up writes, the ones made meanwhile are patched into it
+    // before it is swapped in; what the old snapshot had built is built for the new one first
+    private CatalogSnapshot install(Supplier<CatalogSnapshot> loader) {
+        synchronized (swapLock) {
+            patchedDuringLoad = new TreeMap<>();
+        }
+        try {
+            CatalogSnapshot loaded = loader.get();
+            CatalogSnapshot previous = snapshot.get();
+            if (previous != null) {
+                loaded.warm(previous, queryExecutor);
+            }
+            synchronized (swapLock) {
+                snapshot.set(patchedDuringLoad.isEmpty() ? loaded : loaded.patch(patchedDuringLoad, queryExecutor));
+            }
+            return loaded;
+        } finally {
+            synchronized (swapLock) {
+                patchedDuringLoad = null;
+            }
+        }
+    }
+
+    // the rows go straight into the items or the off-heap store as they arrive, no list of all entries is built
+    private CatalogSnapshot read() {
+        if (offHeap) {
+            try (MediaSegmentStore.Builder builder = MediaSegmentStore.builder()) {
+                mediaEntryRepository.streamAll(builder::add);
+                return load(builder.build());
+            }
+        }
+        List<CatalogItem> items = new ArrayList<>();
+        mediaEntryRepository.streamAll(entry -> items.add(HeapItem.of(entry)));
+        return new CatalogSnapshot(items.toArray(new CatalogItem[0]), null);
+    }
+
+    // a stored item is only the record, patched entries are kept on the heap until the next reload
+    private static CatalogSnapshot load(MediaSegmentStore store) {
+        CatalogItem[] items = new CatalogItem[store.size()];
+        for (int record = 0; record < store.size(); record++) {
+            items[record] = new StoredItem(store, record);
+        }
+        return new CatalogSnapshot(items, store);
+    }
+
+    // a load counts once its store is written, which happens after the load lock is released and only when
+    // the entries changed since the file was last written; a load that was overtaken by a newer one is not written
+    private void finishLoad(MediaSegmentStore store) {
+        if (store != null && storeFile != null) {
+            synchronized (persistLock) {
+                if (store == lastLoaded) {
+                    if (persisted == null || !persisted.contentEquals(store)) {
+                        store.writeTo(storeFile);
+                        storeWrites.increment();
+                    }
+                    persisted = store;
+                }
+            }
+        }
+        reloads.increment();
+    }
+
+    private void scheduledReload() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // the old snapshot stays in use until the next reload works
+            e.printStackTrace();
+        }
+    }
+
+    public int size() {
+        return current().size;
+    }
+
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    public long getStoreWriteCount() {
+        return storeWrites.sum();
+    }
+
+    public long getPatchCount() {
+        return patches.sum();
+    }
+
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+}
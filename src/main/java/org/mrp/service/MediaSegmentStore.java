@@ -0,0 +1,451 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// media entries as fixed-width records in off-heap memory, ordered by id, with their strings in a region after them
+// nothing of it is on the java heap, a MediaEntry is only built by get() when an entry is handed out
+// besides the entry itself a record keeps what the catalog filters and sorts by: the lowercased title and genres
+// and the collation key of the title, so a query reads the store and never needs the entry
+// the store can be written to a file and mapped again after a restart; it never changes once built
+// layout: header | records | strings
+//   header:  int magic, int version, int count, int unused, long string bytes, 8 bytes unused
+//   record:  see the offsets below, strings are referenced by offset and length into the string region
+//   strings: title, description, genres, lowercased title, title key, lowercased genres, one record after the other
+//   genres:  int length + utf-8 bytes per genre, one after the other
+public final class MediaSegmentStore {
+    private static final int MAGIC = 0x4d525043;
+    private static final int VERSION = 2;
+    private static final long HEADER = 32;
+    private static final long RECORD = 80;
+
+    private static final long ID = 0;
+    private static final long RELEASE_YEAR = 4;
+    private static final long AGE = 8;
+    private static final long RATING_COUNT = 12;
+    private static final long AVERAGE_RATING = 16;
+    private static final long CREATED_BY = 24;
+    private static final long MEDIA_TYPE = 28;
+    private static final long NULLS = 29;
+    private static final long CREATED_SECONDS = 32;
+    private static final long CREATED_NANOS = 40;
+    private static final long GENRE_COUNT = 44;
+    private static final long STRINGS = 48;
+    private static final long TITLE_LENGTH = 56;
+    private static final long DESCRIPTION_LENGTH = 60;
+    private static final long GENRE_BYTES = 64;
+    private static final long LOWER_TITLE_LENGTH = 68;
+    private static final long TITLE_KEY_LENGTH = 72;
+    private static final long LOWER_GENRE_BYTES = 76;
+
+    private static final int NO_RELEASE_YEAR = Integer.MIN_VALUE;
+    private static final byte NULL_TITLE = 1;
+    private static final byte NULL_DESCRIPTION = 2;
+    private static final byte NULL_CREATED_AT = 4;
+    // what a missing creation time is ordered as, like the catalog does
+    private static final LocalDateTime NO_CREATED_AT = LocalDateTime.MIN;
+    // values() copies the array on every call
+    private static final MediaType[] MEDIA_TYPES = MediaType.values();
+
+    private static final ValueLayout.OfByte BYTE = ValueLayout.JAVA_BYTE;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED;
+
+    private final MemorySegment segment;
+    private final int size;
+    private final long strings;
+
+    private MediaSegmentStore(MemorySegment segment) {
+        if (segment.byteSize() < HEADER || segment.get(INT, 0) != MAGIC || segment.get(INT, 4) != VERSION) {
+            throw new IllegalArgumentException("Not a media segment store");
+        }
+        this.segment = segment;
+        this.size = segment.get(INT, 8);
+        this.strings = HEADER + size * RECORD;
+        if (segment.byteSize() != strings + segment.get(LONG, 16)) {
+            throw new IllegalArgumentException("Media segment store is truncated");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // off-heap memory that is freed once the store is no longer referenced, the entries may come in any order
+    public static MediaSegmentStore build(List<MediaEntry> entries) {
+        List<MediaEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(MediaEntry::getId));
+        try (Builder builder = builder()) {
+            sorted.forEach(builder::add);
+            return builder.build();
+        }
+    }
+
+    // maps the file read only, the mapping stays valid after the file is replaced
+    public static MediaSegmentStore open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MediaSegmentStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto()));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open media segment store", e);
+        }
+    }
+
+    // writes the store to a new file next to the old one and swaps it in, so a crash never leaves half a file
+    public void writeTo(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.byteSize(), arena);
+            MemorySegment.copy(segment, 0, mapped, 0, segment.byteSize());
+            mapped.force();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write media segment store", e);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to replace media segment store", e);
+        }
+    }
+
+    // byte for byte, so an unchanged reload does not have to write the file again
+    public boolean contentEquals(MediaSegmentStore other) {
+        return segment.byteSize() == other.segment.byteSize() && segment.mismatch(other.segment) < 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long byteSize() {
+        return segment.byteSize();
+    }
+
+    public int id(int record) {
+        return segment.get(INT, offset(record) + ID);
+    }
+
+    // -1 when there is no entry with the id
+    public int indexOf(int entryId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = id(middle);
+            if (id < entryId) {
+                low = middle + 1;
+            } else if (id > entryId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public MediaType mediaType(int record) {
+        byte mediaType = segment.get(BYTE, offset(record) + MEDIA_TYPE);
+        return mediaType < 0 ? null : MEDIA_TYPES[mediaType];
+    }
+
+    public boolean hasReleaseYear(int record) {
+        return segment.get(INT, offset(record) + RELEASE_YEAR) != NO_RELEASE_YEAR;
+    }
+
+    // 0 without one, like the catalog orders it
+    public int releaseYear(int record) {
+        int releaseYear = segment.get(INT, offset(record) + RELEASE_YEAR);
+        return releaseYear == NO_RELEASE_YEAR ? 0 : releaseYear;
+    }
+
+    public int age(int record) {
+        return segment.get(INT, offset(record) + AGE);
+    }
+
+    public double averageRating(int record) {
+        return segment.get(DOUBLE, offset(record) + AVERAGE_RATING);
+    }
+
+    public int createdByUserId(int record) {
+        return segment.get(INT, offset(record) + CREATED_BY);
+    }
+
+    // the creation time in UTC, LocalDateTime.MIN without one
+    public long createdSeconds(int record) {
+        return segment.get(LONG, offset(record) + CREATED_SECONDS);
+    }
+
+    public int createdNanos(int record) {
+        return segment.get(INT, offset(record) + CREATED_NANOS);
+    }
+
+    // the lowercased title contains the utf-8 bytes of a lowercased text
+    public boolean titleContains(int record, byte[] text) {
+        long offset = offset(record);
+        return contains(lowerTitle(offset), segment.get(INT, offset + LOWER_TITLE_LENGTH), text);
+    }
+
+    // one of the lowercased genres contains the utf-8 bytes of a lowercased text
+    public boolean genreContains(int record, byte[] text) {
+        long offset = offset(record);
+        long genre = lowerGenres(offset);
+        for (int i = segment.get(INT, offset + GENRE_COUNT); i > 0; i--) {
+            int length = segment.get(INT, genre);
+            if (contains(genre + 4, length, text)) {
+                return true;
+            }
+            genre += 4 + length;
+        }
+        return false;
+    }
+
+    public String[] lowerGenres(int record) {
+        long offset = offset(record);
+        String[] genres = new String[segment.get(INT, offset + GENRE_COUNT)];
+        long genre = lowerGenres(offset);
+        for (int i = 0; i < genres.length; i++) {
+            int length = segment.get(INT, genre);
+            genres[i] = string(genre + 4, length);
+            genre += 4 + length;
+        }
+        return genres;
+    }
+
+    public byte[] titleKey(int record) {
+        long offset = offset(record);
+        byte[] key = new byte[segment.get(INT, offset + TITLE_KEY_LENGTH)];
+        MemorySegment.copy(segment, BYTE, titleKey(offset), key, 0, key.length);
+        return key;
+    }
+
+    // the title keys of two records compared like the collation keys they were made of
+    public int compareTitles(int record, int otherRecord) {
+        long offset = offset(record);
+        long otherOffset = offset(otherRecord);
+        return compareKeys(segment.asSlice(titleKey(offset), segment.get(INT, offset + TITLE_KEY_LENGTH)),
+                segment.asSlice(titleKey(otherOffset), segment.get(INT, otherOffset + TITLE_KEY_LENGTH)));
+    }
+
+    public int compareTitle(int record, byte[] titleKey) {
+        long offset = offset(record);
+        return compareKeys(segment.asSlice(titleKey(offset), segment.get(INT, offset + TITLE_KEY_LENGTH)),
+                MemorySegment.ofArray(titleKey));
+    }
+
+    public MediaEntry get(int record) {
+        long offset = offset(record);
+        byte nulls = segment.get(BYTE, offset + NULLS);
+        int releaseYear = segment.get(INT, offset + RELEASE_YEAR);
+
+        long text = strings + segment.get(LONG, offset + STRINGS);
+        int titleLength = segment.get(INT, offset + TITLE_LENGTH);
+        int descriptionLength = segment.get(INT, offset + DESCRIPTION_LENGTH);
+        List<String> genres = new ArrayList<>();
+        long genre = text + titleLength + descriptionLength;
+        for (int i = segment.get(INT, offset + GENRE_COUNT); i > 0; i--) {
+            int length = segment.get(INT, genre);
+            genres.add(string(genre + 4, length));
+            genre += 4 + length;
+        }
+
+        return MediaEntry.builder()
+                .id(segment.get(INT, offset + ID))
+                .title((nulls & NULL_TITLE) != 0 ? null : string(text, titleLength))
+                .description((nulls & NULL_DESCRIPTION) != 0 ? null : string(text + titleLength, descriptionLength))
+                .mediaType(mediaType(record))
+                .releaseYear(releaseYear == NO_RELEASE_YEAR ? null : releaseYear)
+                .genres(genres)
+                .age(segment.get(INT, offset + AGE))
+                .averageRating(segment.get(DOUBLE, offset + AVERAGE_RATING))
+                .ratingCount(segment.get(INT, offset + RATING_COUNT))
+                .createdByUserId(segment.get(INT, offset + CREATED_BY))
+                .createdAt((nulls & NULL_CREATED_AT) != 0 ? null : LocalDateTime.ofEpochSecond(
+                        segment.get(LONG, offset + CREATED_SECONDS), segment.get(INT, offset + CREATED_NANOS),
+                        ZoneOffset.UTC))
+                .build();
+    }
+
+    private long offset(int record) {
+        if (record < 0 || record >= size) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + size);
+        }
+        return HEADER + record * RECORD;
+    }
+
+    private long lowerTitle(long offset) {
+        return strings + segment.get(LONG, offset + STRINGS) + segment.get(INT, offset + TITLE_LENGTH)
+                + segment.get(INT, offset + DESCRIPTION_LENGTH) + segment.get(INT, offset + GENRE_BYTES);
+    }
+
+    private long titleKey(long offset) {
+        return lowerTitle(offset) + segment.get(INT, offset + LOWER_TITLE_LENGTH);
+    }
+
+    private long lowerGenres(long offset) {
+        return titleKey(offset) + segment.get(INT, offset + TITLE_KEY_LENGTH);
+    }
+
+    // utf-8 never starts a character in the middle of another, so a byte match is a match of the strings
+    private boolean contains(long from, int length, byte[] text) {
+        if (text.length == 0) {
+            return true;
+        }
+        MemorySegment wanted = MemorySegment.ofArray(text);
+        for (long i = from, last = from + length - text.length; i <= last; i++) {
+            if (segment.get(BYTE, i) == text[0] && segment.asSlice(i, text.length).mismatch(wanted) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // unsigned and shorter first, the order of CollationKey.compareTo on what toByteArray() returned
+    // slices instead of the static MemorySegment.mismatch, which finds no mismatch between two ranges of one segment
+    private static int compareKeys(MemorySegment key, MemorySegment other) {
+        long mismatch = key.mismatch(other);
+        if (mismatch < 0) {
+            return 0;
+        }
+        if (mismatch == key.byteSize() || mismatch == other.byteSize()) {
+            return Long.compare(key.byteSize(), other.byteSize());
+        }
+        return Byte.compareUnsigned(key.get(BYTE, mismatch), other.get(BYTE, mismatch));
+    }
+
+    private String string(long offset, int length) {
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, BYTE, offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // entries are added ascending by id and written straight into off-heap buffers that grow as needed,
+    // so a load keeps nothing of them on the heap; the buffers belong to the thread that adds the entries
+    public static final class Builder implements AutoCloseable {
+        private final Arena arena = Arena.ofConfined();
+        private MemorySegment records = arena.allocate(1024 * RECORD, 8);
+        private MemorySegment strings = arena.allocate(64 * 1024, 8);
+        private int count;
+        private long stringBytes;
+        private int lastId;
+
+        private Builder() {
+        }
+
+        public void add(MediaEntry entry) {
+            if (count > 0 && entry.getId() <= lastId) {
+                throw new IllegalArgumentException("Media entry " + entry.getId() + " added after " + lastId
+                        + ", entries must be added ascending by id");
+            }
+            if ((count + 1) * RECORD > records.byteSize()) {
+                records = grow(records, (count + 1) * RECORD);
+            }
+            List<String> genres = entry.getGenres() == null ? List.of() : entry.getGenres();
+            String lowerTitle = MediaCatalog.lower(entry.getTitle());
+            long offset = count * RECORD;
+            byte nulls = (byte) ((entry.getTitle() == null ? NULL_TITLE : 0)
+                    | (entry.getDescription() == null ? NULL_DESCRIPTION : 0)
+                    | (entry.getCreatedAt() == null ? NULL_CREATED_AT : 0));
+            LocalDateTime createdAt = entry.getCreatedAt() == null ? NO_CREATED_AT : entry.getCreatedAt();
+
+            records.set(INT, offset + ID, entry.getId());
+            records.set(INT, offset + RELEASE_YEAR,
+                    entry.getReleaseYear() == null ? NO_RELEASE_YEAR : entry.getReleaseYear());
+            records.set(INT, offset + AGE, entry.getAge());
+            records.set(INT, offset + RATING_COUNT, entry.getRatingCount());
+            records.set(DOUBLE, offset + AVERAGE_RATING, entry.getAverageRating());
+            records.set(INT, offset + CREATED_BY, entry.getCreatedByUserId());
+            records.set(BYTE, offset + MEDIA_TYPE,
+                    entry.getMediaType() == null ? -1 : (byte) entry.getMediaType().ordinal());
+            records.set(BYTE, offset + NULLS, nulls);
+            records.set(LONG, offset + CREATED_SECONDS, createdAt.toEpochSecond(ZoneOffset.UTC));
+            records.set(INT, offset + CREATED_NANOS, createdAt.getNano());
+            records.set(INT, offset + GENRE_COUNT, genres.size());
+            records.set(LONG, offset + STRINGS, stringBytes);
+
+            records.set(INT, offset + TITLE_LENGTH, append(bytes(entry.getTitle())));
+            records.set(INT, offset + DESCRIPTION_LENGTH, append(bytes(entry.getDescription())));
+            int genreBytes = 0;
+            for (String genre : genres) {
+                genreBytes += appendWithLength(bytes(genre));
+            }
+            records.set(INT, offset + GENRE_BYTES, genreBytes);
+            records.set(INT, offset + LOWER_TITLE_LENGTH, append(bytes(lowerTitle)));
+            records.set(INT, offset + TITLE_KEY_LENGTH, append(MediaCatalog.titleKey(lowerTitle)));
+            int lowerGenreBytes = 0;
+            for (String genre : genres) {
+                lowerGenreBytes += appendWithLength(bytes(MediaCatalog.lower(genre)));
+            }
+            records.set(INT, offset + LOWER_GENRE_BYTES, lowerGenreBytes);
+
+            lastId = entry.getId();
+            count++;
+        }
+
+        // one segment with everything added so far, the builder is closed afterwards
+        public MediaSegmentStore build() {
+            MemorySegment segment = Arena.ofAuto().allocate(HEADER + count * RECORD + stringBytes, 8);
+            segment.set(INT, 0, MAGIC);
+            segment.set(INT, 4, VERSION);
+            segment.set(INT, 8, count);
+            segment.set(LONG, 16, stringBytes);
+            MemorySegment.copy(records, 0, segment, HEADER, count * RECORD);
+            MemorySegment.copy(strings, 0, segment, HEADER + count * RECORD, stringBytes);
+            close();
+            return new MediaSegmentStore(segment);
+        }
+
+        private int append(byte[] bytes) {
+            if (stringBytes + bytes.length > strings.byteSize()) {
+                strings = grow(strings, stringBytes + bytes.length);
+            }
+            MemorySegment.copy(bytes, 0, strings, BYTE, stringBytes, bytes.length);
+            stringBytes += bytes.length;
+            return bytes.length;
+        }
+
+        private int appendWithLength(byte[] bytes) {
+            if (stringBytes + 4 > strings.byteSize()) {
+                strings = grow(strings, stringBytes + 4);
+            }
+            strings.set(INT, stringBytes, bytes.length);
+            stringBytes += 4;
+            return 4 + append(bytes);
+        }
+
+        // the old buffer stays allocated until the builder is closed, at most as much again as the last one
+        private MemorySegment grow(MemorySegment buffer, long needed) {
+            MemorySegment grown = arena.allocate(Math.max(needed, buffer.byteSize() * 2), 8);
+            MemorySegment.copy(buffer, 0, grown, 0, buffer.byteSize());
+            return grown;
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            if (arena.scope().isAlive()) {
+                arena.close();
+            }
+        }
+    }
+}
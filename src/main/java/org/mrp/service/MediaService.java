@@ -1,11 +1,16 @@
 package org.mrp.service;
 
 import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaPage;
+import org.mrp.domain.MediaQuery;
+import org.mrp.domain.MediaSearch;
 import org.mrp.domain.MediaType;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
+import org.mrp.persistence.GroupCommitter;
 import org.mrp.persistence.implemenatations.MediaEntryRepository;
 import org.mrp.persistence.implemenatations.RatingRepository;
+import org.mrp.persistence.implemenatations.RatingRepository.RatingWrite;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,11 +19,41 @@ public class MediaService {
 
     private final MediaEntryRepository mediaEntryRepository;
     private final RatingRepository ratingRepository;
+    // batches concurrent rating writes into one statement, null writes every rating on its own
+    private final GroupCommitter<RatingWrite, Optional<Rating>> ratingCommitter;
+    // answers the media reads from memory, null reads them from the database
+    private final MediaCatalog mediaCatalog;
+    // write-behind likes, told about deleted ratings so it does not keep serving them
+    private final LikeStore likeStore;
 
     public MediaService(MediaEntryRepository mediaEntryRepository,
                         RatingRepository ratingRepository) {
+        this(mediaEntryRepository, ratingRepository, null, null);
+    }
+
+    public MediaService(MediaEntryRepository mediaEntryRepository,
+                        RatingRepository ratingRepository,
+                        GroupCommitter<RatingWrite, Optional<Rating>> ratingCommitter) {
+        this(mediaEntryRepository, ratingRepository, ratingCommitter, null);
+    }
+
+    public MediaService(MediaEntryRepository mediaEntryRepository,
+                        RatingRepository ratingRepository,
+                        GroupCommitter<RatingWrite, Optional<Rating>> ratingCommitter,
+                        MediaCatalog mediaCatalog) {
+        this(mediaEntryRepository, ratingRepository, ratingCommitter, mediaCatalog, null);
+    }
+
+    public MediaService(MediaEntryRepository mediaEntryRepository,
+                        RatingRepository ratingRepository,
+                        GroupCommitter<RatingWrite, Optional<Rating>> ratingCommitter,
+                        MediaCatalog mediaCatalog,
+                        LikeStore likeStore) {
         this.mediaEntryRepository = mediaEntryRepository;
         this.ratingRepository = ratingRepository;
+        this.ratingCommitter = ratingCommitter;
+        this.mediaCatalog = mediaCatalog;
+        this.likeStore = likeStore;
     }
 
     public MediaEntry createMediaEntry(String title, String description, MediaType mediaType,
@@ -34,6 +69,7 @@ public class MediaService {
                 .build();
 
         mediaEntryRepository.save(entry);
+        refreshCatalog(entry.getId());
         return entry;
     }
 
@@ -58,18 +94,48 @@ public class MediaService {
         entry.setAge(age);
 
         mediaEntryRepository.update(entry);
+        refreshCatalog(entryId);
         return true;
     }
 
     public Optional<MediaEntry> getMediaEntryById(int entryId) {
+        if (mediaCatalog != null) {
+            return mediaCatalog.findById(entryId);
+        }
         return mediaEntryRepository.findById(entryId);
     }
 
     public List<MediaEntry> getAllMediaEntries() {
+        if (mediaCatalog != null) {
+            return mediaCatalog.findAll();
+        }
         return mediaEntryRepository.findAll();
     }
 
+    public MediaPage findMediaEntries(MediaQuery query) {
+        if (mediaCatalog != null) {
+            return mediaCatalog.find(query);
+        }
+        return mediaEntryRepository.findByQuery(query);
+    }
+
+    // a query without a limit, the catalog builds each entry only when the list is read
+    public List<MediaEntry> findEachMediaEntry(MediaQuery query) {
+        if (mediaCatalog != null) {
+            return mediaCatalog.findEach(query);
+        }
+        return mediaEntryRepository.findByQuery(query).entries();
+    }
+
+    // ranked by the database, the catalog has no text index
+    public MediaPage searchMediaEntries(MediaSearch search) {
+        return mediaEntryRepository.search(search);
+    }
+
     public List<MediaEntry> getMediaEntriesByUser(int userId) {
+        if (mediaCatalog != null) {
+            return mediaCatalog.findByUserId(userId);
+        }
         return mediaEntryRepository.findByUserId(userId);
     }
 
@@ -86,6 +152,13 @@ public class MediaService {
         }
 
         mediaEntryRepository.deleteById(entryId);
+        if (mediaCatalog != null) {
+            mediaCatalog.remove(entryId);
+        }
+        // the ratings of the entry are deleted with it
+        if (likeStore != null) {
+            likeStore.invalidateEntry(entryId);
+        }
         return true;
     }
 
@@ -93,6 +166,9 @@ public class MediaService {
         if (genre == null || genre.trim().isEmpty()) {
             return List.of();
         }
+        if (mediaCatalog != null) {
+            return mediaCatalog.findByGenre(genre);
+        }
         return mediaEntryRepository.findByGenre(genre);
     }
 
@@ -101,34 +177,15 @@ public class MediaService {
             return Optional.empty();
         }
 
-        //check if entry exists
-        Optional<MediaEntry> entryOpt = mediaEntryRepository.findById(entryId);
-        if (entryOpt.isEmpty()) {
-            return Optional.empty();
-        }
-
-        Optional<Rating> existingRating = ratingRepository.findByEntryAndUser(entryId, userId);
-
-        Rating rating;
-        if (existingRating.isPresent()) {
-            rating = existingRating.get();
-            rating.setStarValue(starValue);
-            rating.setComment(comment);
-            ratingRepository.update(rating);
-        } else {
-            rating = Rating.builder()
-                    .mediaEntryId(entryId)
-                    .userId(userId)
-                    .starValue(starValue)
-                    .comment(comment)
-                    .build();
-            ratingRepository.save(rating);
+        // one statement: checks the entry, inserts or updates the rating and returns the saved row
+        Optional<Rating> rating = ratingCommitter != null
+                ? ratingCommitter.submit(new RatingWrite(entryId, userId, starValue, comment))
+                : ratingRepository.upsert(entryId, userId, starValue, comment);
+        // the average rating of the entry changed
+        if (rating.isPresent()) {
+            refreshCatalog(entryId);
         }
-
-        double average = ratingRepository.calculateAverageRating(entryId);
-        mediaEntryRepository.updateAverageRating(entryId, average);
-
-        return Optional.of(rating);
+        return rating;
     }
 
     public Optional<Rating> getRating(int ratingId) {
@@ -163,10 +220,7 @@ public class MediaService {
         rating.setStarValue(score);
         rating.setComment(comment);
         ratingRepository.update(rating);
-
-        // update average rating for the media entry
-        double average = ratingRepository.calculateAverageRating(rating.getMediaEntryId());
-        mediaEntryRepository.updateAverageRating(rating.getMediaEntryId(), average);
+        refreshCatalog(rating.getMediaEntryId());
 
         return true;
     }
@@ -184,12 +238,12 @@ public class MediaService {
             return false;
         }
 
-        int entryId = rating.getMediaEntryId();
+        // the rating sum and count of the media entry are adjusted by the database in the same statement
         ratingRepository.deleteById(ratingId);
-
-        // update average rating for the media entry
-        double average = ratingRepository.calculateAverageRating(entryId);
-        mediaEntryRepository.updateAverageRating(entryId, average);
+        if (likeStore != null) {
+            likeStore.invalidate(ratingId);
+        }
+        refreshCatalog(rating.getMediaEntryId());
 
         return true;
     }
@@ -207,6 +261,12 @@ public class MediaService {
         return sum / userRatings.size();
     }
 
+    private void refreshCatalog(int entryId) {
+        if (mediaCatalog != null) {
+            mediaCatalog.refresh(entryId);
+        }
+    }
+
     public Optional<MediaEntry> getMediaEntryByRatingId(int ratingId) {
         return mediaEntryRepository.findByRatingId(ratingId);
     }
@@ -0,0 +1,222 @@
+package org.mrp.service;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// filters and sorts of the catalog queries, split over a fork/join pool of its own once they are large enough
+// small queries stay on the request thread, the pool never takes threads from the request executor,
+// and only a few large queries share the pool at a time, the others run on their own thread instead of queueing
+public class QueryExecutor implements AutoCloseable {
+
+    public enum Strategy {
+        SEQUENTIAL,
+        PARALLEL,
+        // large enough for the pool, but the pool was busy with other large queries
+        SEQUENTIAL_BUSY,
+    }
+
+    // below this a sorted chunk is not split any further
+    private static final int SORT_GRANULARITY = 8192;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final Semaphore slots;
+    private final Map<Strategy, LongAdder> counts = new EnumMap<>(Strategy.class);
+
+    // a threshold of 0 turns the pool off, threads of 0 use one per core
+    public QueryExecutor(int threshold, int threads, int maxParallelQueries) {
+        if (threshold < 0 || threads < 0 || maxParallelQueries < 1) {
+            throw new IllegalArgumentException("threshold and threads must not be negative, maxParallelQueries must be positive");
+        }
+        this.threshold = threshold;
+        this.slots = new Semaphore(maxParallelQueries);
+        if (threshold == 0) {
+            this.pool = null;
+        } else {
+            this.pool = new ForkJoinPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads,
+                    pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("media-query-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+        }
+        for (Strategy strategy : Strategy.values()) {
+            counts.put(strategy, new LongAdder());
+        }
+    }
+
+    // everything on the calling thread
+    public static QueryExecutor sequential() {
+        return new QueryExecutor(0, 0, 1);
+    }
+
+    // the items from..length-1 that pass, in their order
+    public <T> T[] filter(T[] items, int from, Predicate<? super T> predicate) {
+        int size = items.length - from;
+        if (choose(size) == Strategy.PARALLEL) {
+            try {
+                return run(() -> Arrays.stream(items, from, items.length).parallel().filter(predicate)
+                        .toArray(length -> newArray(items, length)));
+            } finally {
+                slots.release();
+            }
+        }
+        T[] result = newArray(items, size);
+        int count = 0;
+        for (int i = from; i < items.length; i++) {
+            if (predicate.test(items[i])) {
+                result[count++] = items[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // stable like Arrays.sort, in place
+    public <T> void sort(T[] items, Comparator<? super T> order) {
+        if (choose(items.length) == Strategy.PARALLEL) {
+            try {
+                run(() -> {
+                    new MergeSort<>(items, newArray(items, items.length), 0, items.length, order).invoke();
+                    return null;
+                });
+            } finally {
+                slots.release();
+            }
+        } else {
+            Arrays.sort(items, order);
+        }
+    }
+
+    // whether a filter or sort of this size goes to the pool when it is free
+    public boolean isLarge(int size) {
+        return pool != null && size >= threshold;
+    }
+
+    // a parallel strategy holds a slot that the caller releases
+    private Strategy choose(int size) {
+        Strategy strategy;
+        if (!isLarge(size)) {
+            strategy = Strategy.SEQUENTIAL;
+        } else if (slots.tryAcquire()) {
+            strategy = Strategy.PARALLEL;
+        } else {
+            strategy = Strategy.SEQUENTIAL_BUSY;
+        }
+        counts.get(strategy).increment();
+        return strategy;
+    }
+
+    private <R> R run(Callable<R> task) {
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running a media query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Failed to run a media query", e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(T[] like, int length) {
+        return (T[]) Array.newInstance(like.getClass().getComponentType(), length);
+    }
+
+    public long getCount(Strategy strategy) {
+        return counts.get(strategy).sum();
+    }
+
+    // queries per strategy since startup
+    public Map<Strategy, Long> getCounts() {
+        Map<Strategy, Long> result = new EnumMap<>(Strategy.class);
+        counts.forEach((strategy, count) -> result.put(strategy, count.sum()));
+        return result;
+    }
+
+    // e.g. "SEQUENTIAL=120 PARALLEL=4 SEQUENTIAL_BUSY=1"
+    public String describeCounts() {
+        StringBuilder description = new StringBuilder();
+        for (Strategy strategy : Strategy.values()) {
+            if (description.length() > 0) {
+                description.append(' ');
+            }
+            description.append(strategy).append('=').append(getCount(strategy));
+        }
+        return description.toString();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // sorts both halves at the same time and merges them through the buffer, ties keep the left one first
+    private static final class MergeSort<T> extends RecursiveAction {
+        private final T[] items;
+        private final T[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<? super T> order;
+
+        private MergeSort(T[] items, T[] buffer, int from, int to, Comparator<? super T> order) {
+            this.items = items;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SORT_GRANULARITY) {
+                Arrays.sort(items, from, to, order);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MergeSort<>(items, buffer, from, middle, order),
+                    new MergeSort<>(items, buffer, middle, to, order));
+            if (order.compare(items[middle - 1], items[middle]) <= 0) {
+                // already in order
+                return;
+            }
+
+            System.arraycopy(items, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right == to || (left < middle && order.compare(buffer[left], buffer[right]) <= 0)) {
+                    items[i] = buffer[left++];
+                } else {
+                    items[i] = buffer[right++];
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.mrp.service;
 import org.mrp.domain.Like;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
+import org.mrp.persistence.GroupCommitter;
 import org.mrp.persistence.implemenatations.LikeRepository;
 import org.mrp.persistence.implemenatations.RatingRepository;
 
@@ -14,10 +15,21 @@ import java.util.Optional;
 public class RatingService {
     private final RatingRepository ratingRepository;
     private final LikeRepository likeRepository;
+    // batches concurrent likes into one statement, null saves every like on its own
+    private final GroupCommitter<Like, Like> likeCommitter;
+    // write-behind mode for likes, null writes them synchronously
+    private final LikeStore likeStore;
 
     public RatingService(RatingRepository ratingRepository, LikeRepository likeRepository) {
+        this(ratingRepository, likeRepository, null, null);
+    }
+
+    public RatingService(RatingRepository ratingRepository, LikeRepository likeRepository,
+                         GroupCommitter<Like, Like> likeCommitter, LikeStore likeStore) {
         this.ratingRepository = ratingRepository;
         this.likeRepository = likeRepository;
+        this.likeCommitter = likeCommitter;
+        this.likeStore = likeStore;
     }
 
     public boolean updateRating(int ratingId, Integer stars, String comment, User editor) {
@@ -80,6 +92,15 @@ public class RatingService {
     }
 
     public Optional<Like> likeRating(int ratingId, User user) {
+        if (likeStore != null) {
+            if (!canLike(ratingId, user)) {
+                return Optional.empty();
+            }
+            // the like is written later, so it has no id yet
+            likeStore.like(ratingId, user.getId());
+            return Optional.of(Like.builder().ratingId(ratingId).userId(user.getId()).build());
+        }
+
         Optional<Rating> ratingOpt = ratingRepository.findById(ratingId);
         if (ratingOpt.isEmpty()) {
             return Optional.empty();
@@ -91,6 +112,12 @@ public class RatingService {
             return Optional.empty();
         }
 
+        if (likeCommitter != null) {
+            // the batch insert returns the existing like when the user already liked the rating
+            Like like = Like.builder().ratingId(ratingId).userId(user.getId()).build();
+            return Optional.of(likeCommitter.submit(like));
+        }
+
         Optional<Like> existingLike = likeRepository.findByRatingAndUser(ratingId, user.getId());
         if (existingLike.isPresent()) {
             // user already liked this rating, return the existing like
@@ -106,6 +133,10 @@ public class RatingService {
     }
 
     public boolean unlikeRating(int ratingId, User user) {
+        if (likeStore != null) {
+            return likeStore.findRatingOwner(ratingId).isPresent() && likeStore.unlike(ratingId, user.getId());
+        }
+
         Optional<Rating> ratingOpt = ratingRepository.findById(ratingId);
         if (ratingOpt.isEmpty()) {
             return false;
@@ -121,6 +152,10 @@ public class RatingService {
     }
 
     public boolean toggleLikeRating(int ratingId, User user) {
+        if (likeStore != null) {
+            return canLike(ratingId, user) && likeStore.toggle(ratingId, user.getId());
+        }
+
         Optional<Rating> ratingOpt = ratingRepository.findById(ratingId);
         if (ratingOpt.isEmpty()) {
             return false;
@@ -146,13 +181,34 @@ public class RatingService {
     }
 
     public int getLikeCountForRating(int ratingId) {
+        if (likeStore != null) {
+            return likeStore.getLikeCount(ratingId);
+        }
         return likeRepository.getLikeCountForRating(ratingId);
     }
 
     public boolean hasUserLikedRating(int ratingId, int userId) {
+        if (likeStore != null) {
+            return likeStore.isLiked(ratingId, userId);
+        }
         return likeRepository.hasUserLikedRating(ratingId, userId);
     }
 
+    // the rating exists and is not the user's own
+    private boolean canLike(int ratingId, User user) {
+        Optional<Integer> owner = likeStore.findRatingOwner(ratingId);
+        return owner.isPresent() && owner.get() != user.getId();
+    }
+
+    // the user id of the rating's author, empty when the rating does not exist
+    // in write-behind mode the like store answers from memory once it has the rating
+    public Optional<Integer> findRatingOwner(int ratingId) {
+        if (likeStore != null) {
+            return likeStore.findRatingOwner(ratingId);
+        }
+        return ratingRepository.findById(ratingId).map(Rating::getUserId);
+    }
+
     public Optional<Like> getLikeByRatingAndUser(int ratingId, int userId) {
         return likeRepository.findByRatingAndUser(ratingId, userId);
     }
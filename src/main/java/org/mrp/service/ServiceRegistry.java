@@ -0,0 +1,192 @@
+package org.mrp.service;
+
+import org.mrp.domain.Like;
+import org.mrp.domain.Rating;
+import org.mrp.persistence.ConnectionPool;
+import org.mrp.persistence.DatabaseConnection;
+import org.mrp.persistence.GroupCommitter;
+import org.mrp.persistence.LikeCounter;
+import org.mrp.persistence.implemenatations.*;
+import org.mrp.persistence.implemenatations.RatingRepository.RatingWrite;
+import org.mrp.service.utils.ConfigUtils;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// one set of repositories and services for the whole server, all sharing the same connection pool
+public class ServiceRegistry {
+    private static ServiceRegistry instance;
+
+    private final ConnectionPool connectionPool;
+    private final LikeCounter likeCounter;
+    private final GroupCommitter<RatingWrite, Optional<Rating>> ratingCommitter;
+    private final GroupCommitter<Like, Like> likeCommitter;
+    private final LikeStore likeStore;
+    private final MediaCatalog mediaCatalog;
+    private final QueryExecutor queryExecutor;
+    private final ScheduledExecutorService revocationSync;
+    private final UserService userService;
+    private final MediaService mediaService;
+    private final RatingService ratingService;
+    private final FavoriteService favoriteService;
+
+    private ServiceRegistry(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+
+        UserRepository userRepository = new UserRepository(connectionPool);
+        UserProfileRepository userProfileRepository = new UserProfileRepository(connectionPool);
+        TokenRepository tokenRepository = new TokenRepository(connectionPool);
+        MediaEntryRepository mediaEntryRepository = new MediaEntryRepository(connectionPool);
+        RatingRepository ratingRepository = new RatingRepository(connectionPool);
+        long likeFlushMillis = ConfigUtils.getLong("likes.counter.flush.ms", 1000);
+        if (likeFlushMillis > 0) {
+            // like count changes that were still in memory when the server went down are lost, count them again
+            ratingRepository.recountLikes();
+        }
+        this.likeCounter = new LikeCounter(likeFlushMillis, ratingRepository::addLikeCounts);
+        LikeRepository likeRepository = new LikeRepository(connectionPool, likeCounter);
+        FavoriteRepository favoriteRepository = new FavoriteRepository(connectionPool);
+
+        TokenCache tokenCache = new TokenCache(ConfigUtils.getInt("auth.token.cache.size", TokenCache.DEFAULT_MAX_SIZE));
+
+        TokenSigner tokenSigner = createTokenSigner(tokenRepository);
+        this.userService = new UserService(userRepository, userProfileRepository, tokenRepository,
+                tokenCache, tokenSigner);
+        this.revocationSync = tokenSigner == null ? null : startRevocationSync(tokenSigner);
+        // rating and like bursts are written in batches, see GroupCommitter
+        if (ConfigUtils.getBoolean("db.group.commit.enabled", true)) {
+            int maxBatchSize = ConfigUtils.getInt("db.group.commit.max.batch", 64);
+            long maxWaitMillis = ConfigUtils.getLong("db.group.commit.max.wait.ms", 2);
+            this.ratingCommitter = new GroupCommitter<>("rating-commit", maxBatchSize, maxWaitMillis,
+                    ratingRepository::upsertAll);
+            this.likeCommitter = new GroupCommitter<>("like-commit", maxBatchSize, maxWaitMillis,
+                    likeRepository::saveAll);
+        } else {
+            this.ratingCommitter = null;
+            this.likeCommitter = null;
+        }
+
+        this.queryExecutor = new QueryExecutor(ConfigUtils.getInt("media.query.parallel.threshold", 50_000),
+                ConfigUtils.getInt("media.query.parallel.threads", 0),
+                ConfigUtils.getInt("media.query.parallel.max.queries", 2));
+        this.mediaCatalog = ConfigUtils.getBoolean("media.catalog.enabled", true)
+                ? new MediaCatalog(mediaEntryRepository, ConfigUtils.getLong("media.catalog.reload.ms", 60_000),
+                        ConfigUtils.getBoolean("media.catalog.offheap.enabled", false), catalogStoreFile(),
+                        queryExecutor)
+                : null;
+        this.likeStore = ConfigUtils.getBoolean("likes.write.behind.enabled", false)
+                ? new LikeStore(ratingRepository, likeRepository,
+                        ConfigUtils.getInt("likes.write.behind.queue.size", 10_000),
+                        ConfigUtils.getInt("likes.write.behind.batch.size", 500),
+                        ConfigUtils.getLong("likes.write.behind.offer.timeout.ms", 50),
+                        ConfigUtils.getInt("likes.write.behind.cache.size", LikeStore.DEFAULT_MAX_RATINGS))
+                : null;
+        this.mediaService = new MediaService(mediaEntryRepository, ratingRepository, ratingCommitter, mediaCatalog,
+                likeStore);
+
+        this.ratingService = new RatingService(ratingRepository, likeRepository, likeCommitter, likeStore);
+        this.favoriteService = new FavoriteService(favoriteRepository);
+    }
+
+    // empty keeps the off-heap catalog in memory only
+    private static Path catalogStoreFile() {
+        String file = ConfigUtils.getProperty("media.catalog.offheap.file", null);
+        return file == null ? null : Path.of(file);
+    }
+
+    private static TokenSigner createTokenSigner(TokenRepository tokenRepository) {
+        String mode = ConfigUtils.getProperty("auth.token.mode", "database");
+        switch (mode.toLowerCase()) {
+            case "database":
+                return null;
+            case "signed":
+                return new TokenSigner(ConfigUtils.getProperty("auth.token.secret"),
+                        TimeUnit.HOURS.toMillis(UserService.TOKEN_EXPIRATION_HOURS), tokenRepository);
+            default:
+                throw new IllegalArgumentException("Unknown auth.token.mode: " + mode + " (expected database or signed)");
+        }
+    }
+
+    // logouts on the other servers are picked up every interval, right away for the ones before this server started
+    private static ScheduledExecutorService startRevocationSync(TokenSigner tokenSigner) {
+        long intervalMillis = ConfigUtils.getLong("auth.token.revocation.sync.ms", 5_000);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().name("token-revocation-sync").daemon().unstarted(runnable));
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                tokenSigner.syncRevocations();
+            } catch (RuntimeException e) {
+                // the next interval tries again
+                e.printStackTrace();
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    public static synchronized ServiceRegistry getInstance() throws SQLException {
+        if (instance == null) {
+            instance = new ServiceRegistry(DatabaseConnection.getConnectionPool());
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            close(instance.revocationSync);
+            close(instance.mediaCatalog);
+            // the counts are gone with the registry, printed once more for a run without monitoring
+            System.out.println("Media queries: " + instance.queryExecutor.describeCounts());
+            close(instance.queryExecutor);
+            // pending writes still need the pool
+            close(instance.likeStore);
+            close(instance.ratingCommitter);
+            close(instance.likeCommitter);
+            // after the likes, their count changes come last
+            close(instance.likeCounter);
+            close(instance.connectionPool);
+            instance = null;
+        }
+    }
+
+    // a component that fails to close (e.g. a final flush while the database is down) does not keep the others open
+    private static void close(AutoCloseable component) {
+        if (component == null) {
+            return;
+        }
+        try {
+            component.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    public MediaService getMediaService() {
+        return mediaService;
+    }
+
+    public RatingService getRatingService() {
+        return ratingService;
+    }
+
+    public FavoriteService getFavoriteService() {
+        return favoriteService;
+    }
+
+    // how the catalog queries ran since startup, to tune media.query.parallel.* against
+    public Map<QueryExecutor.Strategy, Long> getMediaQueryCounts() {
+        return queryExecutor.getCounts();
+    }
+}
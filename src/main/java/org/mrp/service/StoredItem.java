@@ -0,0 +1,86 @@
+package org.mrp.service;
+
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+
+record StoredItem(MediaSegmentStore store, int record) implements CatalogItem {
+    @Override
+    public int id() {
+        return store.id(record);
+    }
+
+    @Override
+    public MediaType mediaType() {
+        return store.mediaType(record);
+    }
+
+    @Override
+    public boolean hasReleaseYear() {
+        return store.hasReleaseYear(record);
+    }
+
+    @Override
+    public int releaseYear() {
+        return store.releaseYear(record);
+    }
+
+    @Override
+    public int age() {
+        return store.age(record);
+    }
+
+    @Override
+    public double averageRating() {
+        return store.averageRating(record);
+    }
+
+    @Override
+    public int createdByUserId() {
+        return store.createdByUserId(record);
+    }
+
+    @Override
+    public long createdSeconds() {
+        return store.createdSeconds(record);
+    }
+
+    @Override
+    public int createdNanos() {
+        return store.createdNanos(record);
+    }
+
+    @Override
+    public boolean titleContains(Text text) {
+        return store.titleContains(record, text.utf8());
+    }
+
+    @Override
+    public boolean genreContains(Text text) {
+        return store.genreContains(record, text.utf8());
+    }
+
+    @Override
+    public String[] genres() {
+        return store.lowerGenres(record);
+    }
+
+    @Override
+    public byte[] titleKey() {
+        return store.titleKey(record);
+    }
+
+    @Override
+    public int compareTitle(byte[] key) {
+        return store.compareTitle(record, key);
+    }
+
+    @Override
+    public MediaEntry entry() {
+        return store.get(record);
+    }
+
+    @Override
+    public MediaEntry materialize() {
+        return store.get(record);
+    }
+}
@@ -0,0 +1,106 @@
+package org.mrp.service;
+
+import org.mrp.domain.User;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// token -> user lookups for validated bearer tokens, so authenticated requests skip the token and user queries
+public class TokenCache {
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final Map<String, CachedToken> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // bumped on every invalidation, so a lookup that raced with a logout is not cached afterwards
+    private final AtomicLong generation = new AtomicLong();
+
+    private record CachedToken(User user, long expiresAtMillis) {
+    }
+
+    public TokenCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public TokenCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Token cache size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public Optional<User> get(String token) {
+        CachedToken cached = entries.get(token);
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() >= cached.expiresAtMillis()) {
+            entries.remove(token, cached);
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(cached.user());
+    }
+
+    // call before reading the token from the database and pass the result to put()
+    public long startLookup() {
+        return generation.get();
+    }
+
+    public void put(String token, User user, long expiresAtMillis, long lookupGeneration) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(token, new CachedToken(user, expiresAtMillis));
+        if (generation.get() != lookupGeneration) {
+            entries.remove(token);
+        }
+    }
+
+    public void invalidate(String token) {
+        generation.incrementAndGet();
+        entries.remove(token);
+    }
+
+    public void invalidateUser(int userId) {
+        generation.incrementAndGet();
+        entries.values().removeIf(cached -> cached.user().getId() == userId);
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    // drop expired tokens first, then arbitrary ones until there is room again
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(cached -> now >= cached.expiresAtMillis());
+
+        Iterator<CachedToken> iterator = entries.values().iterator();
+        int target = maxSize - Math.max(1, maxSize / 10);
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,156 @@
+package org.mrp.service;
+
+import org.mrp.persistence.implemenatations.TokenRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// self-contained bearer tokens: base64url(userId:issuedAt:expiresAt:nonce:username) + "." + base64url(hmac-sha256)
+// they are checked without touching the database, logout is handled by a per-user "revoked before" time
+// with a TokenRepository the revocations are also written to the database and read back by syncRevocations,
+// so a logout on one server reaches the others within the sync interval; without one they stay on this server
+public class TokenSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private final SecretKeySpec key;
+    private final long lifetimeMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<Integer, Long> revokedBefore = new ConcurrentHashMap<>();
+    private final TokenRepository tokenRepository;
+    // initialized Macs for reuse, a Mac is not thread safe and getting plus initializing one costs more than the hmac
+    // a pool instead of a ThreadLocal, requests run on virtual threads that would each initialize their own
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+
+    public record SignedToken(int userId, String username, long issuedAtMillis, long expiresAtMillis) {
+    }
+
+    public TokenSigner(String secret, long lifetimeMillis) {
+        this(secret, lifetimeMillis, null);
+    }
+
+    public TokenSigner(String secret, long lifetimeMillis, TokenRepository tokenRepository) {
+        if (secret == null || secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("auth.token.secret must be at least " + MIN_SECRET_LENGTH + " characters");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.lifetimeMillis = lifetimeMillis;
+        this.tokenRepository = tokenRepository;
+    }
+
+    public String sign(int userId, String username) {
+        long now = System.currentTimeMillis();
+        // a token issued in the same millisecond as a revocation must still be valid
+        long issuedAt = Math.max(now, revokedBefore.getOrDefault(userId, 0L) + 1);
+        String nonce = HexFormat.of().formatHex(randomBytes(8));
+
+        String payload = userId + ":" + issuedAt + ":" + (issuedAt + lifetimeMillis) + ":" + nonce + ":" + username;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(hmac(payloadBytes));
+    }
+
+    public Optional<SignedToken> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0 || separator != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, separator));
+            signature = decoder.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        // constant time compare, so the signature cannot be guessed byte by byte
+        if (!MessageDigest.isEqual(hmac(payloadBytes), signature)) {
+            return Optional.empty();
+        }
+
+        String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 5);
+        if (parts.length != 5) {
+            return Optional.empty();
+        }
+
+        SignedToken signedToken;
+        try {
+            signedToken = new SignedToken(Integer.parseInt(parts[0]), parts[4],
+                    Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+
+        if (System.currentTimeMillis() >= signedToken.expiresAtMillis()) {
+            return Optional.empty();
+        }
+        Long revoked = revokedBefore.get(signedToken.userId());
+        if (revoked != null && signedToken.issuedAtMillis() <= revoked) {
+            return Optional.empty();
+        }
+        return Optional.of(signedToken);
+    }
+
+    // every token of the user issued up to now stops being valid
+    public void revokeUser(int userId) {
+        long now = System.currentTimeMillis();
+        revokedBefore.merge(userId, now, Math::max);
+        if (tokenRepository != null) {
+            tokenRepository.saveRevocation(userId, now);
+        }
+        removeExpiredRevocations();
+    }
+
+    // takes over the revocations of the other servers, nothing to do without a TokenRepository
+    public void syncRevocations() {
+        if (tokenRepository == null) {
+            return;
+        }
+        tokenRepository.findRevocationsSince(System.currentTimeMillis() - lifetimeMillis)
+                .forEach((userId, revokedAt) -> revokedBefore.merge(userId, revokedAt, Math::max));
+        removeExpiredRevocations();
+    }
+
+    // revocations older than a token lifetime only cover tokens that have expired anyway
+    private void removeExpiredRevocations() {
+        long oldest = System.currentTimeMillis() - lifetimeMillis;
+        revokedBefore.values().removeIf(revokedAt -> revokedAt < oldest);
+    }
+
+    private byte[] hmac(byte[] data) {
+        Mac mac = macs.poll();
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 not available", e);
+            }
+        }
+        // doFinal resets the Mac for the next use
+        byte[] result = mac.doFinal(data);
+        macs.offer(mac);
+        return result;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -16,6 +16,7 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
@@ -29,12 +30,24 @@ public class UserService {
 
     private final TokenRepository tokenRepository;
 
-    private static final long TOKEN_EXPIRATION_HOURS = 24;
+    private final TokenCache tokenCache;
+
+    // set when auth.token.mode=signed, tokens are then never stored in the database
+    private final TokenSigner tokenSigner;
+
+    public static final long TOKEN_EXPIRATION_HOURS = 24;
 
     public UserService(UserRepository userRepository, UserProfileRepository userProfileRepository, TokenRepository tokenRepository) {
+        this(userRepository, userProfileRepository, tokenRepository, new TokenCache(), null);
+    }
+
+    public UserService(UserRepository userRepository, UserProfileRepository userProfileRepository,
+                       TokenRepository tokenRepository, TokenCache tokenCache, TokenSigner tokenSigner) {
         this.userRepository = userRepository;
         this.userProfileRepository = userProfileRepository;
         this.tokenRepository = tokenRepository;
+        this.tokenCache = tokenCache;
+        this.tokenSigner = tokenSigner;
     }
 
     public void registerUser(User user) {
@@ -69,8 +82,15 @@ public class UserService {
                 return Optional.empty();
             }
 
+            if (tokenSigner != null) {
+                // a new login replaces the old token, like in database mode
+                tokenSigner.revokeUser(user.getId());
+                return Optional.of(tokenSigner.sign(user.getId(), user.getUsername()));
+            }
+
             String token = generateToken(username);
             UserToken userToken = new UserToken(token, user.getId(), LocalDateTime.now());
+            tokenCache.invalidateUser(user.getId());
             if(tokenRepository.findByUserId(user.getId()).isPresent()){
                 tokenRepository.deleteByUserId(user.getId());
             }
@@ -84,6 +104,11 @@ public class UserService {
 
     // removes token for user
     public void logout(User user) {
+        if (tokenSigner != null) {
+            tokenSigner.revokeUser(user.getId());
+            return;
+        }
+        tokenCache.invalidateUser(user.getId());
         tokenRepository.deleteByUserId(user.getId());
     }
 
@@ -96,6 +121,21 @@ public class UserService {
     }
 
     public Optional<User> validateToken(String token) {
+        if (tokenSigner != null) {
+            // the principal comes from the token itself, no database lookup
+            return tokenSigner.verify(token)
+                    .map(signedToken -> User.builder()
+                            .id(signedToken.userId())
+                            .username(signedToken.username())
+                            .build());
+        }
+
+        Optional<User> cachedUser = tokenCache.get(token);
+        if (cachedUser.isPresent()) {
+            return cachedUser;
+        }
+
+        long lookupGeneration = tokenCache.startLookup();
         Optional<UserToken> tokenInfoOpt = tokenRepository.findById(token);
 
         if (tokenInfoOpt.isEmpty()) {
@@ -109,7 +149,9 @@ public class UserService {
             return Optional.empty();
         }
 
-        return userRepository.findById(tokenInfo.userId());
+        Optional<User> userOpt = userRepository.findById(tokenInfo.userId());
+        userOpt.ifPresent(user -> tokenCache.put(token, user, getExpirationMillis(tokenInfo), lookupGeneration));
+        return userOpt;
     }
 
     public boolean hasPermissionForResource(String token, int resourceOwnerId) {
@@ -125,6 +167,14 @@ public class UserService {
                 .orElse(false);
     }
 
+    private long getExpirationMillis(UserToken token) {
+        return token.createdAt()
+                .plusHours(TOKEN_EXPIRATION_HOURS)
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+    }
+
     private boolean isTokenExpired(UserToken token) {
         LocalDateTime expirationTime = token.createdAt()
                 .plusHours(TOKEN_EXPIRATION_HOURS);
@@ -144,6 +194,7 @@ public class UserService {
     public void cleanupExpiredTokens() {
         for (UserToken userToken : tokenRepository.findAll()) {
             if(userToken.createdAt().isBefore(LocalDateTime.now().plusHours(TOKEN_EXPIRATION_HOURS))) {
+                tokenCache.invalidate(userToken.token());
                 tokenRepository.deleteById(userToken.token());
             }
         }
@@ -191,6 +242,10 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
     public Optional<UserToken> getTokenByUserId(int userId) {
         return tokenRepository.findByUserId(userId);
     }
@@ -0,0 +1,121 @@
+package org.mrp.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// the column filters of CatalogColumns with the vector api: every column is compared a full vector at a time,
+// the lane mask of each comparison is AND-ed into the result bits at the position of its first lane
+// only loaded when CatalogColumns found the jdk.incubator.vector module
+final class VectorScan {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private VectorScan() {
+    }
+
+    // touching the species loads the module classes, fails with a LinkageError when they are missing
+    static void warmUp() {
+        if (BYTES.length() + INTS.length() + FLOATS.length() + LONGS.length() == 0) {
+            throw new IllegalStateException("No vector species");
+        }
+    }
+
+    // a genre mask of 0 or a catalog without genre masks leaves the genres to the caller
+    static void scan(CatalogColumns columns, CatalogColumns.Query query, long genreMask, long[] bits) {
+        int size = columns.size();
+        if (query.mediaType() != null) {
+            equal(columns.mediaTypes, (byte) query.mediaType().ordinal(), size, bits);
+        }
+        if (query.releaseYear() != null) {
+            equal(columns.releaseYears, query.releaseYear(), size, bits);
+        }
+        if (query.maxAge() != null && columns.filtersAge()) {
+            atMost(columns.ages, (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, query.maxAge())), size, bits);
+        }
+        if (query.minRating() != null) {
+            atLeast(columns.ratings, query.minRating().floatValue(), size, bits);
+        }
+        if (genreMask != 0 && columns.genreMasks != null) {
+            anyBit(columns.genreMasks, genreMask, size, bits);
+        }
+    }
+
+    private static void equal(byte[] column, byte value, int size, long[] bits) {
+        int p = 0;
+        for (int bound = BYTES.loopBound(size); p < bound; p += BYTES.length()) {
+            and(bits, p, BYTES.length(), ByteVector.fromArray(BYTES, column, p).eq(value).toLong());
+        }
+        for (; p < size; p++) {
+            if (column[p] != value) {
+                clear(bits, p);
+            }
+        }
+    }
+
+    private static void equal(int[] column, int value, int size, long[] bits) {
+        int p = 0;
+        for (int bound = INTS.loopBound(size); p < bound; p += INTS.length()) {
+            and(bits, p, INTS.length(), IntVector.fromArray(INTS, column, p).eq(value).toLong());
+        }
+        for (; p < size; p++) {
+            if (column[p] != value) {
+                clear(bits, p);
+            }
+        }
+    }
+
+    private static void atMost(byte[] column, byte value, int size, long[] bits) {
+        int p = 0;
+        for (int bound = BYTES.loopBound(size); p < bound; p += BYTES.length()) {
+            and(bits, p, BYTES.length(),
+                    ByteVector.fromArray(BYTES, column, p).compare(VectorOperators.LE, value).toLong());
+        }
+        for (; p < size; p++) {
+            if (column[p] > value) {
+                clear(bits, p);
+            }
+        }
+    }
+
+    private static void atLeast(float[] column, float value, int size, long[] bits) {
+        int p = 0;
+        for (int bound = FLOATS.loopBound(size); p < bound; p += FLOATS.length()) {
+            and(bits, p, FLOATS.length(),
+                    FloatVector.fromArray(FLOATS, column, p).compare(VectorOperators.GE, value).toLong());
+        }
+        for (; p < size; p++) {
+            if (column[p] < value) {
+                clear(bits, p);
+            }
+        }
+    }
+
+    private static void anyBit(long[] column, long mask, int size, long[] bits) {
+        int p = 0;
+        for (int bound = LONGS.loopBound(size); p < bound; p += LONGS.length()) {
+            and(bits, p, LONGS.length(),
+                    LongVector.fromArray(LONGS, column, p).and(mask).compare(VectorOperators.NE, 0).toLong());
+        }
+        for (; p < size; p++) {
+            if ((column[p] & mask) == 0) {
+                clear(bits, p);
+            }
+        }
+    }
+
+    // p is a multiple of the lane count, which is a power of two up to 64, so the lanes never cross a word
+    private static void and(long[] bits, int p, int lanes, long laneBits) {
+        long all = lanes == 64 ? -1L : (1L << lanes) - 1;
+        bits[p >>> 6] &= ~((all & ~laneBits) << (p & 63));
+    }
+
+    private static void clear(long[] bits, int p) {
+        bits[p >>> 6] &= ~(1L << p);
+    }
+}
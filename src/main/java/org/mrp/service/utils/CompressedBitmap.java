@@ -0,0 +1,420 @@
+package org.mrp.service.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+// immutable set of non-negative ints in the roaring layout: the values are split by their high 16 bits into chunks,
+// a chunk with few values keeps them as a sorted array, a dense chunk as a 65536 bit bitmap
+// and/or work chunk by chunk, so their cost depends on the number of values and not on the largest value
+public final class CompressedBitmap {
+    // above this many values a bitmap chunk (8 KiB) is smaller than an array chunk
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new int[0], new Object[0], 0);
+
+    // high 16 bits of each chunk, ascending
+    private final int[] keys;
+    // char[] with the sorted low 16 bits or long[WORDS]
+    private final Object[] chunks;
+    private final int cardinality;
+
+    private CompressedBitmap(int[] keys, Object[] chunks, int cardinality) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.cardinality = cardinality;
+    }
+
+    public static CompressedBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return fromSorted(sorted, sorted.length);
+    }
+
+    // values must be ascending, duplicates are dropped
+    public static CompressedBitmap fromSorted(int[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] < 0) {
+                throw new IllegalArgumentException("Bitmap values must not be negative: " + values[i]);
+            }
+            if (i > 0 && values[i] < values[i - 1]) {
+                throw new IllegalArgumentException("Bitmap values must be ascending");
+            }
+        }
+
+        int[] keys = new int[length == 0 ? 0 : (values[length - 1] >>> 16) - (values[0] >>> 16) + 1];
+        Object[] chunks = new Object[keys.length];
+        int chunkCount = 0;
+        int cardinality = 0;
+
+        int i = 0;
+        while (i < length) {
+            int key = values[i] >>> 16;
+            char[] low = new char[Math.min(length - i, 1 << 16)];
+            int size = 0;
+            for (; i < length && values[i] >>> 16 == key; i++) {
+                char value = (char) values[i];
+                if (size == 0 || low[size - 1] != value) {
+                    low[size++] = value;
+                }
+            }
+            keys[chunkCount] = key;
+            chunks[chunkCount++] = chunk(low, size);
+            cardinality += size;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, chunkCount), Arrays.copyOf(chunks, chunkCount), cardinality);
+    }
+
+    // value v is in the set when bit v of the words is, e.g. the result of a column scan
+    public static CompressedBitmap fromBits(long[] bits) {
+        int chunkCount = (bits.length + WORDS - 1) / WORDS;
+        int[] keys = new int[chunkCount];
+        Object[] chunks = new Object[chunkCount];
+        int count = 0;
+        int cardinality = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            long[] words = Arrays.copyOfRange(bits, c * WORDS, (c + 1) * WORDS);
+            int size = 0;
+            for (long word : words) {
+                size += Long.bitCount(word);
+            }
+            if (size > 0) {
+                keys[count] = c;
+                chunks[count++] = size > ARRAY_LIMIT ? words : toArray(words, size);
+                cardinality += size;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(chunks, count), cardinality);
+    }
+
+    // the values from..to-1 of the array, in any order
+    public static CompressedBitmap ofRange(int[] values, int from, int to) {
+        int[] sorted = Arrays.copyOfRange(values, from, to);
+        Arrays.sort(sorted);
+        return fromSorted(sorted, sorted.length);
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        Object chunk = chunks[index];
+        char low = (char) value;
+        if (chunk instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) chunk, low) >= 0;
+    }
+
+    // a copy with the value added, only the chunk of the value is copied, the others are shared
+    public CompressedBitmap with(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must not be negative: " + value);
+        }
+        int index = Arrays.binarySearch(keys, value >>> 16);
+        char low = (char) value;
+        if (index < 0) {
+            int insert = -index - 1;
+            int[] resultKeys = new int[keys.length + 1];
+            Object[] resultChunks = new Object[chunks.length + 1];
+            System.arraycopy(keys, 0, resultKeys, 0, insert);
+            System.arraycopy(chunks, 0, resultChunks, 0, insert);
+            resultKeys[insert] = value >>> 16;
+            resultChunks[insert] = new char[]{low};
+            System.arraycopy(keys, insert, resultKeys, insert + 1, keys.length - insert);
+            System.arraycopy(chunks, insert, resultChunks, insert + 1, chunks.length - insert);
+            return new CompressedBitmap(resultKeys, resultChunks, cardinality + 1);
+        }
+
+        Object chunk = chunks[index];
+        Object added;
+        if (chunk instanceof long[] words) {
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[low >>> 6] |= 1L << low;
+            added = copy;
+        } else {
+            char[] values = (char[]) chunk;
+            int at = Arrays.binarySearch(values, low);
+            if (at >= 0) {
+                return this;
+            }
+            at = -at - 1;
+            char[] copy = new char[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, at);
+            copy[at] = low;
+            System.arraycopy(values, at, copy, at + 1, values.length - at);
+            added = chunk(copy, copy.length);
+        }
+        Object[] resultChunks = chunks.clone();
+        resultChunks[index] = added;
+        return new CompressedBitmap(keys, resultChunks, cardinality + 1);
+    }
+
+    // a copy without the value, only the chunk of the value is copied, the others are shared
+    public CompressedBitmap without(int value) {
+        int index = value < 0 ? -1 : Arrays.binarySearch(keys, value >>> 16);
+        if (index < 0) {
+            return this;
+        }
+        Object chunk = chunks[index];
+        char low = (char) value;
+        Object removed;
+        if (chunk instanceof long[] words) {
+            if ((words[low >>> 6] & (1L << low)) == 0) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[low >>> 6] &= ~(1L << low);
+            int size = size(copy);
+            removed = size > ARRAY_LIMIT ? copy : toArray(copy, size);
+        } else {
+            char[] values = (char[]) chunk;
+            int at = Arrays.binarySearch(values, low);
+            if (at < 0) {
+                return this;
+            }
+            char[] copy = new char[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, at);
+            System.arraycopy(values, at + 1, copy, at, copy.length - at);
+            removed = copy;
+        }
+
+        if (size(removed) == 0) {
+            int[] resultKeys = new int[keys.length - 1];
+            Object[] resultChunks = new Object[chunks.length - 1];
+            System.arraycopy(keys, 0, resultKeys, 0, index);
+            System.arraycopy(chunks, 0, resultChunks, 0, index);
+            System.arraycopy(keys, index + 1, resultKeys, index, resultKeys.length - index);
+            System.arraycopy(chunks, index + 1, resultChunks, index, resultChunks.length - index);
+            return new CompressedBitmap(resultKeys, resultChunks, cardinality - 1);
+        }
+        Object[] resultChunks = chunks.clone();
+        resultChunks[index] = removed;
+        return new CompressedBitmap(keys, resultChunks, cardinality - 1);
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        int[] resultKeys = new int[Math.min(keys.length, other.keys.length)];
+        Object[] resultChunks = new Object[resultKeys.length];
+        int count = 0;
+        int cardinality = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object chunk = and(chunks[i], other.chunks[j]);
+                int size = size(chunk);
+                if (size > 0) {
+                    resultKeys[count] = keys[i];
+                    resultChunks[count++] = chunk;
+                    cardinality += size;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultChunks, count), cardinality);
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        int[] resultKeys = new int[keys.length + other.keys.length];
+        Object[] resultChunks = new Object[resultKeys.length];
+        int count = 0;
+        int cardinality = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            Object chunk;
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[count] = keys[i];
+                chunk = chunks[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                chunk = other.chunks[j++];
+            } else {
+                resultKeys[count] = keys[i];
+                chunk = or(chunks[i++], other.chunks[j++]);
+            }
+            resultChunks[count++] = chunk;
+            cardinality += size(chunk);
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultChunks, count), cardinality);
+    }
+
+    public static CompressedBitmap orAll(Collection<CompressedBitmap> bitmaps) {
+        CompressedBitmap result = EMPTY;
+        for (CompressedBitmap bitmap : bitmaps) {
+            result = result.or(bitmap);
+        }
+        return result;
+    }
+
+    // ascending
+    public void forEach(IntConsumer consumer) {
+        for (int c = 0; c < keys.length; c++) {
+            int high = keys[c] << 16;
+            Object chunk = chunks[c];
+            if (chunk instanceof long[] words) {
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (char low : (char[]) chunk) {
+                    consumer.accept(high | low);
+                }
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality];
+        int[] index = {0};
+        forEach(value -> values[index[0]++] = value);
+        return values;
+    }
+
+    private static Object chunk(char[] low, int size) {
+        if (size <= ARRAY_LIMIT) {
+            return Arrays.copyOf(low, size);
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            words[low[i] >>> 6] |= 1L << low[i];
+        }
+        return words;
+    }
+
+    private static int size(Object chunk) {
+        if (chunk instanceof long[] words) {
+            int size = 0;
+            for (long word : words) {
+                size += Long.bitCount(word);
+            }
+            return size;
+        }
+        return ((char[]) chunk).length;
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof long[] wordsA && b instanceof long[] wordsB) {
+            long[] words = new long[WORDS];
+            int size = 0;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = wordsA[w] & wordsB[w];
+                size += Long.bitCount(words[w]);
+            }
+            return size > ARRAY_LIMIT ? words : toArray(words, size);
+        }
+        if (a instanceof long[] words) {
+            return filter((char[]) b, words);
+        }
+        if (b instanceof long[] words) {
+            return filter((char[]) a, words);
+        }
+
+        char[] valuesA = (char[]) a;
+        char[] valuesB = (char[]) b;
+        char[] result = new char[Math.min(valuesA.length, valuesB.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < valuesA.length && j < valuesB.length) {
+            if (valuesA[i] < valuesB[j]) {
+                i++;
+            } else if (valuesA[i] > valuesB[j]) {
+                j++;
+            } else {
+                result[size++] = valuesA[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof long[] || b instanceof long[]) {
+            long[] words = new long[WORDS];
+            for (Object chunk : new Object[]{a, b}) {
+                if (chunk instanceof long[] chunkWords) {
+                    for (int w = 0; w < WORDS; w++) {
+                        words[w] |= chunkWords[w];
+                    }
+                } else {
+                    for (char low : (char[]) chunk) {
+                        words[low >>> 6] |= 1L << low;
+                    }
+                }
+            }
+            return words;
+        }
+
+        char[] valuesA = (char[]) a;
+        char[] valuesB = (char[]) b;
+        char[] result = new char[valuesA.length + valuesB.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < valuesA.length || j < valuesB.length) {
+            if (j == valuesB.length || (i < valuesA.length && valuesA[i] < valuesB[j])) {
+                result[size++] = valuesA[i++];
+            } else if (i == valuesA.length || valuesA[i] > valuesB[j]) {
+                result[size++] = valuesB[j++];
+            } else {
+                result[size++] = valuesA[i++];
+                j++;
+            }
+        }
+        return chunk(result, size);
+    }
+
+    private static char[] filter(char[] values, long[] words) {
+        char[] result = new char[values.length];
+        int size = 0;
+        for (char value : values) {
+            if ((words[value >>> 6] & (1L << value)) != 0) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static char[] toArray(long[] words, int size) {
+        char[] values = new char[size];
+        int index = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[index++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,65 @@
+package org.mrp.service.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+public class ConfigUtils {
+    private static final Properties properties = new Properties();
+
+    static {
+        loadProperties();
+    }
+
+    private static void loadProperties() {
+        try (InputStream input = ConfigUtils.class.getClassLoader()
+                .getResourceAsStream("application.properties")) {
+            if (input == null) {
+                System.err.println("application.properties not found");
+                return;
+            }
+            properties.load(input);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // system properties (-Dkey=value) take precedence over application.properties
+    public static String getProperty(String key) {
+        return System.getProperty(key, properties.getProperty(key));
+    }
+
+    public static String getProperty(String key, String defaultValue) {
+        String value = getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getProperty(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be an integer, got: " + value);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getProperty(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number, got: " + value);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getProperty(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -1,23 +1,30 @@
 package org.mrp.service.utils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.sun.net.httpserver.HttpExchange;
+import org.mrp.http.HttpStatus;
+import org.mrp.http.InvalidRequestException;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class HttpUtils {
-    private static final ObjectMapper mapper = createConfiguredObjectMapper();
+    // json bodies up to this size are sent with a Content-Length, bigger ones are streamed chunked
+    static final int BUFFERED_RESPONSE_LIMIT = 64 * 1024;
 
-    private static ObjectMapper createConfiguredObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        // reegister JavaTimeModule to handle Java 8 date/time types
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return mapper;
-    }
+    // the response stream is closed by sendJsonResponse, not by jackson, so a failed write can still be turned into an error
+    private static final ObjectWriter jsonWriter = JsonCodec.streamWriter();
+
+    // request bodies bigger than this are rejected with 413 instead of being read into memory
+    static final int MAX_REQUEST_BODY_BYTES = ConfigUtils.getInt("http.request.max.body.bytes", 64 * 1024);
 
     public static void sendResponse(HttpExchange exchange, int statusCode, String response, String contentType)
             throws IOException {
@@ -37,12 +44,211 @@ public class HttpUtils {
     }
 
     public static void sendJsonResponse(HttpExchange exchange, int statusCode, Object response) throws IOException {
-        String jsonResponse = mapper.writeValueAsString(response);
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, jsonResponse.getBytes().length);
 
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(jsonResponse.getBytes());
+        JsonResponseStream body = new JsonResponseStream(exchange, statusCode, BUFFERED_RESPONSE_LIMIT);
+        try {
+            jsonWriter.writeValue(body, response);
+        } catch (IOException | RuntimeException e) {
+            body.abort();
+            throw e;
+        }
+        body.close();
+    }
+
+    // writes the elements one by one through a JsonGenerator as they are iterated, so with a lazy Iterable
+    // (e.g. MediaCatalog.findEach) the response never needs all of them in memory at once
+    public static void sendJsonArray(HttpExchange exchange, int statusCode, Iterable<?> elements) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+        JsonResponseStream body = new JsonResponseStream(exchange, statusCode, BUFFERED_RESPONSE_LIMIT);
+        try (JsonGenerator generator = jsonWriter.createGenerator(body)) {
+            generator.writeStartArray();
+            for (Object element : elements) {
+                jsonWriter.writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } catch (IOException | RuntimeException e) {
+            body.abort();
+            throw e;
+        }
+        body.close();
+    }
+
+    // binds the json body straight from the request stream, without going through a String or a Map first
+    public static <T> T readJsonBody(HttpExchange exchange, Class<T> type) throws IOException {
+        return readJsonBody(exchange, type, MAX_REQUEST_BODY_BYTES);
+    }
+
+    static <T> T readJsonBody(HttpExchange exchange, Class<T> type, int maxBytes) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > maxBytes) {
+                    throw bodyTooLarge(maxBytes);
+                }
+            } catch (NumberFormatException e) {
+                throw InvalidRequestException.badRequest("Invalid Content-Length");
+            }
+        }
+
+        BoundedInputStream body = new BoundedInputStream(exchange.getRequestBody(), maxBytes);
+        T value;
+        try {
+            value = JsonCodec.readerFor(type).readValue(body);
+        } catch (IOException e) {
+            // chunked bodies have no Content-Length, so the limit can also be hit while parsing
+            if (body.isExceeded()) {
+                throw bodyTooLarge(maxBytes);
+            }
+            if (e instanceof JsonProcessingException) {
+                throw InvalidRequestException.badRequest("Invalid request format");
+            }
+            throw e;
+        }
+        if (value == null) {
+            throw InvalidRequestException.badRequest("Request body is empty");
+        }
+        return value;
+    }
+
+    private static InvalidRequestException bodyTooLarge(int maxBytes) {
+        return new InvalidRequestException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Request body must not be larger than " + maxBytes + " bytes");
+    }
+
+    public static void sendErrorResponse(HttpExchange exchange, InvalidRequestException e) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", e.getStatus().getCode());
+        error.put("error", e.getStatus().getDescription());
+        error.put("message", e.getMessage());
+        if (!e.getFields().isEmpty()) {
+            error.put("fields", e.getFields());
+        }
+        sendJsonResponse(exchange, e.getStatus().getCode(), error);
+    }
+
+    // stops reading once more than maxBytes came in, so a huge body is never buffered completely
+    static class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+        private boolean exceeded;
+
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int n = super.read(bytes, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > maxBytes) {
+                exceeded = true;
+                throw new IOException("Request body exceeds " + maxBytes + " bytes");
+            }
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+    }
+
+    // buffers the start of the body; if everything fits the response gets a fixed length,
+    // otherwise the headers are sent as chunked and the rest is written straight to the client
+    static class JsonResponseStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final int statusCode;
+        private final int bufferLimit;
+        private byte[] buffer;
+        private int count;
+        private OutputStream streaming;
+        private boolean closed;
+
+        JsonResponseStream(HttpExchange exchange, int statusCode, int bufferLimit) {
+            this.exchange = exchange;
+            this.statusCode = statusCode;
+            this.bufferLimit = bufferLimit;
+            this.buffer = new byte[Math.min(bufferLimit, 8 * 1024)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (streaming != null) {
+                streaming.write(bytes, offset, length);
+                return;
+            }
+            if (count + length > bufferLimit) {
+                startStreaming();
+                streaming.write(bytes, offset, length);
+                return;
+            }
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(bufferLimit, Math.max(buffer.length * 2, count + length)));
+            }
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        private void startStreaming() throws IOException {
+            // length 0 makes HttpServer use chunked transfer encoding
+            exchange.sendResponseHeaders(statusCode, 0);
+            streaming = exchange.getResponseBody();
+            streaming.write(buffer, 0, count);
+            buffer = null;
+        }
+
+        // jackson flushes when it is done, that must not commit a response that could still get a length
+        @Override
+        public void flush() throws IOException {
+            if (streaming != null) {
+                streaming.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (streaming == null) {
+                // -1 tells HttpServer there is no body at all
+                exchange.sendResponseHeaders(statusCode, count == 0 ? -1 : count);
+                streaming = exchange.getResponseBody();
+                streaming.write(buffer, 0, count);
+            }
+            streaming.close();
+        }
+
+        // before anything was sent the caller can still answer with an error, afterwards only the connection can be dropped
+        void abort() {
+            closed = true;
+            if (streaming != null) {
+                exchange.close();
+            }
+            buffer = null;
         }
     }
-}
\ No newline at end of file
+}
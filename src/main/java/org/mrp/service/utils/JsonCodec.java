@@ -0,0 +1,64 @@
+package org.mrp.service.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.mrp.domain.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// the one configured ObjectMapper of the application, readers and writers are built once per type and reused
+public class JsonCodec {
+    private static final ObjectMapper mapper = createConfiguredObjectMapper();
+
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    // writes to a stream without closing it, used for http responses
+    private static final ObjectWriter streamWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    static {
+        // resolve serializers for the domain types up front instead of on the first request
+        for (Class<?> type : new Class<?>[]{MediaEntry.class, Rating.class, Favorite.class, UserProfile.class, Like.class}) {
+            writers.put(type, mapper.writerFor(type));
+            readers.put(type, mapper.readerFor(type));
+        }
+        readers.put(Map.class, mapper.readerFor(Map.class));
+    }
+
+    private static ObjectMapper createConfiguredObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        // register JavaTimeModule to handle Java 8 date/time types
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        // clients may send fields the request records do not know, e.g. the id of the entry they update
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return mapper;
+    }
+
+    public static ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+
+    public static ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    public static ObjectWriter streamWriter() {
+        return streamWriter;
+    }
+
+    public static String toJson(Object value) throws JsonProcessingException {
+        return writerFor(value.getClass()).writeValueAsString(value);
+    }
+
+    public static ObjectMapper getMapper() {
+        return mapper;
+    }
+}
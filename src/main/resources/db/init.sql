@@ -1,12 +1,16 @@
 DROP TABLE IF EXISTS UserProfiles;
 DROP TABLE IF EXISTS UserTokens;
+DROP TABLE IF EXISTS TokenRevocations;
 DROP TABLE IF EXISTS MediaGenres;
+DROP TABLE IF EXISTS Genres;
 DROP TABLE IF EXISTS FavoriteMedia;
 DROP TABLE IF EXISTS RatingLikes;
 DROP TABLE IF EXISTS MediaRatings;
 DROP TABLE IF EXISTS MediaEntries;
 DROP TABLE IF EXISTS Users;
 
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 CREATE TABLE IF NOT EXISTS Users (
     User_ID SERIAL PRIMARY KEY,
     Username VARCHAR(256) UNIQUE NOT NULL,
@@ -29,6 +33,12 @@ CREATE TABLE UserTokens (
     FOREIGN KEY (User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE
 );
 
+CREATE TABLE TokenRevocations (
+    User_ID INT PRIMARY KEY,
+    Revoked_At BIGINT NOT NULL,
+    FOREIGN KEY (User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE
+);
+
 CREATE TABLE MediaEntries (
     Entry_ID SERIAL PRIMARY KEY,
     Title VARCHAR(256) NOT NULL,
@@ -36,18 +46,29 @@ CREATE TABLE MediaEntries (
     MediaType VARCHAR(50) NOT NULL CHECK (MediaType IN ('MOVIE', 'SERIES', 'GAME')),
     ReleaseYear INTEGER,
     Age INT,
-    AverageRating DECIMAL(3,2) DEFAULT 0.00,
+    RatingSum BIGINT NOT NULL DEFAULT 0,
+    RatingCount INT NOT NULL DEFAULT 0,
+    AverageRating DECIMAL(3,2) GENERATED ALWAYS AS (
+        CASE WHEN RatingCount = 0 THEN 0 ELSE ROUND(RatingSum::numeric / RatingCount, 2) END
+    ) STORED,
     Created_By_User_ID INT NOT NULL,
     Created_At TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     Updated_At TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Search_Vector TSVECTOR NOT NULL DEFAULT '',
     FOREIGN KEY (Created_By_User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE
 );
 
+CREATE TABLE IF NOT EXISTS Genres (
+    Genre_ID SERIAL PRIMARY KEY,
+    Name VARCHAR(100) UNIQUE NOT NULL
+);
+
 CREATE TABLE IF NOT EXISTS MediaGenres (
     Entry_ID INT NOT NULL,
-    Genre VARCHAR(100) NOT NULL,
-    PRIMARY KEY (Entry_ID, Genre),
-    FOREIGN KEY (Entry_ID) REFERENCES MediaEntries(Entry_ID) ON DELETE CASCADE
+    Genre_ID INT NOT NULL,
+    PRIMARY KEY (Entry_ID, Genre_ID),
+    FOREIGN KEY (Entry_ID) REFERENCES MediaEntries(Entry_ID) ON DELETE CASCADE,
+    FOREIGN KEY (Genre_ID) REFERENCES Genres(Genre_ID)
 );
 
 CREATE TABLE MediaRatings (
@@ -58,17 +79,37 @@ CREATE TABLE MediaRatings (
     Comment VARCHAR(160),
     Updated_At TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     Is_Confirmed BOOLEAN DEFAULT FALSE,
+    LikeCount INT NOT NULL DEFAULT 0,
     FOREIGN KEY (Entry_ID) REFERENCES MediaEntries(Entry_ID) ON DELETE CASCADE,
     FOREIGN KEY (User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE,
     UNIQUE (Entry_ID, User_ID)
 );
 
+CREATE OR REPLACE FUNCTION update_rating_aggregates() RETURNS TRIGGER AS $$
+    BEGIN
+        IF TG_OP IN ('UPDATE', 'DELETE') THEN
+            UPDATE MediaEntries SET RatingSum = RatingSum - OLD.StarValue, RatingCount = RatingCount - 1
+            WHERE Entry_ID = OLD.Entry_ID;
+        END IF;
+        IF TG_OP IN ('INSERT', 'UPDATE') THEN
+            UPDATE MediaEntries SET RatingSum = RatingSum + NEW.StarValue, RatingCount = RatingCount + 1
+            WHERE Entry_ID = NEW.Entry_ID;
+        END IF;
+        RETURN NULL;
+    END;
+    $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_rating_aggregates
+    AFTER INSERT OR DELETE OR UPDATE OF StarValue, Entry_ID ON MediaRatings
+    FOR EACH ROW EXECUTE FUNCTION update_rating_aggregates();
+
 CREATE TABLE RatingLikes (
     Like_ID SERIAL PRIMARY KEY,
     Rating_ID INT NOT NULL,
     User_ID INT NOT NULL,
     FOREIGN KEY (Rating_ID) REFERENCES MediaRatings(Rating_ID) ON DELETE CASCADE,
-    FOREIGN KEY (User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE
+    FOREIGN KEY (User_ID) REFERENCES Users(User_ID) ON DELETE CASCADE,
+    UNIQUE (Rating_ID, User_ID)
 );
 
 CREATE TABLE FavoriteMedia (
@@ -87,3 +128,12 @@ CREATE INDEX idx_media_user ON MediaEntries(Created_By_User_ID);
 CREATE INDEX idx_ratings_entry ON MediaRatings(Entry_ID);
 CREATE INDEX idx_favorites_user ON FavoriteMedia(User_ID);
 CREATE INDEX idx_genres_entry ON MediaGenres(Entry_ID);
+CREATE INDEX idx_genres_genre ON MediaGenres(Genre_ID, Entry_ID);
+
+CREATE INDEX idx_media_created ON MediaEntries(Created_At DESC, Entry_ID DESC);
+CREATE INDEX idx_media_title_lower ON MediaEntries(LOWER(Title), Entry_ID);
+CREATE INDEX idx_media_rating ON MediaEntries(AverageRating DESC, Entry_ID DESC);
+CREATE INDEX idx_media_release_year ON MediaEntries(COALESCE(ReleaseYear, 0) DESC, Entry_ID DESC);
+CREATE INDEX idx_media_type_year ON MediaEntries(MediaType, ReleaseYear);
+CREATE INDEX idx_media_search ON MediaEntries USING GIN (Search_Vector);
+CREATE INDEX idx_media_title_trgm ON MediaEntries USING GIN (Title gin_trgm_ops);
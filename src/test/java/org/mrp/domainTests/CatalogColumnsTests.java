@@ -0,0 +1,92 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+import org.mrp.service.CatalogColumns;
+import org.mrp.service.utils.CompressedBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogColumnsTests {
+
+    @Test
+    void testVectorAndScalarScansMatchEveryEntryChecked() {
+        // surefire adds the vector module, see the pom
+        assertTrue(CatalogColumns.isVectorScanAvailable());
+
+        Random random = new Random(7);
+        // few genres fit into the per entry masks, many are checked through the dictionary ids
+        for (int genreCount : new int[]{6, 100}) {
+            List<MediaEntry> entries = randomEntries(random, 5_003, genreCount);
+            CatalogColumns columns = new CatalogColumns(entries);
+
+            for (int round = 0; round < 200; round++) {
+                CatalogColumns.Query query = new CatalogColumns.Query(
+                        random.nextInt(3) == 0 ? MediaType.values()[random.nextInt(3)] : null,
+                        random.nextInt(3) == 0 ? 2000 + random.nextInt(10) : null,
+                        random.nextInt(3) == 0 ? random.nextInt(19) : null,
+                        random.nextInt(3) == 0 ? random.nextInt(501) / 100.0 : null,
+                        random.nextInt(3) == 0 ? "genre" + random.nextInt(genreCount + 1) : null);
+
+                int[] expected = expected(entries, query);
+                assertArrayEquals(expected, CompressedBitmap.fromBits(columns.scan(query, false)).toArray(), query.toString());
+                assertArrayEquals(expected, CompressedBitmap.fromBits(columns.scan(query, true)).toArray(), query.toString());
+            }
+        }
+    }
+
+    @Test
+    void testEmptyCatalogAndUnknownGenre() {
+        CatalogColumns empty = new CatalogColumns(List.of());
+        assertEquals(0, empty.scan(new CatalogColumns.Query(null, null, null, null, null)).length);
+
+        CatalogColumns columns = new CatalogColumns(randomEntries(new Random(1), 70, 3));
+        CatalogColumns.Query all = new CatalogColumns.Query(null, null, null, null, null);
+        assertEquals(70, CompressedBitmap.fromBits(columns.scan(all)).cardinality());
+        assertTrue(CompressedBitmap.fromBits(columns.scan(new CatalogColumns.Query(null, null, null, null, "horror")))
+                .isEmpty());
+    }
+
+    private static int[] expected(List<MediaEntry> entries, CatalogColumns.Query query) {
+        List<Integer> positions = new ArrayList<>();
+        for (int p = 0; p < entries.size(); p++) {
+            MediaEntry entry = entries.get(p);
+            boolean matches = (query.mediaType() == null || entry.getMediaType() == query.mediaType())
+                    && (query.releaseYear() == null || query.releaseYear().equals(entry.getReleaseYear()))
+                    && (query.maxAge() == null || entry.getAge() <= query.maxAge())
+                    && (query.minRating() == null || entry.getAverageRating() >= query.minRating())
+                    && (query.genre() == null || entry.getGenres().stream()
+                            .anyMatch(genre -> genre.toLowerCase(Locale.ROOT).contains(query.genre())));
+            if (matches) {
+                positions.add(p);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<MediaEntry> randomEntries(Random random, int count, int genreCount) {
+        List<MediaEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> genres = new ArrayList<>();
+            for (int g = random.nextInt(3); g > 0; g--) {
+                genres.add("Genre" + random.nextInt(genreCount));
+            }
+            entries.add(MediaEntry.builder()
+                    .id(i + 1)
+                    .title("Title " + i)
+                    .mediaType(random.nextInt(10) == 0 ? null : MediaType.values()[random.nextInt(3)])
+                    .releaseYear(random.nextInt(10) == 0 ? null : 2000 + random.nextInt(10))
+                    .genres(genres)
+                    .age(random.nextInt(19))
+                    .averageRating(random.nextInt(501) / 100.0)
+                    .build());
+        }
+        return entries;
+    }
+}
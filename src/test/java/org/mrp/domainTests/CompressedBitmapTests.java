@@ -0,0 +1,92 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.service.utils.CompressedBitmap;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedBitmapTests {
+
+    @Test
+    void testAndOrMatchBitSetForSparseAndDenseChunks() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // the first chunk is dense (bitmap), the others sparse (array)
+            BitSet expectedA = randomBits(random, round % 2 == 0 ? 30_000 : 200);
+            BitSet expectedB = randomBits(random, 5_000);
+            CompressedBitmap a = CompressedBitmap.of(expectedA.stream().toArray());
+            CompressedBitmap b = CompressedBitmap.of(expectedB.stream().toArray());
+
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+
+            assertArrayEquals(and.stream().toArray(), a.and(b).toArray());
+            assertEquals(and.cardinality(), a.and(b).cardinality());
+            assertArrayEquals(or.stream().toArray(), a.or(b).toArray());
+            assertEquals(or.cardinality(), CompressedBitmap.orAll(List.of(a, b)).cardinality());
+        }
+    }
+
+    @Test
+    void testContainsAndRanges() {
+        CompressedBitmap bitmap = CompressedBitmap.ofRange(new int[]{900_000, 3, 70_000, 3, 5}, 1, 5);
+
+        assertArrayEquals(new int[]{3, 5, 70_000}, bitmap.toArray());
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(900_000));
+        assertFalse(bitmap.contains(4));
+        assertFalse(bitmap.contains(-1));
+        assertTrue(CompressedBitmap.EMPTY.and(bitmap).isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> CompressedBitmap.fromSorted(new int[]{5, 3}, 2));
+        assertThrows(IllegalArgumentException.class, () -> CompressedBitmap.of(-1));
+    }
+
+    @Test
+    void testSingleValuesAreAddedAndRemovedWithoutChangingTheOriginal() {
+        Random random = new Random(11);
+        BitSet expected = randomBits(random, 10_000);
+        CompressedBitmap original = CompressedBitmap.of(expected.stream().toArray());
+        CompressedBitmap bitmap = original;
+        for (int i = 0; i < 20_000; i++) {
+            // mostly the first chunk, so it turns from a bitmap into an array and back
+            int value = random.nextInt(4) == 0 ? random.nextInt(600_000) : random.nextInt(65_536);
+            if (random.nextBoolean()) {
+                expected.set(value);
+                bitmap = bitmap.with(value);
+            } else {
+                expected.clear(value);
+                bitmap = bitmap.without(value);
+            }
+        }
+
+        assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertArrayEquals(expected.stream().toArray(), bitmap.or(CompressedBitmap.EMPTY).toArray());
+        assertNotEquals(expected.cardinality(), original.cardinality());
+
+        CompressedBitmap single = CompressedBitmap.EMPTY.with(70_000);
+        assertArrayEquals(new int[]{70_000}, single.toArray());
+        assertTrue(single.without(70_000).isEmpty());
+        assertSame(single, single.with(70_000));
+        assertSame(single, single.without(3));
+        assertThrows(IllegalArgumentException.class, () -> single.with(-1));
+    }
+
+    private static BitSet randomBits(Random random, int dense) {
+        BitSet bits = new BitSet();
+        for (int i = 0; i < dense; i++) {
+            bits.set(random.nextInt(65_536));
+        }
+        for (int i = 0; i < 300; i++) {
+            bits.set(65_536 + random.nextInt(500_000));
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,145 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mrp.persistence.ConnectionPool;
+
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTests {
+    private static final String URL = "jdbc:mrp-test:pool";
+    private static final TestDriver driver = new TestDriver();
+
+    @BeforeAll
+    static void registerDriver() throws SQLException {
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterAll
+    static void deregisterDriver() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Test
+    void testReturnedConnectionIsReused() throws SQLException {
+        ConnectionPool pool = ConnectionPool.builder().url(URL).maxSize(2).build();
+        int openedBefore = driver.opened.get();
+
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        assertEquals(1, driver.opened.get() - openedBefore);
+        assertTrue(first.isClosed());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+        pool.close();
+    }
+
+    @Test
+    void testNestedBorrowOnSameThreadSharesConnection() throws SQLException {
+        ConnectionPool pool = ConnectionPool.builder().url(URL).maxSize(1).acquireTimeoutMillis(100).build();
+
+        try (Connection outer = pool.getConnection()) {
+            try (Connection inner = pool.getConnection()) {
+                assertSame(outer, inner);
+            }
+            // inner close must not hand the connection back while outer still uses it
+            assertFalse(outer.isClosed());
+            assertEquals(1, pool.getActiveCount());
+        }
+        assertEquals(0, pool.getActiveCount());
+        pool.close();
+    }
+
+    @Test
+    void testAcquireTimesOutWhenPoolIsExhausted() throws Exception {
+        ConnectionPool pool = ConnectionPool.builder().url(URL).maxSize(1).acquireTimeoutMillis(50).build();
+
+        try (Connection ignored = pool.getConnection()) {
+            CompletableFuture<Throwable> otherThread = CompletableFuture.supplyAsync(() -> {
+                try (Connection connection = pool.getConnection()) {
+                    return null;
+                } catch (SQLException e) {
+                    return e;
+                }
+            });
+            assertInstanceOf(SQLTimeoutException.class, otherThread.get());
+        }
+        pool.close();
+    }
+
+    @Test
+    void testExpiredConnectionIsReplaced() throws Exception {
+        ConnectionPool pool = ConnectionPool.builder().url(URL).maxSize(1).maxLifetimeMillis(1).build();
+        int openedBefore = driver.opened.get();
+
+        pool.getConnection().close();
+        Thread.sleep(5);
+        pool.getConnection().close();
+
+        assertEquals(2, driver.opened.get() - openedBefore);
+        pool.close();
+    }
+
+    @Test
+    void testBuilderRejectsMissingUrl() {
+        assertThrows(IllegalArgumentException.class, () -> ConnectionPool.builder().build());
+    }
+
+    public static class TestDriver implements Driver {
+        private final AtomicInteger opened = new AtomicInteger();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            opened.incrementAndGet();
+            Connection connection = mock(Connection.class);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            return connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:mrp-test:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
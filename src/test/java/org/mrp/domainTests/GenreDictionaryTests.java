@@ -0,0 +1,24 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.persistence.GenreDictionary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenreDictionaryTests {
+
+    @Test
+    void testNamesReadAgainResolveToTheSameInstance() {
+        GenreDictionary dictionary = new GenreDictionary();
+        String action = dictionary.put(1, "Action");
+        // a fresh String as it comes out of a ResultSet
+        String again = dictionary.put(1, new String("Action"));
+
+        assertSame(action, again);
+        assertSame(action, dictionary.nameOf(1));
+        assertEquals(1, dictionary.idOf("Action"));
+        assertNull(dictionary.idOf("action"));
+        assertNull(dictionary.nameOf(2));
+        assertEquals(1, dictionary.size());
+    }
+}
@@ -0,0 +1,72 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.persistence.GroupCommitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitterTests {
+
+    @Test
+    void testConcurrentSubmitsAreWrittenInBatches() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (GroupCommitter<Integer, String> committer = new GroupCommitter<>("test-commit", 50, 20, items -> {
+            batchSizes.add(items.size());
+            return items.stream().map(item -> "saved " + item).toList();
+        })) {
+            ExecutorService executor = Executors.newFixedThreadPool(20);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int item = i;
+                results.add(executor.submit(() -> committer.submit(item)));
+            }
+
+            // every caller gets the result for its own item
+            for (int i = 0; i < 100; i++) {
+                assertEquals("saved " + i, results.get(i).get(5, TimeUnit.SECONDS));
+            }
+            executor.shutdown();
+
+            assertEquals(100, committer.getItemCount());
+            assertEquals(100, batchSizes.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(committer.getBatchCount() < 100, "writes should have been batched");
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 50));
+        }
+    }
+
+    @Test
+    void testFailingItemDoesNotFailTheOthers() throws Exception {
+        try (GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test-commit", 10, 50, items -> {
+            if (items.contains(13)) {
+                throw new IllegalArgumentException("bad item");
+            }
+            return items;
+        })) {
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            Future<Integer> first = executor.submit(() -> committer.submit(1));
+            Future<Integer> bad = executor.submit(() -> committer.submit(13));
+            Future<Integer> last = executor.submit(() -> committer.submit(2));
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS));
+            assertEquals(2, last.get(5, TimeUnit.SECONDS));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testClosedCommitterRejectsSubmits() {
+        GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test-commit", 10, 0, items -> items);
+        assertEquals(7, committer.submit(7));
+
+        committer.close();
+
+        assertTrue(committer.isClosed());
+        assertThrows(IllegalStateException.class, () -> committer.submit(8));
+    }
+}
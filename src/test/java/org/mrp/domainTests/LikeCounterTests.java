@@ -0,0 +1,100 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.persistence.LikeCounter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeCounterTests {
+
+    @Test
+    void testConcurrentLikesAreCollectedIntoOneWritePerFlush() throws Exception {
+        List<Map<Integer, Long>> writes = new CopyOnWriteArrayList<>();
+        // long interval, the test flushes itself
+        try (LikeCounter counter = new LikeCounter(60_000, writes::add)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> results = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int ratingId = i % 2 == 0 ? 1 : 2;
+                long delta = i % 10 == 9 ? -1 : 1;
+                results.add(executor.submit(() -> counter.add(ratingId, delta)));
+            }
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertTrue(writes.isEmpty());
+            assertEquals(500, counter.getPending(1));
+            assertEquals(300, counter.getPending(2));
+
+            counter.flush();
+            assertEquals(List.of(Map.of(1, 500L, 2, 300L)), writes);
+            assertEquals(0, counter.getPending(1));
+
+            // nothing changed since, so nothing is written
+            counter.flush();
+            assertEquals(1, writes.size());
+            assertEquals(1, counter.getFlushCount());
+        }
+    }
+
+    @Test
+    void testOnlyRatingsWithUnwrittenChangesAreKept() {
+        List<Map<Integer, Long>> writes = new CopyOnWriteArrayList<>();
+        try (LikeCounter counter = new LikeCounter(60_000, writes::add)) {
+            for (int ratingId = 1; ratingId <= 100; ratingId++) {
+                counter.add(ratingId, 1);
+            }
+            // liked and unliked again, nothing to write
+            for (int ratingId = 1; ratingId <= 50; ratingId++) {
+                counter.add(ratingId, -1);
+            }
+            assertEquals(50, counter.getPendingRatingCount());
+            assertEquals(0, counter.getPending(1));
+
+            counter.flush();
+            assertEquals(1, writes.size());
+            assertEquals(50, writes.get(0).size());
+            assertEquals(0, counter.getPendingRatingCount());
+        }
+    }
+
+    @Test
+    void testFailedFlushKeepsTheChanges() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        List<Map<Integer, Long>> writes = new CopyOnWriteArrayList<>();
+        LikeCounter counter = new LikeCounter(60_000, deltas -> {
+            if (fail.get()) {
+                throw new RuntimeException("database down");
+            }
+            writes.add(deltas);
+        });
+
+        counter.add(7, 3);
+        counter.flush();
+        assertEquals(3, counter.getPending(7));
+
+        counter.add(7, 1);
+        fail.set(false);
+        counter.close();
+        assertEquals(List.of(Map.of(7, 4L)), writes);
+    }
+
+    @Test
+    void testWithoutIntervalChangesAreWrittenRightAway() {
+        List<Map<Integer, Long>> writes = new CopyOnWriteArrayList<>();
+        LikeCounter counter = new LikeCounter(0, writes::add);
+
+        counter.add(1, 1);
+        counter.addAll(Map.of(2, -1L, 3, 0L));
+
+        assertEquals(List.of(Map.of(1, 1L), Map.of(2, -1L)), writes);
+        assertEquals(0, counter.getPending(1));
+    }
+}
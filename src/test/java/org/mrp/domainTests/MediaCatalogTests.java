@@ -0,0 +1,515 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.mrp.domain.*;
+import org.mrp.persistence.implemenatations.MediaEntryRepository;
+import org.mrp.persistence.implemenatations.RatingRepository;
+import org.mrp.service.MediaCatalog;
+import org.mrp.service.MediaSegmentStore;
+import org.mrp.service.MediaService;
+import org.mrp.service.QueryExecutor;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MediaCatalogTests {
+
+    @Mock
+    private MediaEntryRepository mediaEntryRepository;
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    private MediaCatalog catalog;
+    private List<MediaEntry> entries;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 12, 0);
+        entries = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) {
+            entries.add(MediaEntry.builder()
+                    .id(i)
+                    .title((i % 3 == 0 ? "Star " : "Moon ") + (char) ('a' + i % 7))
+                    .mediaType(i % 2 == 0 ? MediaType.MOVIE : MediaType.SERIES)
+                    .releaseYear(2000 + i % 5)
+                    .genres(new ArrayList<>(i % 4 == 0 ? List.of("Drama", "Sci-Fi") : List.of("Comedy")))
+                    .age(i % 18)
+                    .averageRating((i % 5) + (i % 2) * 0.5)
+                    .createdByUserId(i % 2 + 1)
+                    // some entries share the timestamp so the id has to break the tie
+                    .createdAt(start.plusMinutes(i / 2))
+                    .build());
+        }
+        catalog = new MediaCatalog(mediaEntryRepository, 0);
+    }
+
+    @Test
+    void testPagesCoverEveryMatchingEntryOnceInOrder() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+
+        for (MediaSort sort : MediaSort.values()) {
+            List<Integer> ids = new ArrayList<>();
+            MediaCursor cursor = null;
+            do {
+                MediaPage page = catalog.find(new MediaQuery(null, null, null, null, null, 1.0, sort, 4, cursor));
+                page.entries().forEach(entry -> ids.add(entry.getId()));
+                cursor = page.next() == null ? null : MediaCursor.decode(page.next());
+            } while (cursor != null);
+
+            List<Integer> unpaged = catalog.find(new MediaQuery(null, null, null, null, null, 1.0, sort, null, null))
+                    .entries().stream().map(MediaEntry::getId).toList();
+            assertEquals(unpaged, ids, "paging by " + sort);
+            assertEquals(entries.stream().filter(entry -> entry.getAverageRating() >= 1.0).count(), ids.size());
+            // the view that builds each entry when it is read holds the same entries
+            assertEquals(unpaged,
+                    ids(catalog.findEach(new MediaQuery(null, null, null, null, null, 1.0, sort, null, null))));
+        }
+        assertEquals(ids(catalog.findAll()), ids(catalog.findEach(MediaQuery.all())));
+        assertThrows(IllegalArgumentException.class,
+                () -> catalog.findEach(new MediaQuery(null, null, null, null, null, null, MediaSort.TITLE, 4, null)));
+        verify(mediaEntryRepository, times(1)).streamAll(any());
+        verify(mediaEntryRepository, never()).findByQuery(any());
+    }
+
+    @Test
+    void testFiltersAndOrderMatchTheDatabaseQuery() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+
+        MediaPage page = catalog.find(new MediaQuery("STAR", "fi", MediaType.MOVIE, null, 17, null,
+                MediaSort.TITLE, null, null));
+        // title and genre are case-insensitive substring matches
+        assertFalse(page.entries().isEmpty());
+        for (MediaEntry entry : page.entries()) {
+            assertTrue(entry.getTitle().startsWith("Star"));
+            assertTrue(entry.getGenres().contains("Sci-Fi"));
+            assertEquals(MediaType.MOVIE, entry.getMediaType());
+            assertTrue(entry.getAge() <= 17);
+        }
+        List<String> titles = page.entries().stream().map(entry -> entry.getTitle().toLowerCase()).toList();
+        assertEquals(titles.stream().sorted().toList(), titles);
+
+        // newest first, ties by the higher id
+        List<MediaEntry> all = catalog.findAll();
+        assertEquals(30, all.get(0).getId());
+        assertEquals(List.of(29, 28), List.of(all.get(1).getId(), all.get(2).getId()));
+    }
+
+    @Test
+    void testIndexedFiltersReturnTheSameEntriesAsCheckingEveryEntry() {
+        Random random = new Random(7);
+        List<String> genres = List.of("Action", "Drama", "Sci-Fi", "Comedy", "Horror");
+        List<MediaEntry> many = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            many.add(MediaEntry.builder()
+                    .id(i)
+                    .title("Entry " + i)
+                    .mediaType(MediaType.values()[random.nextInt(MediaType.values().length)])
+                    .releaseYear(2015 + random.nextInt(10))
+                    .genres(new ArrayList<>(List.of(genres.get(random.nextInt(5)), genres.get(random.nextInt(5)))))
+                    .age(random.nextInt(19))
+                    .averageRating(random.nextInt(11) / 2.0)
+                    .createdAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(i))
+                    .build());
+        }
+        doAnswer(streaming(many)).when(mediaEntryRepository).streamAll(any());
+
+        for (int round = 0; round < 200; round++) {
+            MediaType mediaType = random.nextBoolean() ? MediaType.values()[random.nextInt(3)] : null;
+            String genre = random.nextBoolean() ? genres.get(random.nextInt(5)).substring(1, 4).toUpperCase() : null;
+            Integer releaseYear = random.nextInt(3) == 0 ? 2015 + random.nextInt(10) : null;
+            Integer age = random.nextBoolean() ? random.nextInt(19) : null;
+            Double minRating = random.nextBoolean() ? random.nextInt(11) / 2.0 : null;
+            String title = random.nextInt(4) == 0 ? "1" : null;
+            MediaQuery query = new MediaQuery(title, genre, mediaType, releaseYear, age, minRating, MediaSort.RATING, null, null);
+
+            List<Integer> expected = many.stream()
+                    .filter(entry -> title == null || entry.getTitle().contains(title))
+                    .filter(entry -> genre == null || entry.getGenres().stream().anyMatch(g -> g.toLowerCase().contains(genre.toLowerCase())))
+                    .filter(entry -> mediaType == null || entry.getMediaType() == mediaType)
+                    .filter(entry -> releaseYear == null || entry.getReleaseYear().equals(releaseYear))
+                    .filter(entry -> age == null || entry.getAge() <= age)
+                    .filter(entry -> minRating == null || entry.getAverageRating() >= minRating)
+                    .sorted(Comparator.comparingDouble(MediaEntry::getAverageRating).thenComparingInt(MediaEntry::getId).reversed())
+                    .map(MediaEntry::getId)
+                    .toList();
+            assertEquals(expected, catalog.find(query).entries().stream().map(MediaEntry::getId).toList(), query.toString());
+        }
+    }
+
+    @Test
+    void testTopPagesOfFilteredQueriesMatchTheFullOrder() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+
+        for (MediaSort sort : MediaSort.values()) {
+            // indexed filter with a limit, so the pages come from the bounded heap
+            List<Integer> paged = new ArrayList<>();
+            MediaCursor cursor = null;
+            do {
+                MediaPage page = catalog.find(new MediaQuery(null, null, MediaType.MOVIE, null, null, null, sort, 3, cursor));
+                assertTrue(page.entries().size() <= 3);
+                page.entries().forEach(entry -> paged.add(entry.getId()));
+                cursor = page.next() == null ? null : MediaCursor.decode(page.next());
+            } while (cursor != null);
+
+            List<Integer> all = catalog.find(new MediaQuery(null, null, MediaType.MOVIE, null, null, null, sort, null, null))
+                    .entries().stream().map(MediaEntry::getId).toList();
+            assertEquals(15, all.size());
+            assertEquals(all, paged, "top pages by " + sort);
+        }
+    }
+
+    @Test
+    void testTitlesAreOrderedByCollationWithIdsBreakingTies() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<MediaEntry> titled = new ArrayList<>();
+        String[] titles = {"Zebra", "éclair", "Apple", "banana", "apple"};
+        for (int i = 0; i < titles.length; i++) {
+            titled.add(MediaEntry.builder().id(i + 1).title(titles[i]).mediaType(MediaType.MOVIE)
+                    .genres(new ArrayList<>()).createdAt(createdAt).build());
+        }
+        doAnswer(streaming(titled)).when(mediaEntryRepository).streamAll(any());
+
+        for (Integer limit : Arrays.asList(null, 5)) {
+            MediaPage page = catalog.find(new MediaQuery(null, null, MediaType.MOVIE, null, null, null, MediaSort.TITLE, limit, null));
+            assertEquals(List.of(3, 5, 4, 2, 1), page.entries().stream().map(MediaEntry::getId).toList());
+        }
+    }
+
+    @Test
+    void testCursorPrintedByTheDatabaseIsAccepted() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+
+        // Created_At as Postgres prints it, entries 4 and 5 share it
+        MediaCursor cursor = new MediaCursor(MediaSort.CREATED, "2025-01-01 12:02:00", 5);
+        MediaPage page = catalog.find(new MediaQuery(null, null, null, null, null, null, MediaSort.CREATED, 2, cursor));
+
+        assertEquals(List.of(4, 3), page.entries().stream().map(MediaEntry::getId).toList());
+        assertEquals(new MediaCursor(MediaSort.CREATED, "2025-01-01 12:01:00.0", 3), MediaCursor.decode(page.next()));
+
+        MediaCursor rating = new MediaCursor(MediaSort.RATING, "not a number", 5);
+        assertThrows(IllegalArgumentException.class, () ->
+                catalog.find(new MediaQuery(null, null, null, null, null, null, MediaSort.RATING, 2, rating)));
+    }
+
+    @Test
+    void testWritesThroughMediaServicePatchTheSnapshot() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+        MediaService mediaService = new MediaService(mediaEntryRepository, ratingRepository, null, catalog);
+        User creator = User.builder().id(1).build();
+        assertEquals(30, catalog.size());
+
+        // create: the saved entry is read back once and added
+        doAnswer(invocation -> {
+            invocation.<MediaEntry>getArgument(0).setId(31);
+            return null;
+        }).when(mediaEntryRepository).save(any(MediaEntry.class));
+        MediaEntry created = MediaEntry.builder().id(31).title("New").mediaType(MediaType.GAME).releaseYear(2024)
+                .genres(List.of("Action")).createdByUserId(1).createdAt(LocalDateTime.of(2025, 2, 1, 0, 0)).build();
+        when(mediaEntryRepository.findByIds(List.of(31))).thenReturn(List.of(created));
+        mediaService.createMediaEntry("New", "", MediaType.GAME, 2024, List.of("Action"), 0, creator);
+        assertEquals(31, mediaService.getAllMediaEntries().get(0).getId());
+
+        // rate: the new average is read back
+        Rating rating = Rating.builder().id(7).mediaEntryId(31).userId(2).starValue(5).build();
+        when(ratingRepository.upsert(31, 2, 5, null)).thenReturn(Optional.of(rating));
+        MediaEntry rated = MediaEntry.builder().id(31).title("New").mediaType(MediaType.GAME).releaseYear(2024)
+                .genres(List.of("Action")).averageRating(5.0).ratingCount(1).createdByUserId(1)
+                .createdAt(created.getCreatedAt()).build();
+        when(mediaEntryRepository.findByIds(List.of(31))).thenReturn(List.of(rated));
+        mediaService.rateMediaEntry(31, 2, 5, null);
+        assertEquals(5.0, mediaService.getMediaEntryById(31).orElseThrow().getAverageRating());
+
+        // delete: removed without reading it again
+        when(mediaEntryRepository.findById(31)).thenReturn(Optional.of(rated));
+        mediaService.deleteMediaEntry(31, creator);
+        assertTrue(mediaService.getMediaEntryById(31).isEmpty());
+        assertEquals(30, catalog.size());
+        assertEquals(3, catalog.getPatchCount());
+
+        // what callers get is a copy
+        mediaService.getMediaEntryById(1).orElseThrow().setTitle("changed");
+        assertNotEquals("changed", mediaService.getMediaEntryById(1).orElseThrow().getTitle());
+        verify(mediaEntryRepository, times(1)).streamAll(any());
+    }
+
+    @Test
+    void testPatchedSnapshotAnswersLikeAFreshlyLoadedOne() {
+        Random random = new Random(5);
+        Map<Integer, MediaEntry> database = new TreeMap<>();
+        for (int i = 1; i <= 400; i++) {
+            database.put(i * 2, randomEntry(random, i * 2));
+        }
+        doAnswer(invocation -> streaming(new ArrayList<>(database.values())).answer(invocation))
+                .when(mediaEntryRepository).streamAll(any());
+        when(mediaEntryRepository.findByIds(anyList())).thenAnswer(invocation -> invocation.<List<Integer>>getArgument(0)
+                .stream().filter(database::containsKey).map(database::get).toList());
+
+        List<MediaQuery> queries = new ArrayList<>();
+        for (MediaSort sort : MediaSort.values()) {
+            queries.add(new MediaQuery(null, null, null, null, null, null, sort, null, null));
+            queries.add(new MediaQuery(null, null, null, null, null, null, sort, 7, null));
+            queries.add(new MediaQuery(null, "dra", MediaType.MOVIE, null, null, null, sort, null, null));
+            queries.add(new MediaQuery(null, null, null, 2021, 12, null, sort, 5, null));
+            // only ranges, answered by the column scan
+            queries.add(new MediaQuery(null, null, null, null, 9, 2.5, sort, null, null));
+            queries.add(new MediaQuery("1", null, null, null, null, 1.0, sort, 6, null));
+        }
+        // everything is built once, from then on every write patches it
+        queries.forEach(catalog::find);
+
+        for (int round = 0; round < 300; round++) {
+            int id;
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    // a new entry, mostly after the last one, sometimes in a gap between existing ones
+                    id = random.nextInt(5) == 0 ? random.nextInt(800) * 2 + 1 : 1_000 + round;
+                    database.put(id, randomEntry(random, id));
+                    catalog.refresh(id);
+                }
+                case 1 -> {
+                    id = new ArrayList<>(database.keySet()).get(random.nextInt(database.size()));
+                    database.remove(id);
+                    catalog.remove(id);
+                }
+                default -> {
+                    id = new ArrayList<>(database.keySet()).get(random.nextInt(database.size()));
+                    database.put(id, randomEntry(random, id));
+                    catalog.refresh(id);
+                }
+            }
+
+            if (round % 25 == 0) {
+                MediaCatalog fresh = catalogOf(new ArrayList<>(database.values()));
+                assertEquals(database.size(), catalog.size());
+                for (MediaQuery query : queries) {
+                    MediaPage expected = fresh.find(query);
+                    MediaPage actual = catalog.find(query);
+                    assertEquals(ids(expected.entries()), ids(actual.entries()), "round " + round + " " + query);
+                    assertEquals(expected.next(), actual.next(), "round " + round + " " + query);
+                }
+            }
+        }
+        verify(mediaEntryRepository, times(1)).streamAll(any());
+    }
+
+    @Test
+    void testWritesDuringAReloadAreNeitherBlockedNorLost() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MediaEntry renamed = MediaEntry.builder().id(3).title("Renamed").mediaType(MediaType.GAME).releaseYear(2001)
+                .genres(new ArrayList<>()).createdAt(LocalDateTime.of(2025, 1, 1, 0, 0)).build();
+        doAnswer(streaming(entries)).doAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            // read before the write below, so it still has the old title
+            return streaming(entries).answer(invocation);
+        }).when(mediaEntryRepository).streamAll(any());
+        when(mediaEntryRepository.findByIds(List.of(3))).thenReturn(List.of(renamed));
+        assertEquals(30, catalog.size());
+
+        Thread reload = Thread.ofPlatform().start(catalog::reload);
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        catalog.refresh(3);
+        catalog.remove(4);
+        // visible right away, the reload is still reading
+        assertEquals("Renamed", catalog.findById(3).orElseThrow().getTitle());
+        assertTrue(catalog.findById(4).isEmpty());
+
+        release.countDown();
+        reload.join(5_000);
+        assertEquals(2, catalog.getReloadCount());
+        assertEquals("Renamed", catalog.findById(3).orElseThrow().getTitle());
+        assertTrue(catalog.findById(4).isEmpty());
+        assertEquals(29, catalog.size());
+    }
+
+    @Test
+    void testReloadReplacesTheSnapshot() {
+        doAnswer(streaming(entries)).doAnswer(streaming(entries.subList(0, 10))).when(mediaEntryRepository).streamAll(any());
+
+        assertEquals(30, catalog.size());
+        catalog.reload();
+        assertEquals(10, catalog.size());
+        assertTrue(catalog.findById(11).isEmpty());
+        assertEquals(2, catalog.getReloadCount());
+    }
+
+    @Test
+    void testOffHeapCatalogStartsFromItsStoreFile(@TempDir Path directory) throws Exception {
+        doAnswer(streaming(entries)).doAnswer(streaming(entries.subList(0, 10))).when(mediaEntryRepository).streamAll(any());
+        Path file = directory.resolve("catalog.bin");
+        MediaQuery query = new MediaQuery("moon", null, MediaType.SERIES, null, null, 1.0, MediaSort.TITLE, 5, null);
+
+        // written by the first load
+        MediaCatalog written = new MediaCatalog(mediaEntryRepository, 0, true, file);
+        assertEquals(30, written.size());
+        assertEquals(ids(catalogOf(entries).find(query).entries()), ids(written.find(query).entries()));
+        assertEquals(entries.get(4).getTitle(), written.findById(5).orElseThrow().getTitle());
+
+        // a restart maps the file first and then reloads from the database in the background
+        when(mediaEntryRepository.findEntryIds()).thenReturn(new MediaEntryRepository.EntryIds(30, 30));
+        try (MediaCatalog restarted = new MediaCatalog(mediaEntryRepository, 60_000, true, file)) {
+            assertEquals(30, restarted.size());
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (restarted.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, restarted.size());
+            assertEquals(1, restarted.getStoreWriteCount());
+
+            // nothing changed, the file is not written again
+            restarted.reload();
+            assertEquals(1, restarted.getStoreWriteCount());
+        }
+        assertEquals(10, MediaSegmentStore.open(file).size());
+    }
+
+    @Test
+    void testStoreFileIsNotMappedWhenTheDatabaseHoldsOtherEntries(@TempDir Path directory) {
+        doAnswer(streaming(entries)).doAnswer(streaming(List.of())).when(mediaEntryRepository).streamAll(any());
+        Path file = directory.resolve("catalog.bin");
+        assertEquals(30, new MediaCatalog(mediaEntryRepository, 0, true, file).size());
+
+        // the schema was created again at startup, the entries of the file are gone
+        when(mediaEntryRepository.findEntryIds()).thenReturn(new MediaEntryRepository.EntryIds(0, 0));
+        try (MediaCatalog restarted = new MediaCatalog(mediaEntryRepository, 60_000, true, file)) {
+            assertEquals(0, restarted.size());
+            assertTrue(restarted.findById(5).isEmpty());
+            assertEquals(1, restarted.getReloadCount());
+        }
+        assertEquals(0, MediaSegmentStore.open(file).size());
+    }
+
+    @Test
+    void testOffHeapCatalogAnswersLikeTheHeapOne() {
+        Random random = new Random(11);
+        Map<Integer, MediaEntry> database = new TreeMap<>();
+        for (int i = 1; i <= 300; i++) {
+            database.put(i, randomEntry(random, i));
+        }
+        // titles that only collation orders right, and entries without a creation time or release year
+        database.put(301, MediaEntry.builder().id(301).title("Éclair").mediaType(MediaType.MOVIE)
+                .genres(new ArrayList<>(List.of("Drama"))).build());
+        database.put(302, MediaEntry.builder().id(302).title("eclair").mediaType(MediaType.GAME)
+                .genres(new ArrayList<>()).releaseYear(2020).build());
+        doAnswer(invocation -> streaming(new ArrayList<>(database.values())).answer(invocation))
+                .when(mediaEntryRepository).streamAll(any());
+        when(mediaEntryRepository.findByIds(anyList())).thenAnswer(invocation -> invocation.<List<Integer>>getArgument(0)
+                .stream().filter(database::containsKey).map(database::get).toList());
+        MediaCatalog offHeap = new MediaCatalog(mediaEntryRepository, 0, true, null);
+
+        List<MediaQuery> queries = new ArrayList<>();
+        for (MediaSort sort : MediaSort.values()) {
+            queries.add(new MediaQuery(null, null, null, null, null, null, sort, 9, null));
+            queries.add(new MediaQuery("clair", null, null, null, null, null, sort, null, null));
+            queries.add(new MediaQuery("1", "DRA", MediaType.MOVIE, null, null, null, sort, 5, null));
+            queries.add(new MediaQuery(null, null, null, 2020, 12, 1.5, sort, null, null));
+            queries.add(new MediaQuery(null, null, null, null, 9, 2.5, sort, 4, null));
+        }
+        for (int round = 0; round < 3; round++) {
+            MediaCatalog heap = catalogOf(new ArrayList<>(database.values()));
+            assertEquals(heap.size(), offHeap.size());
+            for (MediaQuery query : queries) {
+                // every page, so the cursors of one catalog are read by the other's order
+                MediaCursor cursor = null;
+                do {
+                    MediaQuery page = new MediaQuery(query.title(), query.genre(), query.mediaType(), query.releaseYear(),
+                            query.ageRestriction(), query.minRating(), query.sort(), query.limit(), cursor);
+                    MediaPage expected = heap.find(page);
+                    MediaPage actual = offHeap.find(page);
+                    assertEquals(ids(expected.entries()), ids(actual.entries()), "round " + round + " " + page);
+                    assertEquals(expected.next(), actual.next(), "round " + round + " " + page);
+                    cursor = expected.next() == null ? null : MediaCursor.decode(expected.next());
+                } while (cursor != null);
+            }
+            assertEquals(database.get(301).getTitle(), offHeap.findById(301).orElseThrow().getTitle());
+
+            // patched entries live on the heap next to the stored ones
+            for (int i = 0; i < 20; i++) {
+                int id = 1 + random.nextInt(302);
+                if (random.nextBoolean()) {
+                    database.put(id, randomEntry(random, id));
+                    offHeap.refresh(id);
+                } else {
+                    database.remove(id);
+                    offHeap.remove(id);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testParallelQueriesReturnTheSamePages() {
+        doAnswer(streaming(entries)).when(mediaEntryRepository).streamAll(any());
+        MediaCatalog sequential = catalogOf(entries);
+
+        try (QueryExecutor executor = new QueryExecutor(1, 2, 2)) {
+            MediaCatalog parallel = new MediaCatalog(mediaEntryRepository, 0, false, null, executor);
+            for (MediaSort sort : MediaSort.values()) {
+                for (Integer limit : Arrays.asList(null, 4)) {
+                    for (MediaQuery query : List.of(
+                            new MediaQuery(null, null, null, null, null, null, sort, limit, null),
+                            new MediaQuery("moon", null, null, null, null, null, sort, limit, null),
+                            new MediaQuery("a", null, null, null, 12, 1.5, sort, limit, null),
+                            new MediaQuery(null, "co", MediaType.SERIES, null, null, null, sort, limit, null))) {
+                        MediaPage expected = sequential.find(query);
+                        MediaPage actual = parallel.find(query);
+                        assertEquals(ids(expected.entries()), ids(actual.entries()), query.toString());
+                        assertEquals(expected.next(), actual.next(), query.toString());
+                    }
+                }
+            }
+            assertTrue(executor.getCount(QueryExecutor.Strategy.PARALLEL) > 0);
+            assertEquals(0, executor.getCount(QueryExecutor.Strategy.SEQUENTIAL_BUSY));
+        }
+    }
+
+    private static MediaEntry randomEntry(Random random, int id) {
+        List<String> genres = List.of("Action", "Drama", "Sci-Fi", "Comedy");
+        return MediaEntry.builder()
+                .id(id)
+                .title("Entry " + random.nextInt(1_000))
+                .mediaType(MediaType.values()[random.nextInt(MediaType.values().length)])
+                .releaseYear(2018 + random.nextInt(6))
+                .genres(new ArrayList<>(List.of(genres.get(random.nextInt(4)), genres.get(random.nextInt(4)))))
+                .age(random.nextInt(19))
+                .averageRating(random.nextInt(11) / 2.0)
+                .createdAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(random.nextInt(500)))
+                .build();
+    }
+
+    private MediaCatalog catalogOf(List<MediaEntry> entries) {
+        MediaEntryRepository repository = mock(MediaEntryRepository.class);
+        doAnswer(streaming(entries)).when(repository).streamAll(any());
+        return new MediaCatalog(repository, 0);
+    }
+
+    // the entries handed to the consumer one by one, like the repository streams the rows
+    private static Answer<Void> streaming(List<MediaEntry> entries) {
+        return invocation -> {
+            entries.forEach(invocation.<Consumer<MediaEntry>>getArgument(0));
+            return null;
+        };
+    }
+
+    private static List<Integer> ids(List<MediaEntry> entries) {
+        return entries.stream().map(MediaEntry::getId).toList();
+    }
+}
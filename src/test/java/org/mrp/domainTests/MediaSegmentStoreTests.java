@@ -0,0 +1,122 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+import org.mrp.service.MediaSegmentStore;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaSegmentStoreTests {
+
+    private final List<MediaEntry> entries = List.of(
+            MediaEntry.builder()
+                    .id(9)
+                    .title("Amélie")
+                    .description("Eine Geschichte über Paris ✓")
+                    .mediaType(MediaType.MOVIE)
+                    .releaseYear(2001)
+                    .genres(new ArrayList<>(List.of("Comedy", "Romance")))
+                    .age(12)
+                    .averageRating(4.25)
+                    .ratingCount(3)
+                    .createdByUserId(2)
+                    .createdAt(LocalDateTime.of(2025, 3, 1, 10, 15, 30, 123_456_000))
+                    .build(),
+            // everything that may be missing is
+            MediaEntry.builder()
+                    .id(2)
+                    .title("")
+                    .genres(new ArrayList<>())
+                    .build());
+
+    @Test
+    void testEntriesComeBackUnchangedOrderedById() {
+        MediaSegmentStore store = MediaSegmentStore.build(entries);
+
+        assertEquals(2, store.size());
+        assertEquals(2, store.id(0));
+        assertEquals(1, store.indexOf(9));
+        assertEquals(-1, store.indexOf(5));
+        assertSameEntry(entries.get(0), store.get(1));
+        assertSameEntry(entries.get(1), store.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(2));
+        assertThrows(IllegalArgumentException.class, () -> MediaSegmentStore.build(List.of(entries.get(0), entries.get(0))));
+    }
+
+    @Test
+    void testRecordsAnswerWhatTheCatalogFiltersAndSortsBy() {
+        MediaSegmentStore store = MediaSegmentStore.build(entries);
+        Collator collator = Collator.getInstance(Locale.US);
+
+        assertTrue(store.titleContains(1, "mél".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(store.titleContains(1, "paris".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(store.titleContains(0, new byte[0]));
+        assertTrue(store.genreContains(1, "roman".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(store.genreContains(0, "roman".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new String[]{"comedy", "romance"}, store.lowerGenres(1));
+        assertArrayEquals(collator.getCollationKey("amélie").toByteArray(), store.titleKey(1));
+        assertTrue(store.compareTitles(0, 1) < 0);
+        assertTrue(store.compareTitle(1, collator.getCollationKey("amelie").toByteArray()) > 0);
+        assertEquals(0, store.compareTitle(1, store.titleKey(1)));
+
+        assertEquals(MediaType.MOVIE, store.mediaType(1));
+        assertNull(store.mediaType(0));
+        assertFalse(store.hasReleaseYear(0));
+        assertEquals(0, store.releaseYear(0));
+        assertEquals(2001, store.releaseYear(1));
+        assertEquals(entries.get(0).getCreatedAt().toEpochSecond(ZoneOffset.UTC), store.createdSeconds(1));
+        assertEquals(123_456_000, store.createdNanos(1));
+        // a missing creation time is the oldest one
+        assertEquals(LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC), store.createdSeconds(0));
+
+        try (MediaSegmentStore.Builder builder = MediaSegmentStore.builder()) {
+            builder.add(entries.get(0));
+            assertThrows(IllegalArgumentException.class, () -> builder.add(entries.get(1)));
+        }
+    }
+
+    @Test
+    void testStoreFileIsMappedAgain(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("catalog.bin");
+        MediaSegmentStore.build(entries).writeTo(file);
+        MediaSegmentStore written = MediaSegmentStore.open(file);
+        // replacing the file keeps the old mapping readable
+        MediaSegmentStore replaced = MediaSegmentStore.build(entries.subList(0, 1));
+        replaced.writeTo(file);
+
+        assertSameEntry(entries.get(0), written.get(1));
+        assertTrue(written.contentEquals(MediaSegmentStore.build(entries)));
+        assertFalse(written.contentEquals(replaced));
+        assertSameEntry(entries.get(0), MediaSegmentStore.open(file).get(0));
+        assertEquals(Files.size(file), replaced.byteSize());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IllegalArgumentException.class, () -> MediaSegmentStore.open(file));
+    }
+
+    private static void assertSameEntry(MediaEntry expected, MediaEntry actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getMediaType(), actual.getMediaType());
+        assertEquals(expected.getReleaseYear(), actual.getReleaseYear());
+        assertEquals(expected.getGenres(), actual.getGenres());
+        assertEquals(expected.getAge(), actual.getAge());
+        assertEquals(expected.getAverageRating(), actual.getAverageRating());
+        assertEquals(expected.getRatingCount(), actual.getRatingCount());
+        assertEquals(expected.getCreatedByUserId(), actual.getCreatedByUserId());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+    }
+}
@@ -7,7 +7,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mrp.domain.Favorite;
+import org.mrp.domain.MediaCursor;
 import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaPage;
+import org.mrp.domain.MediaQuery;
+import org.mrp.domain.MediaSearch;
+import org.mrp.domain.MediaSort;
 import org.mrp.domain.MediaType;
 import org.mrp.domain.Rating;
 import org.mrp.domain.User;
@@ -17,11 +22,14 @@ import org.mrp.persistence.implemenatations.RatingRepository;
 import org.mrp.service.FavoriteService;
 import org.mrp.service.MediaService;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -110,6 +118,22 @@ class MediaTests {
         assertTrue(entry.getGenres().contains("Action"));
     }
 
+    @Test
+    void testMediaEntryJsonContainsRatingCount() throws Exception {
+        MediaEntry entry = MediaEntry.builder()
+                .id(1)
+                .title("The Matrix")
+                .mediaType(MediaType.MOVIE)
+                .averageRating(4.5)
+                .ratingCount(12)
+                .build();
+
+        String json = entry.toJson();
+
+        assertTrue(json.contains("\"averageRating\":4.5"));
+        assertTrue(json.contains("\"ratingCount\":12"));
+    }
+
     // MediaService Tests
 
     @Test
@@ -243,23 +267,166 @@ class MediaTests {
     }
 
     @Test
-    void testRateMediaEntrySuccessNewRating() {
-        when(mediaEntryRepository.findById(100)).thenReturn(Optional.of(testMediaEntry));
-        when(ratingRepository.findByEntryAndUser(100, 2)).thenReturn(Optional.empty());
-        when(ratingRepository.calculateAverageRating(100)).thenReturn(4.5);
+    void testFindMediaEntriesPassesQueryToRepository() {
+        MediaQuery query = MediaQuery.fromParams(Map.of("genre", "sci", "sortBy", "title", "limit", "10"));
+        MediaPage page = new MediaPage(List.of(testMediaEntry), null);
+        when(mediaEntryRepository.findByQuery(query)).thenReturn(page);
 
-        doAnswer(invocation -> {
-            Rating rating = invocation.getArgument(0);
-            rating.setId(50);
-            return null;
-        }).when(ratingRepository).save(any(Rating.class));
+        MediaPage result = mediaService.findMediaEntries(query);
+
+        assertEquals(List.of(testMediaEntry), result.entries());
+        assertNull(result.next());
+        verify(mediaEntryRepository, never()).findAll();
+    }
+
+    @Test
+    void testMediaQueryFromParams() {
+        MediaQuery query = MediaQuery.fromParams(Map.of(
+                "title", "incep",
+                "mediaType", "movie",
+                "releaseYear", "2010",
+                "ageRestriction", "16",
+                "rating", "4.0",
+                "sortBy", "releaseYear",
+                "limit", "20"));
+
+        assertEquals("incep", query.title());
+        assertEquals(MediaType.MOVIE, query.mediaType());
+        assertEquals(2010, query.releaseYear());
+        assertEquals(16, query.ageRestriction());
+        assertEquals(4.0, query.minRating());
+        assertEquals(MediaSort.RELEASE_YEAR, query.sort());
+        assertEquals(20, query.limit());
+        assertNull(query.genre());
+    }
+
+    @Test
+    void testMediaQueryRejectsInvalidParams() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> MediaQuery.fromParams(Map.of("rating", "7")));
+        assertEquals("rating must be between 0.0 and 5.0.", exception.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> MediaQuery.fromParams(Map.of("mediaType", "BOOK")));
+        assertThrows(IllegalArgumentException.class, () -> MediaQuery.fromParams(Map.of("limit", "0")));
+        assertEquals(MediaSort.CREATED, MediaQuery.fromParams(Map.of("sortBy", "unknown")).sort());
+    }
+
+    @Test
+    void testMediaQueryKeepsTheOldValidationMessages() {
+        Map<Map<String, String>, String> messages = Map.of(
+                Map.of("releaseYear", "new"), "releaseYear not Integer",
+                Map.of("ageRestriction", "x"), "ageRestriction must be an integer.",
+                Map.of("rating", "good"), "rating must be a number",
+                Map.of("mediaType", "BOOK"), "mediaType must be one of: MOVIE, SERIES, GAME",
+                Map.of("limit", "500"), "limit must be between 1 and " + MediaQuery.MAX_LIMIT + ".");
+
+        messages.forEach((params, message) -> assertEquals(message,
+                assertThrows(IllegalArgumentException.class, () -> MediaQuery.fromParams(params)).getMessage()));
+    }
+
+    @Test
+    void testMediaSearchFromParamsAndCursor() {
+        MediaSearch first = MediaSearch.fromParams(Map.of("q", "  star wars ", "limit", "5"));
+        assertEquals("star wars", first.text());
+        assertEquals(5, first.limit());
+        assertNull(first.afterId());
+        assertEquals(MediaSearch.DEFAULT_LIMIT, MediaSearch.fromParams(Map.of("q", "x")).limit());
+
+        MediaSearch second = MediaSearch.fromParams(Map.of("q", "star wars",
+                "cursor", MediaSearch.encodeCursor("0.712345", 42)));
+        assertEquals("0.712345", second.afterScore());
+        assertEquals(42, second.afterId());
+
+        assertEquals("q is required.", assertThrows(IllegalArgumentException.class,
+                () -> MediaSearch.fromParams(Map.of("q", " "))).getMessage());
+        // a cursor of the list endpoint is not a search cursor
+        String listCursor = new MediaCursor(MediaSort.RATING, "4.50", 1).encode();
+        assertEquals("cursor is invalid.", assertThrows(IllegalArgumentException.class,
+                () -> MediaSearch.fromParams(Map.of("q", "x", "cursor", listCursor))).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> MediaSearch.fromParams(Map.of("q", "x", "limit", "0")));
+        // scores the NUMERIC cast in the query would fail on
+        for (String score : List.of("NaN", "1.5d", "0.5\0")) {
+            String cursor = MediaSearch.encodeCursor(score, 42);
+            assertThrows(IllegalArgumentException.class,
+                    () -> MediaSearch.fromParams(Map.of("q", "x", "cursor", cursor)), score);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MediaSearch.fromParams(Map.of("q", "star\0wars")));
+    }
+
+    @Test
+    void testSearchGoesToTheRepository() {
+        MediaSearch search = MediaSearch.fromParams(Map.of("q", "incep"));
+        when(mediaEntryRepository.search(search)).thenReturn(new MediaPage(List.of(testMediaEntry), "next"));
+
+        MediaPage page = mediaService.searchMediaEntries(search);
+
+        assertEquals(List.of(testMediaEntry), page.entries());
+        assertEquals("next", page.next());
+    }
+
+    @Test
+    void testMediaCursorRoundTrip() {
+        MediaCursor cursor = new MediaCursor(MediaSort.TITLE, "a|b title", 42);
 
+        MediaQuery query = MediaQuery.fromParams(Map.of("sortBy", "title", "cursor", cursor.encode()));
+
+        assertEquals(cursor, query.cursor());
+        assertTrue(query.isPaged());
+    }
+
+    @Test
+    void testMediaCursorRejectsTamperedOrMismatchedCursor() {
+        String ratingCursor = new MediaCursor(MediaSort.RATING, "4.50", 7).encode();
+
+        IllegalArgumentException mismatch = assertThrows(IllegalArgumentException.class,
+                () -> MediaQuery.fromParams(Map.of("sortBy", "title", "cursor", ratingCursor)));
+        assertEquals("cursor does not match sortBy.", mismatch.getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> MediaQuery.fromParams(Map.of("cursor", "not-a-cursor!")));
+    }
+
+    @Test
+    void testMediaCursorRejectsKeyOfTheWrongType() {
+        // sortBy -> raw cursor with a key of the wrong type
+        Map<String, String> badCursors = Map.of(
+                "rating", "RATING|1|abc",
+                "releaseYear", "RELEASE_YEAR|1|2020.5",
+                "created", "CREATED|1|yesterday");
+        badCursors.forEach((sortBy, raw) -> {
+            String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+            IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class,
+                    () -> MediaQuery.fromParams(Map.of("sortBy", sortBy, "cursor", cursor)));
+            assertEquals("cursor is invalid.", invalid.getMessage());
+        });
+        assertThrows(IllegalArgumentException.class,
+                () -> MediaCursor.decode(new MediaCursor(MediaSort.RATING, "NaN", 1).encode()));
+
+        // keys as the pages print them are still accepted
+        assertEquals("2024-01-02 03:04:05.123456",
+                MediaCursor.decode(new MediaCursor(MediaSort.CREATED, "2024-01-02 03:04:05.123456", 1).encode()).key());
+        assertEquals("4.50", MediaCursor.decode(new MediaCursor(MediaSort.RATING, "4.50", 1).encode()).key());
+    }
+
+    @Test
+    void testRateMediaEntrySuccessNewRating() {
+        Rating saved = Rating.builder()
+                .id(50)
+                .mediaEntryId(100)
+                .userId(2)
+                .starValue(5)
+                .comment("Amazing!")
+                .build();
+        when(ratingRepository.upsert(100, 2, 5, "Amazing!")).thenReturn(Optional.of(saved));
 
         Optional<Rating> result = mediaService.rateMediaEntry(100, 2, 5, "Amazing!");
 
         assertTrue(result.isPresent());
-        verify(ratingRepository, times(1)).save(any(Rating.class));
-        verify(mediaEntryRepository, times(1)).updateAverageRating(100, 4.5);
+        verify(ratingRepository, times(1)).upsert(100, 2, 5, "Amazing!");
+        // a single statement, no lookups before and no re-read after
+        verify(mediaEntryRepository, never()).findById(anyInt());
+        verify(ratingRepository, never()).findByEntryAndUser(anyInt(), anyInt());
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
         assertEquals(100, result.get().getMediaEntryId());
         assertEquals(2, result.get().getUserId());
         assertEquals(5, result.get().getStarValue());
@@ -269,17 +436,18 @@ class MediaTests {
 
     @Test
     void testRateMediaEntryUpdatesExistingRating() {
-        when(mediaEntryRepository.findById(100)).thenReturn(Optional.of(testMediaEntry));
-        when(ratingRepository.findByEntryAndUser(100, 2)).thenReturn(Optional.of(testRating));
-        when(ratingRepository.calculateAverageRating(100)).thenReturn(4.7);
+        testRating.setStarValue(4);
+        testRating.setComment("Updated review");
+        when(ratingRepository.upsert(100, 2, 4, "Updated review")).thenReturn(Optional.of(testRating));
 
         Optional<Rating> result = mediaService.rateMediaEntry(100, 2, 4, "Updated review");
 
         assertTrue(result.isPresent());
-        verify(ratingRepository, times(1)).update(testRating);
-        verify(mediaEntryRepository, times(1)).updateAverageRating(100, 4.7);
-        assertEquals(4, testRating.getStarValue());
-        assertEquals("Updated review", testRating.getComment());
+        verify(ratingRepository, never()).save(any());
+        verify(ratingRepository, never()).update(any());
+        assertEquals(testRating.getId(), result.get().getId());
+        assertEquals(4, result.get().getStarValue());
+        assertEquals("Updated review", result.get().getComment());
     }
 
     @Test
@@ -287,8 +455,7 @@ class MediaTests {
         Optional<Rating> result = mediaService.rateMediaEntry(100, 2, 6, "Too high"); // Invalid: 6
 
         assertFalse(result.isPresent());
-        verify(ratingRepository, never()).save(any());
-        verify(ratingRepository, never()).update(any());
+        verify(ratingRepository, never()).upsert(anyInt(), anyInt(), anyInt(), any());
     }
 
     @Test
@@ -296,32 +463,28 @@ class MediaTests {
         Optional<Rating> result = mediaService.rateMediaEntry(100, 2, 0, "Too low"); // Invalid: 0
 
         assertFalse(result.isPresent());
-        verify(ratingRepository, never()).save(any());
-        verify(ratingRepository, never()).update(any());
+        verify(ratingRepository, never()).upsert(anyInt(), anyInt(), anyInt(), any());
     }
 
     @Test
     void testRateMediaEntryFailsWhenEntryNotFound() {
-        when(mediaEntryRepository.findById(999)).thenReturn(Optional.empty());
+        when(ratingRepository.upsert(999, 2, 5, "Comment")).thenReturn(Optional.empty());
 
         Optional<Rating> result = mediaService.rateMediaEntry(999, 2, 5, "Comment");
 
         assertFalse(result.isPresent());
-        verify(ratingRepository, never()).save(any());
-        verify(ratingRepository, never()).update(any());
     }
 
     @Test
     void testUpdateRatingSuccessWhenOwner() {
         User ratingOwner = User.builder().id(2).build();
         when(ratingRepository.findById(50)).thenReturn(Optional.of(testRating));
-        when(ratingRepository.calculateAverageRating(100)).thenReturn(4.0);
 
         boolean result = mediaService.updateRating(50, 3, "Updated", ratingOwner);
 
         assertTrue(result);
         verify(ratingRepository, times(1)).update(testRating);
-        verify(mediaEntryRepository, times(1)).updateAverageRating(100, 4.0);
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
         assertEquals(3, testRating.getStarValue());
         assertEquals("Updated", testRating.getComment());
     }
@@ -335,7 +498,7 @@ class MediaTests {
 
         assertFalse(result);
         verify(ratingRepository, never()).update(any());
-        verify(mediaEntryRepository, never()).updateAverageRating(anyInt(), anyDouble());
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
     }
 
     @Test
@@ -352,20 +515,19 @@ class MediaTests {
         assertFalse(result2);
         verify(ratingRepository, never()).findById(anyInt());
         verify(ratingRepository, never()).update(any());
-        verify(mediaEntryRepository, never()).updateAverageRating(anyInt(), anyDouble());
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
     }
 
     @Test
     void testDeleteRatingSuccessWhenOwner() {
         User ratingOwner = User.builder().id(2).build();
         when(ratingRepository.findById(50)).thenReturn(Optional.of(testRating));
-        when(ratingRepository.calculateAverageRating(100)).thenReturn(4.0);
 
         boolean result = mediaService.deleteRating(50, ratingOwner);
 
         assertTrue(result);
         verify(ratingRepository, times(1)).deleteById(50);
-        verify(mediaEntryRepository, times(1)).updateAverageRating(100, 4.0);
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
     }
 
     @Test
@@ -377,7 +539,7 @@ class MediaTests {
 
         assertFalse(result);
         verify(ratingRepository, never()).deleteById(anyInt());
-        verify(mediaEntryRepository, never()).updateAverageRating(anyInt(), anyDouble());
+        verify(ratingRepository, never()).calculateAverageRating(anyInt());
     }
 
     @Test
@@ -0,0 +1,80 @@
+package org.mrp.domainTests;
+
+import org.junit.jupiter.api.Test;
+import org.mrp.service.QueryExecutor;
+import org.mrp.service.QueryExecutor.Strategy;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryExecutorTests {
+
+    private record Value(int key, int order) {
+    }
+
+    @Test
+    void testParallelSortAndFilterMatchSequentialResults() {
+        Random random = new Random(3);
+        Value[] values = new Value[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // many equal keys, so a sort that is not stable shows up
+            values[i] = new Value(random.nextInt(1_000), i);
+        }
+        Comparator<Value> byKey = Comparator.comparingInt(Value::key);
+
+        try (QueryExecutor executor = new QueryExecutor(10_000, 4, 1)) {
+            Value[] expected = values.clone();
+            Arrays.sort(expected, byKey);
+            Value[] sorted = values.clone();
+            executor.sort(sorted, byKey);
+            assertArrayEquals(expected, sorted);
+
+            Value[] expectedEven = Arrays.stream(values, 5, values.length).filter(v -> v.key() % 2 == 0).toArray(Value[]::new);
+            assertArrayEquals(expectedEven, executor.filter(values, 5, v -> v.key() % 2 == 0));
+
+            // small inputs stay on the calling thread
+            Value[] small = Arrays.copyOf(values, 100);
+            executor.sort(small, byKey);
+            assertEquals(2, executor.getCount(Strategy.PARALLEL));
+            assertEquals(1, executor.getCount(Strategy.SEQUENTIAL));
+            assertEquals("SEQUENTIAL=1 PARALLEL=2 SEQUENTIAL_BUSY=0", executor.describeCounts());
+            assertEquals(Map.of(Strategy.SEQUENTIAL, 1L, Strategy.PARALLEL, 2L, Strategy.SEQUENTIAL_BUSY, 0L),
+                    executor.getCounts());
+        }
+    }
+
+    @Test
+    void testBusyPoolFallsBackToTheCallingThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Integer[] values = new Integer[1_000];
+        Arrays.fill(values, 1);
+
+        try (QueryExecutor executor = new QueryExecutor(100, 2, 1)) {
+            ExecutorService caller = Executors.newSingleThreadExecutor();
+            // holds the only parallel slot until released
+            Future<Integer[]> blocked = caller.submit(() -> executor.filter(values, 0, value -> {
+                started.countDown();
+                try {
+                    return release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1_000, executor.filter(values, 0, value -> true).length);
+            assertEquals(1, executor.getCount(Strategy.SEQUENTIAL_BUSY));
+
+            release.countDown();
+            assertEquals(1_000, blocked.get(5, TimeUnit.SECONDS).length);
+            caller.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new QueryExecutor(-1, 0, 1));
+    }
+}
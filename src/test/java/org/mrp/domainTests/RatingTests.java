@@ -10,6 +10,7 @@ import org.mrp.domain.Rating;
 import org.mrp.domain.User;
 import org.mrp.persistence.implemenatations.LikeRepository;
 import org.mrp.persistence.implemenatations.RatingRepository;
+import org.mrp.service.LikeStore;
 import org.mrp.service.RatingService;
 
 import java.sql.Timestamp;
@@ -18,6 +19,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -369,4 +374,139 @@ class RatingTests {
         assertEquals(25, result.get().getUserId());
         assertEquals(2, result.get().getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWriteBehindToggleIsServedFromMemoryAndFlushedOnClose() {
+        when(ratingRepository.findById(1)).thenReturn(Optional.of(testRating));
+        when(likeRepository.findByRatingId(1)).thenReturn(List.of(testLike));
+
+        LikeStore likeStore = new LikeStore(ratingRepository, likeRepository, 100, 10, 50);
+        RatingService writeBehindService = new RatingService(ratingRepository, likeRepository, null, likeStore);
+        User liker = User.builder().id(30).build();
+
+        assertEquals(1, writeBehindService.getLikeCountForRating(1));
+        assertTrue(writeBehindService.toggleLikeRating(1, liker));
+        assertEquals(2, writeBehindService.getLikeCountForRating(1));
+        assertTrue(writeBehindService.hasUserLikedRating(1, 30));
+
+        assertFalse(writeBehindService.toggleLikeRating(1, testUser)); // own rating
+        assertFalse(writeBehindService.unlikeRating(1, testUser)); // never liked it
+
+        likeStore.close();
+
+        // whatever the batches looked like, the last state of user 30 is "liked"
+        verify(likeRepository, atLeastOnce()).applyLikeChanges(argThat(likes ->
+                likes.stream().anyMatch(like -> like.getRatingId() == 1 && like.getUserId() == 30)), anyList());
+        verify(likeRepository, never()).save(any());
+        verify(ratingRepository, times(1)).findById(1); // loaded once, then served from memory
+    }
+
+    @Test
+    void testWriteBehindLikeChecksTheRatingInMemory() {
+        when(ratingRepository.findById(1)).thenReturn(Optional.of(testRating));
+        when(ratingRepository.findById(999)).thenReturn(Optional.empty());
+        when(likeRepository.findByRatingId(1)).thenReturn(List.of());
+
+        LikeStore likeStore = new LikeStore(ratingRepository, likeRepository, 100, 10, 50);
+        RatingService writeBehindService = new RatingService(ratingRepository, likeRepository, null, likeStore);
+
+        assertTrue(writeBehindService.likeRating(1, User.builder().id(30).build()).isPresent());
+        assertTrue(writeBehindService.likeRating(1, User.builder().id(31).build()).isPresent());
+        // what the like handler asks when a like fails
+        assertEquals(Optional.of(testUser.getId()), writeBehindService.findRatingOwner(1));
+        assertEquals(Optional.empty(), writeBehindService.findRatingOwner(999));
+
+        likeStore.close();
+        verify(ratingRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void testWriteBehindRejectsLikesWhenWriterFallsBehind() throws Exception {
+        when(ratingRepository.findById(1)).thenReturn(Optional.of(testRating));
+        when(likeRepository.findByRatingId(1)).thenReturn(List.of());
+
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(likeRepository).applyLikeChanges(anyList(), anyList());
+
+        LikeStore likeStore = new LikeStore(ratingRepository, likeRepository, 1, 10, 20);
+
+        assertTrue(likeStore.like(1, 20));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        assertTrue(likeStore.like(1, 21)); // fills the queue
+
+        assertThrows(RejectedExecutionException.class, () -> likeStore.like(1, 22));
+        assertFalse(likeStore.isLiked(1, 22)); // rejected like is undone
+        assertEquals(2, likeStore.getLikeCount(1));
+
+        release.countDown();
+        likeStore.close();
+        assertEquals(0, likeStore.getPendingCount());
+    }
+
+    @Test
+    void testWriteBehindKeepsFailedBatchUntilItIsWritten() throws Exception {
+        when(ratingRepository.findById(1)).thenReturn(Optional.of(testRating));
+        when(likeRepository.findByRatingId(1)).thenReturn(List.of());
+
+        CountDownLatch failed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            failed.countDown();
+            throw new RuntimeException("database down");
+        }).doNothing().when(likeRepository).applyLikeChanges(anyList(), anyList());
+
+        LikeStore likeStore = new LikeStore(ratingRepository, likeRepository, 1, 10, 20);
+
+        assertTrue(likeStore.like(1, 20));
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        // the queue is full now, the failed key must not need room in it
+        assertTrue(likeStore.like(1, 21));
+
+        likeStore.close();
+
+        verify(likeRepository, atLeast(2)).applyLikeChanges(argThat(likes ->
+                likes.stream().anyMatch(like -> like.getUserId() == 20)), anyList());
+        verify(likeRepository, atLeastOnce()).applyLikeChanges(argThat(likes ->
+                likes.stream().anyMatch(like -> like.getUserId() == 21)), anyList());
+    }
+
+    @Test
+    void testWriteBehindForgetsDeletedRatingsAndEvictsIdleOnes() {
+        AtomicBoolean deleted = new AtomicBoolean();
+        when(ratingRepository.findById(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            if (id == 1 && deleted.get()) {
+                return Optional.empty();
+            }
+            return Optional.of(Rating.builder().id(id).mediaEntryId(100 + id).userId(10).build());
+        });
+        when(likeRepository.findByRatingId(anyInt())).thenReturn(List.of(testLike));
+
+        LikeStore likeStore = new LikeStore(ratingRepository, likeRepository, 100, 10, 50, 2);
+
+        assertEquals(1, likeStore.getLikeCount(1));
+        deleted.set(true);
+        likeStore.invalidate(1);
+        assertTrue(likeStore.findRatingOwner(1).isEmpty());
+        assertEquals(0, likeStore.getLikeCount(1));
+        assertThrows(IllegalArgumentException.class, () -> likeStore.like(1, 30));
+
+        for (int id = 2; id <= 4; id++) {
+            assertEquals(1, likeStore.getLikeCount(id));
+        }
+        assertTrue(likeStore.size() <= 2);
+        // the most recent one is still served from memory
+        assertEquals(1, likeStore.getLikeCount(4));
+        verify(ratingRepository, times(1)).findById(4);
+
+        likeStore.invalidateEntry(104);
+        assertTrue(likeStore.findRatingOwner(4).isPresent());
+        verify(ratingRepository, times(2)).findById(4);
+
+        likeStore.close();
+    }
+}
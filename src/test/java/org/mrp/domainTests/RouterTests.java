@@ -0,0 +1,98 @@
+package org.mrp.domainTests;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.Test;
+import org.mrp.http.Router;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RouterTests {
+
+    private final List<String> calls = new ArrayList<>();
+
+    private Router createRouter() {
+        return new Router()
+                .route("/api/users/register", (exchange, ids) -> calls.add("register"), "POST")
+                .route("/api/users/{id}/profile", (exchange, ids) -> calls.add("profile " + ids[0]), "GET", "PUT")
+                .route("/api/media", (exchange, ids) -> calls.add("media"), "GET", "POST")
+                .route("/api/media/{id}", (exchange, ids) -> calls.add("media " + ids[0]), "GET", "PUT", "DELETE")
+                .route("/api/media/{id}/rate", (exchange, ids) -> calls.add("rate " + ids[0]), "POST");
+    }
+
+    private HttpExchange mockExchange(String method, String path) {
+        HttpExchange exchange = mock(HttpExchange.class);
+        when(exchange.getRequestMethod()).thenReturn(method);
+        when(exchange.getRequestURI()).thenReturn(URI.create(path));
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(new ByteArrayOutputStream());
+        return exchange;
+    }
+
+    @Test
+    void testRouterMatchesLiteralAndIdSegments() {
+        Router router = createRouter();
+
+        Router.Match match = router.match("POST", "/api/media/42/rate");
+        assertTrue(match.isFound());
+        assertTrue(match.isMethodAllowed());
+        assertEquals("/api/media/{id}/rate", match.template());
+        assertArrayEquals(new int[]{42}, match.ids());
+
+        assertEquals("/api/media", router.match("GET", "/api/media/").template()); //with trailing slash
+        assertEquals("/api/users/register", router.match("POST", "/api/users/register").template());
+        assertEquals("/api/users/{id}/profile", router.match("GET", "/api/users/7/profile").template());
+    }
+
+    @Test
+    void testRouterRejectsUnknownPathsAndInvalidIds() {
+        Router router = createRouter();
+
+        assertFalse(router.match("GET", "/api/media/abc").isFound()); //non-numeric ID
+        assertFalse(router.match("GET", "/api/media/-1").isFound());
+        assertFalse(router.match("GET", "/api/media/99999999999").isFound()); //does not fit into an int
+        assertFalse(router.match("GET", "/api/users/7").isFound()); //incomplete path
+        assertFalse(router.match("GET", "/api//media").isFound());
+        assertFalse(router.match("GET", "/").isFound());
+    }
+
+    @Test
+    void testRouterDispatchesAndAnswers404And405() throws IOException {
+        Router router = createRouter();
+
+        HttpExchange exchange = mockExchange("DELETE", "/api/media/5");
+        router.handle(exchange);
+        assertEquals(List.of("media 5"), calls);
+        verify(exchange).setAttribute(Router.ROUTE_ATTRIBUTE, "/api/media/{id}");
+
+        HttpExchange wrongMethod = mockExchange("DELETE", "/api/media/5/rate");
+        router.handle(wrongMethod);
+        verify(wrongMethod).sendResponseHeaders(eq(405), anyLong());
+        assertEquals("POST", wrongMethod.getResponseHeaders().getFirst("Allow"));
+
+        HttpExchange unknown = mockExchange("GET", "/api/unknown");
+        router.handle(unknown);
+        verify(unknown).sendResponseHeaders(eq(404), anyLong());
+
+        assertEquals(1, calls.size());
+        assertEquals(1L, router.getRequestCounts().get("/api/media/{id}"));
+        assertEquals(1L, router.getRequestCounts().get("/api/media/{id}/rate"));
+    }
+
+    @Test
+    void testRouterRejectsDuplicateRoutes() {
+        Router router = new Router().route("/api/media", (exchange, ids) -> { }, "GET");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> router.route("/api/media/", (exchange, ids) -> { }, "GET"));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.route("api/media", (exchange, ids) -> { }, "POST"));
+    }
+}
@@ -12,6 +12,8 @@ import org.mrp.domain.UserToken;
 import org.mrp.persistence.implemenatations.TokenRepository;
 import org.mrp.persistence.implemenatations.UserProfileRepository;
 import org.mrp.persistence.implemenatations.UserRepository;
+import org.mrp.service.TokenCache;
+import org.mrp.service.TokenSigner;
 import org.mrp.service.UserService;
 import org.mrp.service.utils.HashUtils;
 
@@ -21,6 +23,7 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -143,6 +146,63 @@ class UserTests {
         verify(tokenRepository, times(1)).save(any(UserToken.class));
     }
 
+    @Test
+    void testSignedTokenLoginAndValidationSkipTokenTable() throws NoSuchAlgorithmException {
+        UserService signedUserService = new UserService(userRepository, userProfileRepository, tokenRepository,
+                new TokenCache(), new TokenSigner("0123456789abcdef0123456789abcdef", 60_000));
+        HashUtils.HashResult hr = HashUtils.hashWithSalt("password123");
+        User user = User.builder().id(1).username("testuser").password(hr.hash()).salt(hr.salt()).build();
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        String token = signedUserService.loginUser("testuser", "password123").orElseThrow();
+        Optional<User> principal = signedUserService.validateToken(token);
+
+        assertEquals(1, principal.orElseThrow().getId());
+        assertEquals("testuser", principal.get().getUsername());
+        verifyNoInteractions(tokenRepository);
+        verify(userRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void testSignedTokenRejectedAfterLogoutOrTampering() {
+        TokenSigner signer = new TokenSigner("0123456789abcdef0123456789abcdef", 60_000);
+        UserService signedUserService = new UserService(userRepository, userProfileRepository, tokenRepository,
+                new TokenCache(), signer);
+        String token = signer.sign(1, "testuser");
+        String otherUsersToken = signer.sign(2, "other");
+
+        String tampered = (token.charAt(0) == 'A' ? 'B' : 'A') + token.substring(1);
+        assertFalse(signedUserService.validateToken(tampered).isPresent());
+        assertFalse(new TokenSigner("another-secret-another-secret-123", 60_000).verify(token).isPresent());
+
+        signedUserService.logout(testUser);
+
+        assertFalse(signedUserService.validateToken(token).isPresent());
+        assertTrue(signedUserService.validateToken(otherUsersToken).isPresent());
+    }
+
+    @Test
+    void testSignedTokenRevocationsAreSharedThroughTheDatabase() {
+        String secret = "0123456789abcdef0123456789abcdef";
+        TokenSigner thisServer = new TokenSigner(secret, 60_000, tokenRepository);
+        TokenSigner otherServer = new TokenSigner(secret, 60_000);
+        String token = thisServer.sign(1, "testuser");
+        String otherUsersToken = thisServer.sign(2, "other");
+
+        otherServer.revokeUser(1);
+        // still valid here until the revocation is read
+        assertTrue(thisServer.verify(token).isPresent());
+
+        when(tokenRepository.findRevocationsSince(anyLong())).thenReturn(Map.of(1, System.currentTimeMillis()));
+        thisServer.syncRevocations();
+        assertFalse(thisServer.verify(token).isPresent());
+        assertTrue(thisServer.verify(otherUsersToken).isPresent());
+
+        thisServer.revokeUser(2);
+        verify(tokenRepository).saveRevocation(eq(2), anyLong());
+        assertFalse(thisServer.verify(otherUsersToken).isPresent());
+    }
+
     @Test
     void testLoginUserFailsWithWrongPassword() throws NoSuchAlgorithmException {
         String password = "password123";
@@ -190,6 +250,35 @@ class UserTests {
         assertEquals(testUser, result.get());
     }
 
+    @Test
+    void testValidateTokenUsesCacheOnSecondCall() {
+        when(tokenRepository.findById("validToken")).thenReturn(Optional.of(testToken));
+        when(userRepository.findById(1)).thenReturn(Optional.of(testUser));
+
+        userService.validateToken("validToken");
+        Optional<User> result = userService.validateToken("validToken");
+
+        assertEquals(testUser, result.orElseThrow());
+        verify(tokenRepository, times(1)).findById("validToken");
+        verify(userRepository, times(1)).findById(1);
+        assertEquals(1, userService.getTokenCache().getHitCount());
+        assertEquals(1, userService.getTokenCache().getMissCount());
+    }
+
+    @Test
+    void testLogoutInvalidatesCachedToken() {
+        when(tokenRepository.findById("validToken"))
+                .thenReturn(Optional.of(testToken))
+                .thenReturn(Optional.empty());
+        when(userRepository.findById(1)).thenReturn(Optional.of(testUser));
+
+        assertTrue(userService.validateToken("validToken").isPresent());
+        userService.logout(testUser);
+
+        assertFalse(userService.validateToken("validToken").isPresent());
+        verify(tokenRepository, times(2)).findById("validToken");
+    }
+
     @Test
     void testValidateTokenFailsWhenTokenExpired() {
         LocalDateTime oldTimestamp = LocalDateTime.now().minusHours(25);
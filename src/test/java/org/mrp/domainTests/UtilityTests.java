@@ -1,13 +1,33 @@
 package org.mrp.domainTests;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
 import org.junit.jupiter.api.Test;
+import org.mrp.domain.MediaEntry;
+import org.mrp.domain.MediaType;
+import org.mrp.handlers.requests.MediaEntryRequest;
+import org.mrp.handlers.requests.RatingRequest;
+import org.mrp.http.HttpStatus;
+import org.mrp.http.InvalidRequestException;
 import org.mrp.service.utils.HashUtils;
+import org.mrp.service.utils.HttpUtils;
+import org.mrp.service.utils.JsonCodec;
 import org.mrp.service.utils.PathUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 class UtilityTests {
 
@@ -70,4 +90,117 @@ class UtilityTests {
         assertTrue(pattern.matcher("/api/entries/1/ratings/2/").matches());
         assertFalse(pattern.matcher("/api/entries/abc/ratings/def").matches());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSendJsonResponseUsesContentLengthForSmallBodies() throws IOException {
+        HttpExchange exchange = mock(HttpExchange.class);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(body);
+
+        HttpUtils.sendJsonResponse(exchange, 200, Map.of("title", "Inception"));
+
+        assertEquals("{\"title\":\"Inception\"}", body.toString(StandardCharsets.UTF_8));
+        verify(exchange).sendResponseHeaders(200, body.size());
+    }
+
+    @Test
+    void testSendJsonResponseStreamsLargeBodiesChunked() throws IOException {
+        HttpExchange exchange = mock(HttpExchange.class);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(body);
+        List<String> titles = Collections.nCopies(20_000, "A fairly long media entry title");
+
+        HttpUtils.sendJsonResponse(exchange, 200, titles);
+
+        verify(exchange).sendResponseHeaders(200, 0);
+        assertEquals(titles, new ObjectMapper().readValue(body.toByteArray(), List.class));
+    }
+
+    @Test
+    void testSendJsonArrayWritesTheElementsAsTheyAreIterated() throws IOException {
+        HttpExchange exchange = mock(HttpExchange.class);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(body);
+        // produced one at a time, never collected
+        Iterable<String> titles = () -> IntStream.range(0, 20_000).mapToObj(i -> "Media entry title " + i).iterator();
+
+        HttpUtils.sendJsonArray(exchange, 200, titles);
+
+        verify(exchange).sendResponseHeaders(200, 0);
+        List<?> written = new ObjectMapper().readValue(body.toByteArray(), List.class);
+        assertEquals(20_000, written.size());
+        assertEquals("Media entry title 19999", written.get(19_999));
+
+        ByteArrayOutputStream emptyBody = new ByteArrayOutputStream();
+        when(exchange.getResponseBody()).thenReturn(emptyBody);
+        HttpUtils.sendJsonArray(exchange, 200, List.of());
+        assertEquals("[]", emptyBody.toString(StandardCharsets.UTF_8));
+        verify(exchange).sendResponseHeaders(200, 2);
+    }
+
+    @Test
+    void testJsonCodecReusesWritersAndWritesCompactJson() throws IOException {
+        assertSame(JsonCodec.writerFor(MediaEntry.class), JsonCodec.writerFor(MediaEntry.class));
+        assertSame(JsonCodec.readerFor(Map.class), JsonCodec.readerFor(Map.class));
+
+        String json = JsonCodec.toJson(Map.of("title", "Inception"));
+        assertEquals("{\"title\":\"Inception\"}", json);
+
+        Map<?, ?> parsed = JsonCodec.readerFor(Map.class).readValue(json);
+        assertEquals("Inception", parsed.get("title"));
+    }
+
+    private HttpExchange mockRequest(String body, boolean withContentLength) {
+        HttpExchange exchange = mock(HttpExchange.class);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        Headers headers = new Headers();
+        if (withContentLength) {
+            headers.set("Content-Length", String.valueOf(bytes.length));
+        }
+        when(exchange.getRequestHeaders()).thenReturn(headers);
+        when(exchange.getRequestBody()).thenReturn(new ByteArrayInputStream(bytes));
+        return exchange;
+    }
+
+    @Test
+    void testReadJsonBodyBindsRecordAndIgnoresUnknownFields() throws IOException {
+        HttpExchange exchange = mockRequest(
+                "{\"id\":7,\"title\":\"Inception\",\"mediaType\":\"movie\",\"releaseYear\":2010,\"ageRestriction\":12}", true);
+
+        MediaEntryRequest request = HttpUtils.readJsonBody(exchange, MediaEntryRequest.class).validate();
+
+        assertEquals("Inception", request.title());
+        assertEquals("", request.description());
+        assertEquals(List.of(), request.genres());
+        assertEquals(MediaType.MOVIE, request.parsedMediaType());
+    }
+
+    @Test
+    void testReadJsonBodyRejectsOversizedBody() {
+        String comment = "x".repeat(70 * 1024);
+        String body = "{\"stars\":5,\"comment\":\"" + comment + "\"}";
+
+        // rejected from the header before reading, and while reading when there is no Content-Length
+        for (boolean withContentLength : new boolean[]{true, false}) {
+            InvalidRequestException e = assertThrows(InvalidRequestException.class,
+                    () -> HttpUtils.readJsonBody(mockRequest(body, withContentLength), RatingRequest.class));
+            assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        }
+    }
+
+    @Test
+    void testRequestValidationListsMissingFields() throws IOException {
+        RatingRequest request = HttpUtils.readJsonBody(mockRequest("{\"stars\":null,\"comment\":\"\"}", true),
+                RatingRequest.class);
+
+        InvalidRequestException e = assertThrows(InvalidRequestException.class, request::validate);
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        assertEquals(List.of("stars", "comment"), e.getFields());
+
+        assertThrows(InvalidRequestException.class,
+                () -> HttpUtils.readJsonBody(mockRequest("{not json", true), RatingRequest.class));
+    }
+}